@@ -0,0 +1,27 @@
+package es.srshiroh;
+
+import ch.qos.logback.classic.Level;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Utilidades comunes de los benchmarks JMH
+ */
+final class BenchmarkSupport {
+    private BenchmarkSupport() {
+    }
+
+    /**
+     * Silencia el log por verificación para no medir la consola
+     */
+    static void quietLogs() {
+        ((ch.qos.logback.classic.Logger) LoggerFactory.getLogger("es.srshiroh")).setLevel(Level.WARN);
+    }
+
+    /**
+     * Proxy IPv4 determinista a partir de un índice
+     */
+    static ProxyInfo proxy(int i) {
+        ProxyInfo.ProxyType type = ProxyInfo.ProxyType.values()[i & 3];
+        return new ProxyInfo(ProxyListParser.formatIpv4(0x0A000000 | (i >>> 4)), 1024 + (i & 15), type);
+    }
+}
@@ -0,0 +1,53 @@
+package es.srshiroh;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * checkProxy de extremo a extremo contra el StubProxyServer en el mismo proceso
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CheckBenchmarks {
+    @Param({"HTTP", "SOCKS4", "SOCKS5"})
+    public ProxyInfo.ProxyType type;
+
+    private StubProxyServer stub;
+    private ProxyManager manager;
+
+    @Setup
+    public void setUp() throws IOException {
+        BenchmarkSupport.quietLogs();
+        stub = new StubProxyServer(0);
+        manager = new ProxyManager();
+        manager.setTimeout(2000);
+        // SOCKS4 resuelve el destino localmente: se usa una IP (el stub responde a cualquiera)
+        manager.setTestUrl("http://127.0.0.1/ip");
+        manager.setTestHttps(false);
+    }
+
+    @Setup(Level.Iteration)
+    public void resetManager() {
+        // Los proxies válidos se acumulan; se vacía el estado en cada iteración
+        manager.reset();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        manager.shutdown();
+        stub.close();
+    }
+
+    @Benchmark
+    public boolean checkProxy() {
+        ProxyInfo proxy = new ProxyInfo("127.0.0.1", stub.getPort(), type);
+        manager.checkProxy(proxy);
+        return proxy.isValid();
+    }
+}
@@ -0,0 +1,66 @@
+package es.srshiroh;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Inserción en el conjunto de deduplicación frente al Set de Strings anterior.
+ * Cada iteración parte de un conjunto vacío; una de cada cuatro claves es repetida.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DedupBenchmarks {
+    private static final int KEYS = 1 << 20;
+
+    private String[] hosts;
+    private int[] addresses;
+    private int[] ports;
+    private ProxyKeySet keySet;
+    private Set<String> stringSet;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        hosts = new String[KEYS];
+        addresses = new int[KEYS];
+        ports = new int[KEYS];
+        for (int i = 0; i < KEYS; i++) {
+            int key = (i & 3) == 3 ? i - 1 : i;
+            addresses[i] = 0x0A000000 | (key >>> 2);
+            ports[i] = 1024 + (key & 3);
+            hosts[i] = ProxyListParser.formatIpv4(addresses[i]);
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void clear() {
+        keySet = new ProxyKeySet();
+        stringSet = ConcurrentHashMap.newKeySet();
+        next = 0;
+    }
+
+    @Benchmark
+    public boolean keySetAdd() {
+        int i = next++ & (KEYS - 1);
+        return keySet.add(hosts[i], ports[i]);
+    }
+
+    @Benchmark
+    public boolean keySetAddIpv4() {
+        int i = next++ & (KEYS - 1);
+        return keySet.addIpv4(addresses[i], ports[i]);
+    }
+
+    @Benchmark
+    public boolean stringSetAdd() {
+        int i = next++ & (KEYS - 1);
+        return stringSet.add(hosts[i] + ":" + ports[i]);
+    }
+}
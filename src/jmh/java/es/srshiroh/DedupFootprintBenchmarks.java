@@ -0,0 +1,49 @@
+package es.srshiroh;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Memoria retenida por el conjunto de deduplicación con 10M entradas IPv4 (contador
+ * bytesPerEntry). El tiempo incluye el llenado y los GC de la medida. Una sola iteración
+ * medida: JMH suma los contadores EVENTS de todas.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class DedupFootprintBenchmarks {
+    @Param("10000000")
+    public int entries;
+
+    /**
+     * Bytes de heap retenidos por entrada tras llenar el conjunto
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Footprint {
+        public double bytesPerEntry;
+    }
+
+    @Benchmark
+    public long fill(Footprint footprint) {
+        long before = usedHeap();
+        ProxyKeySet keys = new ProxyKeySet();
+        for (int i = 0; i < entries; i++) {
+            keys.addIpv4(0x0A000000 | i, 1024 + (i % 50000));
+        }
+        footprint.bytesPerEntry = (double) (usedHeap() - before) / entries;
+        return keys.size(); // Mantiene el conjunto vivo durante la medida
+    }
+
+    static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
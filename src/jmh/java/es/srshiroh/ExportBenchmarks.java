@@ -0,0 +1,46 @@
+package es.srshiroh;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Exportación de la lista de proxies válidos a archivo
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ExportBenchmarks {
+    @Param("100000")
+    public int proxies;
+
+    private ProxyManager manager;
+    private File output;
+
+    @Setup
+    public void setUp() throws IOException {
+        BenchmarkSupport.quietLogs();
+        manager = new ProxyManager();
+        for (int i = 0; i < proxies; i++) {
+            manager.recordResult(BenchmarkSupport.proxy(i), true, 20 + (i * 7919L) % 4980, null);
+        }
+        output = File.createTempFile("jmh-export", ".txt");
+    }
+
+    @TearDown
+    public void tearDown() {
+        manager.shutdown();
+        output.delete();
+    }
+
+    @Benchmark
+    public long exportValidProxies() throws IOException {
+        manager.exportValidProxiesToFile(output.getPath());
+        return output.length();
+    }
+}
@@ -0,0 +1,91 @@
+package es.srshiroh;
+
+import org.apache.hc.client5.http.classic.methods.HttpGet;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpResponse;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.core5.http.HttpHost;
+import org.apache.hc.core5.util.Timeout;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Verificaciones HTTP por segundo: un CloseableHttpClient nuevo por proxy, como hacía
+ * testHttpRequest antes de ProxyHttpClient, frente al cliente compartido. Los proxies son los
+ * listeners HTTP de una granja local sin latencia y se recorren en círculo contra un juez local.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Threads(16)
+@Fork(1)
+public class HttpClientBenchmarks {
+    private static final int TIMEOUT = 5000;
+
+    @Param("3000")
+    public int proxies;
+
+    private JudgeServer judge;
+    private ProxyFarm farm;
+    private final List<ProxyInfo> httpProxies = new ArrayList<>();
+    private final AtomicInteger next = new AtomicInteger();
+    private ProxyHttpClient sharedClient;
+
+    @Setup
+    public void setUp() throws IOException {
+        BenchmarkSupport.quietLogs();
+        judge = new JudgeServer(0);
+        ProxyFarm.Config config = new ProxyFarm.Config();
+        config.setLatency(0);
+        farm = new ProxyFarm(proxies, config);
+        for (ProxyFarm.Listener listener : farm.getListeners()) {
+            if (listener.getType() == ProxyInfo.ProxyType.HTTP) {
+                httpProxies.add(ProxyInfo.fromString(listener.toProxyLine()));
+            }
+        }
+        sharedClient = new ProxyHttpClient(256, TIMEOUT);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        sharedClient.close();
+        farm.close();
+        judge.close();
+    }
+
+    @Benchmark
+    public boolean perProxyClient() throws IOException {
+        ProxyInfo proxy = nextProxy();
+        RequestConfig config = RequestConfig.custom()
+                .setConnectTimeout(Timeout.ofMilliseconds(TIMEOUT))
+                .setResponseTimeout(Timeout.ofMilliseconds(TIMEOUT))
+                .build();
+        HttpHost proxyHost = new HttpHost(proxy.getHost(), proxy.getPort());
+        try (CloseableHttpClient client = HttpClients.custom()
+                .setDefaultRequestConfig(config)
+                .setProxy(proxyHost)
+                .build()) {
+            HttpGet request = new HttpGet(judge.getUrl());
+            try (CloseableHttpResponse response = client.execute(request)) {
+                return response.getCode() == 200;
+            }
+        }
+    }
+
+    @Benchmark
+    public boolean sharedClient() throws IOException {
+        return sharedClient.execute(nextProxy(), judge.getUrl()) == 200;
+    }
+
+    private ProxyInfo nextProxy() {
+        return httpProxies.get(Math.floorMod(next.getAndIncrement(), httpProxies.size()));
+    }
+}
@@ -0,0 +1,98 @@
+package es.srshiroh;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ProxyListParser sobre una lista generada de 10M líneas (90% IPv4, 5% nombres, 5% IPv6), frente
+ * a la lectura línea a línea con BufferedReader + ProxyInfo.fromString a la que sustituyó
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ListParserBenchmarks {
+    @Param("10000000")
+    public int lines;
+
+    private Path file;
+
+    @Setup
+    public void setUp() throws IOException {
+        file = Files.createTempFile("parser_bench", ".txt");
+        try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(file, StandardCharsets.UTF_8))) {
+            writer.println("# Lista de prueba");
+            for (int i = 0; i < lines; i++) {
+                switch (i % 20) {
+                    case 0:
+                        writer.println("proxy" + i + ".example.com:3128:HTTPS");
+                        break;
+                    case 1:
+                        writer.println("[2001:db8::" + Integer.toHexString(i & 0xFFFF) + "]:1080:socks5");
+                        break;
+                    default:
+                        writer.println((i >>> 24 & 0xFF) + "." + (i >>> 16 & 0xFF) + "." + (i >>> 8 & 0xFF) + "."
+                                + (i & 0xFF) + ":" + (1024 + i % 60000) + (i % 3 == 0 ? ":SOCKS4" : ""));
+                }
+            }
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public long parser() throws IOException, InterruptedException {
+        long[] proxies = new long[1];
+        new ProxyListParser().parse(file, new ProxyListParser.Handler() {
+            @Override
+            public boolean onIpv4(int address, int port, ProxyInfo.ProxyType type) {
+                proxies[0]++;
+                return true;
+            }
+
+            @Override
+            public boolean onHost(String host, int port, ProxyInfo.ProxyType type) {
+                proxies[0]++;
+                return true;
+            }
+
+            @Override
+            public void onError(long lineNumber, String line, String message) {
+            }
+        });
+        return proxies[0];
+    }
+
+    @Benchmark
+    public long bufferedReader() throws IOException {
+        long proxies = 0;
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                try {
+                    ProxyInfo.fromString(line);
+                    proxies++;
+                } catch (RuntimeException e) {
+                    // Línea inválida
+                }
+            }
+        }
+        return proxies;
+    }
+}
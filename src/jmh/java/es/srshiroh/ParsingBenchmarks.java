@@ -0,0 +1,48 @@
+package es.srshiroh;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ProxyInfo.fromString con los formatos admitidos
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParsingBenchmarks {
+    private static final int LINES = 1024;
+
+    @Param({"ipv4", "ipv4-type", "ipv6"})
+    public String format;
+
+    private String[] lines;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        lines = new String[LINES];
+        for (int i = 0; i < LINES; i++) {
+            String port = String.valueOf(1024 + i);
+            switch (format) {
+                case "ipv4-type":
+                    lines[i] = "10." + (i >>> 8) + "." + (i & 255) + ".1:" + port + ":socks5";
+                    break;
+                case "ipv6":
+                    lines[i] = "[2001:db8::" + Integer.toHexString(i) + "]:" + port;
+                    break;
+                default:
+                    lines[i] = "10." + (i >>> 8) + "." + (i & 255) + ".1:" + port;
+            }
+        }
+    }
+
+    @Benchmark
+    public void fromString(Blackhole blackhole) {
+        blackhole.consume(ProxyInfo.fromString(lines[next++ & (LINES - 1)]));
+    }
+}
@@ -0,0 +1,55 @@
+package es.srshiroh;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Consultas del ProxyManager con un millón de resultados registrados
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class StatisticsBenchmarks {
+    @Param("1000000")
+    public int results;
+
+    @Param({"10", "100"})
+    public int limit;
+
+    private ProxyManager manager;
+
+    @Setup
+    public void setUp() {
+        BenchmarkSupport.quietLogs();
+        manager = new ProxyManager();
+        for (int i = 0; i < results; i++) {
+            // Dos de cada tres válidos, latencias repartidas entre 20 y 5000 ms
+            manager.recordResult(BenchmarkSupport.proxy(i), i % 3 != 0, 20 + (i * 7919L) % 4980, null);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        manager.shutdown();
+    }
+
+    @Benchmark
+    public int getValidProxyCount() {
+        return manager.getValidProxyCount();
+    }
+
+    @Benchmark
+    public String getStatistics() {
+        return manager.getStatistics();
+    }
+
+    @Benchmark
+    public List<ProxyInfo> getFastestProxies() {
+        return manager.getFastestProxies(limit);
+    }
+}
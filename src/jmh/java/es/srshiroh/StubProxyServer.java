@@ -0,0 +1,167 @@
+package es.srshiroh;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Proxy local (HTTP, SOCKS4 o SOCKS5) que responde directamente a cualquier petición.
+ * Sirve como objetivo reproducible para las pruebas de rendimiento.
+ */
+public class StubProxyServer implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(StubProxyServer.class);
+
+    private final ServerSocket serverSocket;
+    private final AtomicLong connections = new AtomicLong();
+    private final ExecutorService workers = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "stub-proxy");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public StubProxyServer(int port) throws IOException {
+        this.serverSocket = new ServerSocket(port, 1024, InetAddress.getLoopbackAddress());
+        workers.submit(this::acceptLoop);
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Conexiones aceptadas desde el arranque
+     */
+    public long getConnectionCount() {
+        return connections.get();
+    }
+
+    private void acceptLoop() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                connections.incrementAndGet();
+                workers.submit(() -> handle(socket));
+            } catch (IOException e) {
+                if (!serverSocket.isClosed()) {
+                    logger.debug("Error aceptando conexión: {}", e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void handle(Socket socket) {
+        try (Socket s = socket) {
+            InputStream in = new BufferedInputStream(s.getInputStream());
+            OutputStream out = s.getOutputStream();
+
+            // El primer byte distingue SOCKS4 (0x04), SOCKS5 (0x05) o HTTP
+            in.mark(1);
+            int first = in.read();
+            if (first == 0x04) {
+                acceptSocks4(in, out);
+            } else if (first == 0x05) {
+                acceptSocks5(in, out);
+            } else {
+                in.reset();
+            }
+
+            serveHttp(s, in, out);
+        } catch (IOException e) {
+            logger.debug("Conexión del stub cerrada: {}", e.getMessage());
+        }
+    }
+
+    private void acceptSocks4(InputStream in, OutputStream out) throws IOException {
+        // CMD, puerto, IPv4 y user id terminado en cero
+        in.readNBytes(7);
+        while (in.read() > 0) {
+            // user id
+        }
+        out.write(new byte[]{0x00, 0x5A, 0, 0, 0, 0, 0, 0});
+        out.flush();
+    }
+
+    private void acceptSocks5(InputStream in, OutputStream out) throws IOException {
+        int methods = in.read();
+        in.readNBytes(methods);
+        out.write(new byte[]{0x05, 0x00});
+        out.flush();
+
+        // VER, CMD, RSV, ATYP + dirección + puerto
+        byte[] header = in.readNBytes(4);
+        int addressLength = header[3] == 0x01 ? 4 : header[3] == 0x04 ? 16 : in.read();
+        in.readNBytes(addressLength + 2);
+        out.write(new byte[]{0x05, 0x00, 0x00, 0x01, 0, 0, 0, 0, 0, 0});
+        out.flush();
+    }
+
+    private void serveHttp(Socket s, InputStream in, OutputStream out) throws IOException {
+        String requestLine;
+        while ((requestLine = RawHttp.readLine(in)) != null && !requestLine.isEmpty()) {
+            boolean keepAlive = true;
+            String header;
+            while ((header = RawHttp.readLine(in)) != null && !header.isEmpty()) {
+                if (header.toLowerCase().startsWith("connection:") && header.toLowerCase().contains("close")) {
+                    keepAlive = false;
+                }
+            }
+
+            if (requestLine.startsWith("CONNECT ")) {
+                tunnel(requestLine.split(" ")[1], in, out);
+                return;
+            }
+
+            byte[] body = ("{\"origin\": \"" + s.getInetAddress().getHostAddress() + "\"}\n")
+                    .getBytes(StandardCharsets.UTF_8);
+            String headers = "HTTP/1.1 200 OK\r\n" +
+                    "Content-Type: application/json\r\n" +
+                    "Content-Length: " + body.length + "\r\n" +
+                    (keepAlive ? "" : "Connection: close\r\n") +
+                    "\r\n";
+            out.write(headers.getBytes(StandardCharsets.US_ASCII));
+            out.write(body);
+            out.flush();
+
+            if (!keepAlive) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Reenvía el túnel CONNECT al destino real
+     */
+    private void tunnel(String authority, InputStream in, OutputStream out) throws IOException {
+        int colon = authority.lastIndexOf(':');
+        try (Socket target = new Socket(authority.substring(0, colon), Integer.parseInt(authority.substring(colon + 1)))) {
+            out.write("HTTP/1.1 200 Connection established\r\n\r\n".getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+
+            workers.submit(() -> {
+                try {
+                    in.transferTo(target.getOutputStream());
+                } catch (IOException ignored) {
+                    // El cliente cerró el túnel
+                }
+            });
+            target.getInputStream().transferTo(out);
+        } catch (IOException | RuntimeException e) {
+            out.write("HTTP/1.1 502 Bad Gateway\r\nContent-Length: 0\r\n\r\n".getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        workers.shutdownNow();
+    }
+}
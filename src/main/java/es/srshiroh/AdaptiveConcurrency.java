@@ -0,0 +1,179 @@
+package es.srshiroh;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Control adaptativo (AIMD) del número de verificaciones simultáneas.
+ * Los resultados se agrupan en ventanas; al cerrar cada una el límite sube en un paso fijo
+ * si no hubo errores de recursos locales ni picos de fallos, y se reduce a la mitad ante
+ * EMFILE o puertos efímeros agotados, o a un 70% ante un pico de timeouts o de conexiones
+ * fallidas respecto a la media de las ventanas anteriores.
+ */
+public class AdaptiveConcurrency {
+    private static final int MIN_WINDOW = 50;
+    private static final double RESOURCE_BACKOFF = 0.5;
+    private static final double SPIKE_BACKOFF = 0.7;
+    private static final double BASELINE_WEIGHT = 0.2; // Peso de la última ventana en la media
+
+    /**
+     * Recibe cada cambio de límite con su motivo
+     */
+    public interface LimitListener {
+        void onLimitChanged(int oldLimit, int newLimit, String reason);
+    }
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final int increment;
+    private final LimitListener listener;
+
+    private volatile int limit;
+    private volatile String reason = "Límite inicial";
+
+    // Ventana en curso
+    private final LongAdder results = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder connectErrors = new LongAdder();
+    private final LongAdder resourceErrors = new LongAdder();
+    private final AtomicBoolean evaluating = new AtomicBoolean(false);
+
+    // Solo las toca quien evalúa la ventana
+    private double timeoutBaseline = -1;
+    private double connectBaseline = -1;
+    private boolean cooldown;
+
+    public AdaptiveConcurrency(int initialLimit, int minLimit, int maxLimit, LimitListener listener) {
+        this.minLimit = Math.max(1, minLimit);
+        this.maxLimit = Math.max(this.minLimit, maxLimit);
+        this.limit = Math.max(this.minLimit, Math.min(this.maxLimit, initialLimit));
+        this.increment = Math.max(1, this.maxLimit / 100);
+        this.listener = listener;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    /**
+     * Motivo del último cambio de límite
+     */
+    public String getReason() {
+        return reason;
+    }
+
+    /**
+     * Registra el resultado de una verificación y, si la ventana está completa, ajusta el límite
+     */
+    public void onResult(ProxyInfo.ErrorType errorType) {
+        results.increment();
+        switch (errorType) {
+            case TIMEOUT:
+                timeouts.increment();
+                break;
+            case REFUSED:
+            case UNREACHABLE:
+            case RESET:
+                connectErrors.increment();
+                break;
+            case LOCAL_RESOURCE:
+                resourceErrors.increment();
+                break;
+            default:
+                break;
+        }
+
+        if (results.sum() >= Math.max(MIN_WINDOW, limit / 2) && evaluating.compareAndSet(false, true)) {
+            try {
+                evaluate();
+            } finally {
+                evaluating.set(false);
+            }
+        }
+    }
+
+    private void evaluate() {
+        long n = results.sumThenReset();
+        long timeoutCount = timeouts.sumThenReset();
+        long connectCount = connectErrors.sumThenReset();
+        long resourceCount = resourceErrors.sumThenReset();
+        if (n == 0) {
+            return;
+        }
+        double timeoutRate = (double) timeoutCount / n;
+        double connectRate = (double) connectCount / n;
+
+        if (resourceCount > 0) {
+            decrease(RESOURCE_BACKOFF, String.format(
+                    "%d errores de recursos locales (descriptores o puertos efímeros agotados)", resourceCount));
+        } else if (isSpike(timeoutRate, timeoutBaseline)) {
+            decrease(SPIKE_BACKOFF, String.format("Pico de timeouts: %.0f%% frente a %.0f%% habitual",
+                    timeoutRate * 100, timeoutBaseline * 100));
+        } else if (isSpike(connectRate, connectBaseline)) {
+            decrease(SPIKE_BACKOFF, String.format("Pico de conexiones fallidas: %.0f%% frente a %.0f%% habitual",
+                    connectRate * 100, connectBaseline * 100));
+        } else if (cooldown) {
+            // Una ventana de espera tras reducir antes de volver a subir
+            cooldown = false;
+        } else {
+            change(Math.min(maxLimit, limit + increment), String.format(
+                    "Sin errores locales; timeouts %.0f%%, conexiones fallidas %.0f%%",
+                    timeoutRate * 100, connectRate * 100));
+        }
+
+        timeoutBaseline = timeoutBaseline < 0 ? timeoutRate
+                : timeoutBaseline * (1 - BASELINE_WEIGHT) + timeoutRate * BASELINE_WEIGHT;
+        connectBaseline = connectBaseline < 0 ? connectRate
+                : connectBaseline * (1 - BASELINE_WEIGHT) + connectRate * BASELINE_WEIGHT;
+    }
+
+    /**
+     * La tasa supera claramente la media: 1,5 veces y al menos 5 puntos más
+     */
+    private static boolean isSpike(double rate, double baseline) {
+        return baseline >= 0 && rate > baseline * 1.5 && rate - baseline > 0.05;
+    }
+
+    private void decrease(double factor, String why) {
+        cooldown = true;
+        change(Math.max(minLimit, (int) (limit * factor)), why);
+    }
+
+    private void change(int newLimit, String why) {
+        int oldLimit = limit;
+        if (newLimit == oldLimit) {
+            return;
+        }
+        limit = newLimit;
+        reason = why;
+        if (listener != null) {
+            listener.onLimitChanged(oldLimit, newLimit, why);
+        }
+    }
+
+    /**
+     * Semáforo cuyo número total de permisos puede cambiar con verificaciones en curso
+     */
+    static final class ResizableSemaphore extends Semaphore {
+        private static final long serialVersionUID = 1L;
+
+        private int permits;
+
+        ResizableSemaphore(int permits) {
+            super(permits);
+            this.permits = permits;
+        }
+
+        synchronized void resize(int newPermits) {
+            int delta = newPermits - permits;
+            if (delta > 0) {
+                release(delta);
+            } else if (delta < 0) {
+                // Los permisos ya prestados se absorben al devolverse
+                reducePermits(-delta);
+            }
+            permits = newPermits;
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package es.srshiroh;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Clasifica el anonimato de un proxy a partir de la respuesta de un juez (JudgeServer,
+ * httpbin.org/get o similar: JSON con "origin" y "headers"). Se usa el cuerpo de la misma
+ * petición que valida el proxy, sin peticiones extra.
+ */
+final class AnonymityJudge {
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    // Cabeceras que añaden los proxies con la dirección del cliente (o un sustituto como "unknown")
+    private static final String[] FORWARDED_HEADERS = {
+            "x-forwarded-for", "forwarded", "x-real-ip", "client-ip", "x-client-ip", "true-client-ip",
+            "x-originating-ip", "forwarded-for", "x-forwarded"
+    };
+    // Cabeceras que identifican al proxy. Proxy-Connection no está: es de salto a salto y
+    // algunos proxies la reenvían tal cual aunque no añadan nada propio
+    private static final String[] VIA_HEADERS = {"via", "x-bluecoat-via", "x-proxy-id", "proxy-agent"};
+    // Via según RFC 7230: [protocolo/]versión seguido de quien la recibió, p. ej. "1.1 squid"
+    private static final Pattern VIA = Pattern.compile("^\\s*([A-Za-z][\\w.-]*/)?\\d+(\\.\\d+)?\\s+\\S+.*");
+    private static final Pattern ADDRESS_SEPARATORS = Pattern.compile("[\\s,;=\"\\[\\]]+");
+
+    /**
+     * Lo que el juez vio llegar a través del proxy
+     */
+    static final class Verdict {
+        final ProxyInfo.AnonymityLevel level;
+        final String exitIp;
+
+        Verdict(ProxyInfo.AnonymityLevel level, String exitIp) {
+            this.level = level;
+            this.exitIp = exitIp;
+        }
+    }
+
+    private AnonymityJudge() {
+    }
+
+    /**
+     * Analiza el cuerpo de la respuesta. realIp es nuestra IP vista por el juez sin proxy
+     * (null si no se conoce: entonces no se distingue transparente de anónimo).
+     */
+    static Verdict judge(byte[] body, String realIp) {
+        JsonNode root;
+        try {
+            root = MAPPER.readTree(body);
+        } catch (IOException e) {
+            return new Verdict(ProxyInfo.AnonymityLevel.UNKNOWN, null);
+        }
+        if (root == null || !root.isObject()) {
+            return new Verdict(ProxyInfo.AnonymityLevel.UNKNOWN, null);
+        }
+
+        // httpbin encadena el X-Forwarded-For en origin: "cliente, proxy"
+        String origin = root.path("origin").asText(null);
+        String exitIp = null;
+        boolean leaked = false;
+        if (origin != null) {
+            String[] chain = origin.split(",");
+            exitIp = chain[chain.length - 1].trim();
+            for (int i = 0; i < chain.length - 1; i++) {
+                leaked |= chain[i].trim().equals(realIp);
+            }
+        }
+
+        JsonNode headers = root.get("headers");
+        if (headers == null || !headers.isObject()) {
+            return new Verdict(leaked ? ProxyInfo.AnonymityLevel.TRANSPARENT : ProxyInfo.AnonymityLevel.UNKNOWN,
+                    exitIp);
+        }
+
+        boolean revealed = origin != null && origin.indexOf(',') >= 0;
+        for (Iterator<Map.Entry<String, JsonNode>> it = headers.fields(); it.hasNext(); ) {
+            Map.Entry<String, JsonNode> header = it.next();
+            String value = header.getValue().asText("").trim();
+            if (value.isEmpty()) {
+                continue;
+            }
+            if (matches(FORWARDED_HEADERS, header.getKey())) {
+                revealed = true;
+                leaked |= containsAddress(value, realIp);
+            } else if (header.getKey().equalsIgnoreCase("via")) {
+                // Un valor que no tiene forma de Via no es la firma de ningún proxy
+                revealed |= VIA.matcher(value).matches();
+                leaked |= containsAddress(value, realIp);
+            } else if (matches(VIA_HEADERS, header.getKey())) {
+                revealed = true;
+                leaked |= containsAddress(value, realIp);
+            }
+        }
+
+        ProxyInfo.AnonymityLevel level = leaked ? ProxyInfo.AnonymityLevel.TRANSPARENT
+                : revealed ? ProxyInfo.AnonymityLevel.ANONYMOUS
+                : ProxyInfo.AnonymityLevel.ELITE;
+        return new Verdict(level, exitIp);
+    }
+
+    /**
+     * IP de origen que el juez devuelve en una petición directa, o null
+     */
+    static String origin(byte[] body) {
+        try {
+            JsonNode root = MAPPER.readTree(body);
+            String origin = root != null ? root.path("origin").asText(null) : null;
+            return origin != null ? origin.split(",")[0].trim() : null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Si la dirección aparece como elemento del valor, no como parte de otra (1.2.3.4 no está
+     * en 11.2.3.45). Admite las formas de Forwarded: for=1.2.3.4, for="[2001:db8::1]:80".
+     */
+    static boolean containsAddress(String value, String address) {
+        if (address == null) {
+            return false;
+        }
+        for (String token : ADDRESS_SEPARATORS.split(value)) {
+            if (token.equals(address) || token.startsWith(address + ":") && address.indexOf(':') < 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean matches(String[] names, String name) {
+        for (String header : names) {
+            if (header.equalsIgnoreCase(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,107 @@
+package es.srshiroh;
+
+import org.apache.hc.client5.http.DnsResolver;
+import org.apache.hc.client5.http.async.methods.SimpleHttpRequest;
+import org.apache.hc.client5.http.async.methods.SimpleHttpResponse;
+import org.apache.hc.client5.http.async.methods.SimpleRequestBuilder;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.async.CloseableHttpAsyncClient;
+import org.apache.hc.client5.http.impl.async.HttpAsyncClients;
+import org.apache.hc.client5.http.impl.nio.PoolingAsyncClientConnectionManagerBuilder;
+import org.apache.hc.core5.concurrent.FutureCallback;
+import org.apache.hc.core5.io.CloseMode;
+import org.apache.hc.core5.reactor.IOReactorConfig;
+import org.apache.hc.core5.util.Timeout;
+
+import java.io.Closeable;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Motor de verificación no bloqueante basado en el cliente asíncrono de httpclient5.
+ * Un hilo de event-loop por núcleo mantiene miles de verificaciones en vuelo.
+ */
+public class AsyncProxyChecker implements Closeable {
+    private final CloseableHttpAsyncClient client;
+    private final int timeout;
+
+    public AsyncProxyChecker(int maxInFlight, int timeout) {
+        this(maxInFlight, timeout, null);
+    }
+
+    /**
+     * Con un resolvedor propio para los nombres de los proxies (null = el del sistema)
+     */
+    public AsyncProxyChecker(int maxInFlight, int timeout, DnsResolver dnsResolver) {
+        this.timeout = timeout;
+
+        IOReactorConfig reactorConfig = IOReactorConfig.custom()
+                .setIoThreadCount(Runtime.getRuntime().availableProcessors())
+                .setSoTimeout(Timeout.ofMilliseconds(timeout))
+                .build();
+
+        this.client = HttpAsyncClients.custom()
+                .setIOReactorConfig(reactorConfig)
+                .setConnectionManager(PoolingAsyncClientConnectionManagerBuilder.create()
+                        .setMaxConnTotal(maxInFlight * 2)
+                        .setMaxConnPerRoute(2)
+                        .setDnsResolver(dnsResolver)
+                        .setDefaultConnectionConfig(ConnectionConfig.custom()
+                                .setConnectTimeout(Timeout.ofMilliseconds(timeout))
+                                .setSocketTimeout(Timeout.ofMilliseconds(timeout))
+                                .build())
+                        .build())
+                .setRoutePlanner(new ProxyHttpClient.ContextProxyRoutePlanner())
+                .disableAutomaticRetries()
+                .disableCookieManagement()
+                .disableRedirectHandling()
+                .build();
+        this.client.start();
+    }
+
+    /**
+     * Lanza un GET a través del proxy y completa con el código de respuesta
+     */
+    public CompletableFuture<Integer> execute(ProxyInfo proxy, String url) {
+        return fetch(proxy, url).thenApply(response -> response.status);
+    }
+
+    /**
+     * Como execute, pero completa con la respuesta entera (p. ej. el cuerpo de un juez)
+     */
+    CompletableFuture<RawHttp.Response> fetch(ProxyInfo proxy, String url) {
+        CompletableFuture<RawHttp.Response> result = new CompletableFuture<>();
+
+        SimpleHttpRequest request = SimpleRequestBuilder.get(url).build();
+        request.setConfig(RequestConfig.custom()
+                .setConnectionRequestTimeout(Timeout.ofMilliseconds(timeout))
+                .setResponseTimeout(Timeout.ofMilliseconds(timeout))
+                .build());
+
+        client.execute(request, ProxyHttpClient.contextFor(proxy), new FutureCallback<SimpleHttpResponse>() {
+            @Override
+            public void completed(SimpleHttpResponse response) {
+                byte[] body = response.getBodyBytes();
+                result.complete(new RawHttp.Response(response.getCode(), Collections.emptyMap(),
+                        body != null ? body : new byte[0], false));
+            }
+
+            @Override
+            public void failed(Exception e) {
+                result.completeExceptionally(e);
+            }
+
+            @Override
+            public void cancelled() {
+                result.cancel(false);
+            }
+        });
+        return result;
+    }
+
+    @Override
+    public void close() {
+        client.close(CloseMode.IMMEDIATE);
+    }
+}
@@ -0,0 +1,142 @@
+package es.srshiroh;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Cola acotada entre la lectura de la entrada y el despacho que entrega primero los proxies con
+ * mejor prioridad. Con entradas mayores que la capacidad el orden es por ventanas: quien lee
+ * espera a que haya hueco, así que la memoria sigue sin depender del tamaño de la lista.
+ * A igual prioridad se respeta el orden de llegada. Como la prioridad de una subred cambia con
+ * los resultados, lo pendiente se reevalúa cada cierto número de extracciones.
+ */
+class CheckScheduler {
+    private static final int MIN_RESCORE_INTERVAL = 256;
+
+    private final int capacity;
+    private final ProxyPriority priority;
+    private PriorityQueue<Entry> heap = new PriorityQueue<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    private long sequence;
+    private int takesSinceRescore;
+    private boolean finished;
+    private boolean closed;
+
+    CheckScheduler(int capacity, ProxyPriority priority) {
+        this.capacity = Math.max(1, capacity);
+        this.priority = priority;
+    }
+
+    /**
+     * Añade un proxy esperando si la cola está llena. Devuelve false si se cerró.
+     */
+    boolean put(ProxyInfo proxy) throws InterruptedException {
+        long score = priority.score(proxy);
+        lock.lockInterruptibly();
+        try {
+            while (heap.size() >= capacity && !closed) {
+                notFull.await();
+            }
+            if (closed) {
+                return false;
+            }
+            heap.add(new Entry(score, sequence++, proxy));
+            notEmpty.signal();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Siguiente proxy por prioridad; null cuando ya no llegarán más o se cerró
+     */
+    ProxyInfo take() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (heap.isEmpty() && !finished && !closed) {
+                notEmpty.await();
+            }
+            if (closed || heap.isEmpty()) {
+                return null;
+            }
+            // Reordenar todo cuesta O(n): cada n/16 extracciones sale a O(16) por proxy
+            if (++takesSinceRescore >= Math.max(MIN_RESCORE_INTERVAL, heap.size() / 16)) {
+                rescore();
+            }
+            notFull.signal();
+            return heap.poll().proxy;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void rescore() {
+        takesSinceRescore = 0;
+        List<Entry> entries = new ArrayList<>(heap.size());
+        for (Entry entry : heap) {
+            entries.add(new Entry(priority.score(entry.proxy), entry.sequence, entry.proxy));
+        }
+        heap = new PriorityQueue<>(entries);
+    }
+
+    /**
+     * No llegarán más proxies; take() vacía lo pendiente y después devuelve null
+     */
+    void finish() {
+        lock.lock();
+        try {
+            finished = true;
+            notEmpty.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Descarta lo pendiente y despierta a todos
+     */
+    void close() {
+        lock.lock();
+        try {
+            closed = true;
+            heap.clear();
+            notEmpty.signalAll();
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int size() {
+        lock.lock();
+        try {
+            return heap.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static final class Entry implements Comparable<Entry> {
+        final long score;
+        final long sequence;
+        final ProxyInfo proxy;
+
+        Entry(long score, long sequence, ProxyInfo proxy) {
+            this.score = score;
+            this.sequence = sequence;
+            this.proxy = proxy;
+        }
+
+        @Override
+        public int compareTo(Entry other) {
+            int byScore = Long.compare(score, other.score);
+            return byScore != 0 ? byScore : Long.compare(sequence, other.sequence);
+        }
+    }
+}
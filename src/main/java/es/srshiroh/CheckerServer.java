@@ -0,0 +1,558 @@
+package es.srshiroh;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Modo servidor: un único ProxyManager en caliente atiende trabajos por HTTP (servidor del JDK).
+ *
+ * <pre>
+ * POST /jobs                 cuerpo: lista de proxies (se verifica mientras se recibe) → {"id": ...}
+ *                            en cuanto llega el cuerpo, sin esperar a que el motor lo admita entero
+ * GET  /jobs/{id}            estado del trabajo
+ * GET  /jobs/{id}/results    resultados en NDJSON, en vivo hasta terminar
+ * GET  /jobs/{id}/events     los mismos resultados como server-sent events
+ * GET  /pool?type=&amp;country=&amp;anonymity=&amp;maxLatency=&amp;limit=   proxies válidos, del más rápido al más lento
+ * GET  /stats                contadores del motor
+ * </pre>
+ */
+public class CheckerServer implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(CheckerServer.class);
+
+    private static final JsonFactory JSON = new JsonFactory();
+    private static final long JOB_RETENTION = TimeUnit.HOURS.toMillis(1);
+    private static final long HEARTBEAT_MILLIS = 15000;
+    private static final long KNOWN_PURGE_MILLIS = TimeUnit.MINUTES.toMillis(1);
+    private static final ProxyInfo END_OF_UPLOAD = new ProxyInfo("", 0, ProxyInfo.ProxyType.HTTP);
+
+    private final ProxyManager manager;
+    private final HttpServer server;
+    private final ExecutorService workers = VirtualThreads.newPerTaskExecutor("checker-server");
+    private final AtomicLong jobIds = new AtomicLong();
+    private final Map<Long, Job> jobs = new ConcurrentHashMap<>();
+
+    // Instancia única por host:puerto y trabajos que esperan su resultado. Un resultado vale lo
+    // que el TTL de la caché del motor; los inválidos caducados se olvidan
+    private final Map<String, ProxyInfo> known = new ConcurrentHashMap<>();
+    private final Map<ProxyInfo, List<Job>> subscribers = new ConcurrentHashMap<>();
+    private final AtomicLong lastKnownPurge = new AtomicLong(System.currentTimeMillis());
+
+    /**
+     * Trabajo: proxies pedidos en un POST y sus resultados en orden de llegada
+     */
+    private static final class Job {
+        final long id;
+        final List<ProxyInfo> results = new ArrayList<>();
+        int submitted;
+        int duplicates;
+        int invalid;
+        int valid;
+        boolean uploadComplete;
+        long finishedAt;
+
+        Job(long id) {
+            this.id = id;
+        }
+
+        synchronized void expect() {
+            submitted++;
+        }
+
+        synchronized void deliver(ProxyInfo proxy) {
+            results.add(proxy);
+            if (proxy.isValid()) {
+                valid++;
+            }
+            checkDone();
+            notifyAll();
+        }
+
+        synchronized void uploaded() {
+            uploadComplete = true;
+            checkDone();
+            notifyAll();
+        }
+
+        private void checkDone() {
+            if (uploadComplete && results.size() >= submitted && finishedAt == 0) {
+                finishedAt = System.currentTimeMillis();
+            }
+        }
+
+        synchronized boolean isDone() {
+            return finishedAt != 0;
+        }
+    }
+
+    public CheckerServer(ProxyManager manager, InetSocketAddress address) throws IOException {
+        this.manager = manager;
+        // Se encadena tras el callback que ya tuviera el motor
+        Consumer<ProxyInfo> previous = manager.getOnProxyChecked();
+        manager.setOnProxyChecked(previous != null ? previous.andThen(this::onProxyChecked) : this::onProxyChecked);
+        this.server = HttpServer.create(address, 1024);
+        server.createContext("/jobs", this::handleJobs);
+        server.createContext("/pool", this::handlePool);
+        server.createContext("/stats", this::handleStats);
+        server.setExecutor(workers);
+        server.start();
+        logger.info("Servidor de verificación escuchando en {}", server.getAddress());
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    private void onProxyChecked(ProxyInfo proxy) {
+        List<Job> waiting = subscribers.remove(proxy);
+        if (waiting != null) {
+            for (Job job : waiting) {
+                job.deliver(proxy);
+            }
+        }
+    }
+
+    private void handleJobs(HttpExchange exchange) throws IOException {
+        try {
+            String[] parts = exchange.getRequestURI().getPath().split("/");
+            // "", "jobs", id, vista
+            if (parts.length == 2 && exchange.getRequestMethod().equals("POST")) {
+                createJob(exchange);
+                return;
+            }
+            if (parts.length < 3 || !exchange.getRequestMethod().equals("GET")) {
+                sendError(exchange, 405, "Use POST /jobs o GET /jobs/{id}");
+                return;
+            }
+            Job job = findJob(parts[2]);
+            if (job == null) {
+                sendError(exchange, 404, "Trabajo no encontrado");
+                return;
+            }
+            String view = parts.length > 3 ? parts[3] : "";
+            switch (view) {
+                case "":
+                    sendJson(exchange, 200, generator -> writeJobStatus(generator, job));
+                    break;
+                case "results":
+                    streamResults(exchange, job, false);
+                    break;
+                case "events":
+                    streamResults(exchange, job, true);
+                    break;
+                default:
+                    sendError(exchange, 404, "Vista desconocida: " + view);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            logger.debug("Conexión cerrada por el cliente: {}", e.getMessage());
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private Job findJob(String id) {
+        try {
+            return jobs.get(Long.parseLong(id));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Lee la lista línea a línea y responde con el id en cuanto termina el cuerpo. Los proxies
+     * los entrega al motor un hilo propio del trabajo, que empieza mientras se recibe: la espera
+     * por la contrapresión del motor no retrasa la respuesta ni la lectura de resultados.
+     */
+    private void createJob(HttpExchange exchange) throws IOException {
+        purgeOldJobs();
+        Job job = new Job(jobIds.incrementAndGet());
+        jobs.put(job.id, job);
+        LinkedBlockingQueue<ProxyInfo> incoming = new LinkedBlockingQueue<>();
+        Thread dispatcher = new Thread(() -> dispatch(job, incoming), "job-" + job.id);
+        dispatcher.setDaemon(true);
+        dispatcher.start();
+
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                ProxyInfo parsed;
+                try {
+                    parsed = ProxyInfo.fromString(line);
+                } catch (IllegalArgumentException e) {
+                    synchronized (job) {
+                        job.invalid++;
+                    }
+                    continue;
+                }
+                incoming.add(parsed);
+            }
+        } finally {
+            incoming.add(END_OF_UPLOAD);
+        }
+
+        sendJson(exchange, 202, generator -> writeJobStatus(generator, job));
+    }
+
+    /**
+     * Entrega al motor los proxies recibidos para el trabajo, en orden
+     */
+    private void dispatch(Job job, BlockingQueue<ProxyInfo> incoming) {
+        try {
+            for (ProxyInfo parsed = incoming.take(); parsed != END_OF_UPLOAD; parsed = incoming.take()) {
+                submit(job, parsed);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            job.uploaded();
+        }
+    }
+
+    private void submit(Job job, ProxyInfo parsed) throws InterruptedException {
+        String key = parsed.getHost() + ":" + parsed.getPort();
+        ProxyInfo proxy = known.putIfAbsent(key, parsed);
+        if (proxy == null) {
+            job.expect();
+            subscribe(parsed, job);
+            if (manager.submitProxy(parsed)) {
+                return;
+            }
+            // Procesado fuera del servidor (p. ej. una lista o instantánea cargada al arrancar):
+            // vale la instancia que tiene el motor, o se verifica de nuevo si no la conserva
+            ProxyInfo held = manager.findProxy(parsed.getHost(), parsed.getPort());
+            if (held == null) {
+                if (!manager.revalidate(parsed) && unsubscribe(parsed, job)) {
+                    job.deliver(parsed); // Verificación cancelada
+                }
+                return;
+            }
+            if (!unsubscribe(parsed, job)) {
+                return;
+            }
+            known.replace(key, parsed, held);
+            proxy = held;
+        } else {
+            synchronized (job) {
+                job.duplicates++;
+            }
+            job.expect();
+        }
+
+        if (proxy.getLastChecked() != null && !isStale(proxy)) {
+            // Verificado hace poco (y mantenido al día si la revalidación continua está activa)
+            job.deliver(proxy);
+            return;
+        }
+        boolean stale = proxy.getLastChecked() != null;
+        if (subscribe(proxy, job) && stale) {
+            // Primero en pedir un resultado caducado: se verifica otra vez y los demás esperan
+            if (!isStale(proxy)) {
+                // Otra verificación terminó entre medias
+                if (unsubscribe(proxy, job)) {
+                    job.deliver(proxy);
+                }
+            } else if (!manager.revalidate(proxy) && unsubscribe(proxy, job)) {
+                job.deliver(proxy);
+            }
+            return;
+        }
+        // El primer resultado pudo llegar entre la comprobación y la suscripción
+        if (!stale && proxy.getLastChecked() != null && unsubscribe(proxy, job)) {
+            job.deliver(proxy);
+        }
+    }
+
+    private boolean isStale(ProxyInfo proxy) {
+        LocalDateTime checked = proxy.getLastChecked();
+        return checked == null || checked.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli()
+                < System.currentTimeMillis() - manager.getCacheTtl();
+    }
+
+    /**
+     * Suscribe el trabajo al próximo resultado del proxy; true si es el primero en esperarlo
+     */
+    private boolean subscribe(ProxyInfo proxy, Job job) {
+        boolean[] first = new boolean[1];
+        subscribers.compute(proxy, (key, list) -> {
+            first[0] = list == null;
+            List<Job> updated = list != null ? list : new ArrayList<>(1);
+            updated.add(job);
+            return updated;
+        });
+        return first[0];
+    }
+
+    /**
+     * Retira la suscripción; false si el resultado ya se entregó
+     */
+    private boolean unsubscribe(ProxyInfo proxy, Job job) {
+        boolean[] removed = new boolean[1];
+        subscribers.computeIfPresent(proxy, (key, list) -> {
+            removed[0] = list.remove(job);
+            return list.isEmpty() ? null : list;
+        });
+        return removed[0];
+    }
+
+    private void purgeOldJobs() {
+        long now = System.currentTimeMillis();
+        long cutoff = now - JOB_RETENTION;
+        for (Iterator<Job> it = jobs.values().iterator(); it.hasNext(); ) {
+            Job job = it.next();
+            synchronized (job) {
+                if (job.finishedAt != 0 && job.finishedAt < cutoff) {
+                    it.remove();
+                }
+            }
+        }
+
+        long last = lastKnownPurge.get();
+        if (now - last >= KNOWN_PURGE_MILLIS && lastKnownPurge.compareAndSet(last, now)) {
+            purgeKnown();
+        }
+    }
+
+    /**
+     * Olvida los inválidos caducados que nadie espera: no ocupan memoria en el servidor ni en el
+     * motor y, si vuelven a pedirse, se verifican como nuevos. Los válidos siguen en el pool.
+     */
+    private void purgeKnown() {
+        int purged = 0;
+        for (Iterator<ProxyInfo> it = known.values().iterator(); it.hasNext(); ) {
+            ProxyInfo proxy = it.next();
+            if (proxy.getLastChecked() != null && !proxy.isValid() && isStale(proxy)
+                    && !subscribers.containsKey(proxy)) {
+                it.remove();
+                manager.forgetProxy(proxy);
+                purged++;
+            }
+        }
+        if (purged > 0) {
+            logger.debug("Olvidados {} proxies inválidos caducados", purged);
+        }
+    }
+
+    /**
+     * Envía los resultados ya disponibles y después los nuevos según llegan, hasta terminar
+     */
+    private void streamResults(HttpExchange exchange, Job job, boolean sse) throws IOException, InterruptedException {
+        exchange.getResponseHeaders().set("Content-Type", sse ? "text/event-stream" : "application/x-ndjson");
+        exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+        exchange.sendResponseHeaders(200, 0);
+
+        try (OutputStream out = exchange.getResponseBody()) {
+            int next = 0;
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            while (true) {
+                List<ProxyInfo> batch;
+                boolean done;
+                synchronized (job) {
+                    if (job.results.size() == next && !job.isDone()) {
+                        job.wait(HEARTBEAT_MILLIS);
+                    }
+                    batch = new ArrayList<>(job.results.subList(next, job.results.size()));
+                    done = job.isDone() && next + batch.size() == job.results.size();
+                }
+                next += batch.size();
+
+                buffer.reset();
+                for (ProxyInfo proxy : batch) {
+                    if (sse) {
+                        buffer.write("event: result\ndata: ".getBytes(StandardCharsets.UTF_8));
+                    }
+                    try (JsonGenerator generator = JSON.createGenerator(buffer)) {
+                        generator.configure(JsonGenerator.Feature.AUTO_CLOSE_TARGET, false);
+                        writeProxy(generator, proxy);
+                    }
+                    buffer.write(sse ? "\n\n".getBytes(StandardCharsets.UTF_8) : new byte[]{'\n'});
+                }
+                if (done && sse) {
+                    buffer.write("event: done\ndata: ".getBytes(StandardCharsets.UTF_8));
+                    try (JsonGenerator generator = JSON.createGenerator(buffer)) {
+                        generator.configure(JsonGenerator.Feature.AUTO_CLOSE_TARGET, false);
+                        writeJobStatus(generator, job);
+                    }
+                    buffer.write("\n\n".getBytes(StandardCharsets.UTF_8));
+                } else if (batch.isEmpty() && sse) {
+                    buffer.write(":\n\n".getBytes(StandardCharsets.UTF_8)); // Mantener viva la conexión
+                }
+                buffer.writeTo(out);
+                out.flush();
+                if (done) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private void handlePool(HttpExchange exchange) throws IOException {
+        try {
+            Map<String, String> query = parseQuery(exchange.getRequestURI());
+            ProxyInfo.ProxyType type = query.containsKey("type")
+                    ? ProxyInfo.ProxyType.fromString(query.get("type")) : null;
+            long maxLatency = Long.parseLong(query.getOrDefault("maxLatency", String.valueOf(Long.MAX_VALUE)));
+            int limit = Integer.parseInt(query.getOrDefault("limit", "100"));
+            String country = query.get("country");
+            ProxyInfo.AnonymityLevel anonymity = query.containsKey("anonymity")
+                    ? ProxyInfo.AnonymityLevel.valueOf(query.get("anonymity").toUpperCase()) : null;
+
+            List<ProxyInfo> fastest;
+            if (country != null) {
+                fastest = manager.getProxiesByCountry(country);
+            } else if (anonymity != null) {
+                fastest = manager.getProxiesByAnonymity(anonymity);
+            } else {
+                fastest = type != null ? manager.getFastestProxies(type, limit) : manager.getFastestProxies(limit);
+            }
+            sendJson(exchange, 200, generator -> {
+                generator.writeStartArray();
+                int written = 0;
+                for (ProxyInfo proxy : fastest) {
+                    if (proxy.getResponseTime() > maxLatency || written == limit) {
+                        break; // Ordenados por latencia
+                    }
+                    if ((type == null || proxy.getType() == type)
+                            && (anonymity == null || proxy.getAnonymity() == anonymity)) {
+                        writeProxy(generator, proxy);
+                        written++;
+                    }
+                }
+                generator.writeEndArray();
+            });
+        } catch (IllegalArgumentException e) {
+            sendError(exchange, 400, "Parámetro inválido: " + e.getMessage());
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void handleStats(HttpExchange exchange) throws IOException {
+        try {
+            sendJson(exchange, 200, generator -> {
+                generator.writeStartObject();
+                generator.writeNumberField("checked", manager.getCheckedCount());
+                generator.writeNumberField("total", manager.getTotalCount());
+                generator.writeNumberField("valid", manager.getValidProxyCount());
+                generator.writeNumberField("cached", manager.getCachedCount());
+                generator.writeNumberField("averageResponseTime", manager.getAverageResponseTime());
+                generator.writeNumberField("p50", manager.getResponseTimePercentile(50));
+                generator.writeNumberField("p99", manager.getResponseTimePercentile(99));
+                generator.writeNumberField("concurrency", manager.getConcurrencyLimit());
+                generator.writeNumberField("jobs", jobs.size());
+                if (manager.hasGeoIpDatabase()) {
+                    generator.writeObjectFieldStart("countries");
+                    for (Map.Entry<String, Integer> entry : manager.getValidCountByCountry().entrySet()) {
+                        generator.writeNumberField(entry.getKey(), entry.getValue());
+                    }
+                    generator.writeEndObject();
+                }
+                generator.writeEndObject();
+            });
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static void writeJobStatus(JsonGenerator generator, Job job) throws IOException {
+        synchronized (job) {
+            generator.writeStartObject();
+            generator.writeNumberField("id", job.id);
+            generator.writeNumberField("submitted", job.submitted);
+            generator.writeNumberField("completed", job.results.size());
+            generator.writeNumberField("valid", job.valid);
+            generator.writeNumberField("duplicates", job.duplicates);
+            generator.writeNumberField("invalidLines", job.invalid);
+            generator.writeBooleanField("done", job.finishedAt != 0);
+            generator.writeEndObject();
+        }
+    }
+
+    private static void writeProxy(JsonGenerator generator, ProxyInfo proxy) throws IOException {
+        ResultStreamWriter.writeRecord(generator, proxy);
+    }
+
+    /**
+     * Escribe el cuerpo JSON de una respuesta
+     */
+    private interface JsonBody {
+        void write(JsonGenerator generator) throws IOException;
+    }
+
+    private static void sendJson(HttpExchange exchange, int status, JsonBody body) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        try (JsonGenerator generator = JSON.createGenerator(buffer)) {
+            body.write(generator);
+        }
+        byte[] bytes = buffer.toByteArray();
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        sendJson(exchange, status, generator -> {
+            generator.writeStartObject();
+            generator.writeStringField("error", message);
+            generator.writeEndObject();
+        });
+    }
+
+    private static Map<String, String> parseQuery(URI uri) {
+        Map<String, String> query = new HashMap<>();
+        String raw = uri.getRawQuery();
+        if (raw == null) {
+            return query;
+        }
+        for (String pair : raw.split("&")) {
+            int equals = pair.indexOf('=');
+            if (equals > 0) {
+                query.put(URLDecoder.decode(pair.substring(0, equals), StandardCharsets.UTF_8),
+                        URLDecoder.decode(pair.substring(equals + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return query;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        workers.shutdownNow();
+    }
+}
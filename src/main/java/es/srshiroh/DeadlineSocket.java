@@ -0,0 +1,92 @@
+package es.srshiroh;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.Socket;
+import java.net.SocketAddress;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Socket con un plazo total para toda una verificación. Antes de cada lectura ajusta el timeout
+ * a lo que queda hasta el plazo y, vencido, falla con SocketTimeoutException: un proxy que
+ * envía un byte cada poco no retiene al worker más allá del plazo. Las capas TLS montadas
+ * encima leen a través de getInputStream(), así que el saludo TLS también queda acotado.
+ */
+final class DeadlineSocket extends Socket {
+    private volatile boolean bounded;
+    private volatile long deadline; // System.nanoTime()
+    private InputStream input;
+
+    DeadlineSocket(long deadline) {
+        setDeadline(deadline);
+    }
+
+    /**
+     * Plazo que vence dentro de millis milisegundos
+     */
+    static long deadlineIn(int millis) {
+        return System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+
+    void setDeadline(long deadline) {
+        this.deadline = deadline;
+        this.bounded = true;
+    }
+
+    /**
+     * Quita el plazo (p. ej. un túnel ya abierto): vuelve a valer solo el timeout por lectura
+     */
+    void clearDeadline() {
+        this.bounded = false;
+    }
+
+    /**
+     * Milisegundos que quedan hasta el plazo; falla si ya venció
+     */
+    int remainingMillis() throws SocketTimeoutException {
+        long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+        if (remaining <= 0) {
+            throw new SocketTimeoutException("Tiempo total de verificación agotado");
+        }
+        return (int) Math.min(Integer.MAX_VALUE, remaining);
+    }
+
+    @Override
+    public void connect(SocketAddress endpoint, int timeout) throws IOException {
+        super.connect(endpoint, bounded ? Math.min(timeout, remainingMillis()) : timeout);
+    }
+
+    @Override
+    public synchronized InputStream getInputStream() throws IOException {
+        if (input == null) {
+            input = new DeadlineInputStream(super.getInputStream());
+        }
+        return input;
+    }
+
+    private void arm() throws IOException {
+        if (bounded) {
+            setSoTimeout(remainingMillis());
+        }
+    }
+
+    private final class DeadlineInputStream extends FilterInputStream {
+        DeadlineInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            arm();
+            return in.read();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            arm();
+            return in.read(b, off, len);
+        }
+    }
+}
@@ -0,0 +1,316 @@
+package es.srshiroh;
+
+import org.apache.hc.client5.http.DnsResolver;
+import org.apache.hc.client5.http.SystemDefaultDnsResolver;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.security.Security;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Caché de resolución de nombres para los proxies dados por nombre de host.
+ * Las respuestas duran el TTL de la JVM (networkaddress.cache.ttl) y los fallos el TTL negativo
+ * (networkaddress.cache.negative.ttl), con un número máximo de entradas. prefetch() resuelve por
+ * adelantado en hilos propios para que los workers encuentren la respuesta hecha, y las consultas
+ * simultáneas a un mismo nombre comparten una única resolución. Se usa también como DnsResolver
+ * de los clientes httpclient5 para no resolver dos veces el mismo proxy.
+ */
+public class DnsCache implements DnsResolver, Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(DnsCache.class);
+
+    public static final int DEFAULT_MAX_ENTRIES = 100000;
+    // Valores por defecto del JDK sin gestor de seguridad
+    private static final long DEFAULT_TTL = TimeUnit.SECONDS.toMillis(30);
+    private static final long DEFAULT_NEGATIVE_TTL = TimeUnit.SECONDS.toMillis(10);
+    private static final int RESOLVER_THREADS = 16;
+
+    /**
+     * Resolución de un nombre: en curso mientras el futuro no se complete
+     */
+    private static final class Entry {
+        final CompletableFuture<InetAddress[]> result = new CompletableFuture<>();
+        volatile long expiresAt = Long.MAX_VALUE;
+    }
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicBoolean evicting = new AtomicBoolean(false);
+    private final ExecutorService resolvers;
+    private volatile DnsResolver delegate;
+    private volatile long ttl = securityTtl("networkaddress.cache.ttl", DEFAULT_TTL);
+    private volatile long negativeTtl = securityTtl("networkaddress.cache.negative.ttl", DEFAULT_NEGATIVE_TTL);
+    private volatile int maxEntries = DEFAULT_MAX_ENTRIES;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder lookups = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+
+    public DnsCache() {
+        this(SystemDefaultDnsResolver.INSTANCE);
+    }
+
+    /**
+     * Con un resolvedor propio, p. ej. un InMemoryDnsResolver para pruebas locales
+     */
+    public DnsCache(DnsResolver delegate) {
+        this.delegate = delegate;
+        AtomicInteger counter = new AtomicInteger();
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(RESOLVER_THREADS, RESOLVER_THREADS, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), r -> {
+                    Thread thread = new Thread(r, "dns-resolver-" + counter.getAndIncrement());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        pool.allowCoreThreadTimeOut(true);
+        this.resolvers = pool;
+    }
+
+    private static long securityTtl(String property, long fallback) {
+        try {
+            String value = Security.getProperty(property);
+            if (value != null) {
+                long seconds = Long.parseLong(value.trim());
+                // -1 en la JVM es "para siempre": aquí se acota al día
+                return seconds < 0 ? TimeUnit.DAYS.toMillis(1) : TimeUnit.SECONDS.toMillis(seconds);
+            }
+        } catch (NumberFormatException | SecurityException ignored) {
+            // Se usa el valor por defecto
+        }
+        return fallback;
+    }
+
+    public void setResolver(DnsResolver delegate) {
+        this.delegate = delegate;
+        clear();
+    }
+
+    public void setTtl(long ttlMillis) {
+        this.ttl = Math.max(0, ttlMillis);
+    }
+
+    public long getTtl() {
+        return ttl;
+    }
+
+    public void setNegativeTtl(long negativeTtlMillis) {
+        this.negativeTtl = Math.max(0, negativeTtlMillis);
+    }
+
+    public void setMaxEntries(int maxEntries) {
+        this.maxEntries = Math.max(1, maxEntries);
+    }
+
+    /**
+     * Empieza a resolver el nombre en segundo plano si no está ya en la caché
+     */
+    public void prefetch(String host) {
+        if (!isLiteral(host)) {
+            lookup(host, false);
+        }
+    }
+
+    /**
+     * Resolución sin bloquear: el futuro ya está completo si el nombre estaba en la caché
+     */
+    public CompletableFuture<InetAddress[]> resolveAsync(String host) {
+        if (isLiteral(host)) {
+            try {
+                return CompletableFuture.completedFuture(InetAddress.getAllByName(host));
+            } catch (UnknownHostException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        }
+        return lookup(host, false).result;
+    }
+
+    /**
+     * Resolución bloqueante. Si otro hilo ya está resolviendo el nombre se espera a su respuesta;
+     * si nadie lo está haciendo se resuelve en el hilo que llama.
+     */
+    @Override
+    public InetAddress[] resolve(String host) throws UnknownHostException {
+        if (isLiteral(host)) {
+            return InetAddress.getAllByName(host);
+        }
+        try {
+            return lookup(host, true).result.get();
+        } catch (ExecutionException e) {
+            throw asUnknownHost(host, e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new UnknownHostException(host + " (resolución interrumpida)");
+        }
+    }
+
+    @Override
+    public String resolveCanonicalHostname(String host) throws UnknownHostException {
+        return delegate.resolveCanonicalHostname(host);
+    }
+
+    /**
+     * Primera dirección ya resuelta y vigente del nombre, o null; nunca resuelve ni espera
+     */
+    public InetAddress peek(String host) {
+        Entry entry = entries.get(host);
+        if (entry == null || entry.expiresAt <= System.currentTimeMillis()
+                || !entry.result.isDone() || entry.result.isCompletedExceptionally()) {
+            return null;
+        }
+        return entry.result.join()[0];
+    }
+
+    public InetSocketAddress resolve(String host, int port) throws UnknownHostException {
+        return new InetSocketAddress(resolve(host)[0], port);
+    }
+
+    static UnknownHostException asUnknownHost(String host, Throwable error) {
+        if (error instanceof CompletionException && error.getCause() != null) {
+            error = error.getCause();
+        }
+        if (error instanceof UnknownHostException) {
+            return (UnknownHostException) error;
+        }
+        UnknownHostException wrapped = new UnknownHostException(host + ": " + error.getMessage());
+        wrapped.initCause(error);
+        return wrapped;
+    }
+
+    private Entry lookup(String host, boolean inline) {
+        long now = System.currentTimeMillis();
+        Entry entry = entries.get(host);
+        if (entry != null && entry.expiresAt > now) {
+            hits.increment();
+            return entry;
+        }
+
+        Entry fresh = new Entry();
+        entry = entries.compute(host, (key, current) ->
+                current != null && current.expiresAt > now ? current : fresh);
+        if (entry != fresh) {
+            hits.increment();
+            return entry;
+        }
+
+        lookups.increment();
+        if (entries.size() > maxEntries) {
+            evict();
+        }
+        if (inline) {
+            complete(host, fresh);
+        } else {
+            try {
+                resolvers.execute(() -> complete(host, fresh));
+            } catch (RuntimeException e) {
+                complete(host, fresh); // Ejecutor cerrado
+            }
+        }
+        return fresh;
+    }
+
+    private void complete(String host, Entry entry) {
+        try {
+            InetAddress[] addresses = delegate.resolve(host);
+            if (addresses == null || addresses.length == 0) {
+                throw new UnknownHostException(host);
+            }
+            expire(host, entry, ttl);
+            entry.result.complete(addresses);
+        } catch (UnknownHostException e) {
+            failures.increment();
+            expire(host, entry, negativeTtl);
+            entry.result.completeExceptionally(e);
+        } catch (RuntimeException e) {
+            // Fallo del resolvedor, no respuesta negativa: no se guarda
+            logger.debug("Error resolviendo {}: {}", host, e.getMessage());
+            entries.remove(host, entry);
+            entry.result.completeExceptionally(asUnknownHost(host, e));
+        }
+    }
+
+    private void expire(String host, Entry entry, long entryTtl) {
+        if (entryTtl == 0) {
+            entries.remove(host, entry);
+        } else {
+            entry.expiresAt = System.currentTimeMillis() + entryTtl;
+        }
+    }
+
+    /**
+     * Quita las entradas caducadas y, si no basta, resoluciones terminadas cualesquiera
+     * hasta dejar un octavo de hueco
+     */
+    private void evict() {
+        if (!evicting.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            long now = System.currentTimeMillis();
+            entries.values().removeIf(entry -> entry.expiresAt <= now);
+            int target = maxEntries - maxEntries / 8;
+            Iterator<Entry> it = entries.values().iterator();
+            while (entries.size() > target && it.hasNext()) {
+                if (it.next().result.isDone()) {
+                    it.remove();
+                }
+            }
+        } finally {
+            evicting.set(false);
+        }
+    }
+
+    /**
+     * IPv4 o IPv6 literal: no necesita DNS
+     */
+    static boolean isLiteral(String host) {
+        return host.indexOf(':') >= 0 || ProxyPriority.subnetOf(host) >= 0;
+    }
+
+    public int getSize() {
+        return entries.size();
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * Resoluciones reales hechas contra el resolvedor
+     */
+    public long getLookupCount() {
+        return lookups.sum();
+    }
+
+    public long getFailureCount() {
+        return failures.sum();
+    }
+
+    public void clear() {
+        entries.clear();
+    }
+
+    @Override
+    public void close() {
+        resolvers.shutdownNow();
+        // Quien espere una resolución que ya no se hará recibe un fallo en lugar de quedarse colgado
+        for (Entry entry : entries.values()) {
+            entry.result.completeExceptionally(new UnknownHostException("Resolvedor cerrado"));
+        }
+        entries.clear();
+    }
+}
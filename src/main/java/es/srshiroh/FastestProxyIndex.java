@@ -0,0 +1,106 @@
+package es.srshiroh;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Índice concurrente de proxies válidos ordenados por tiempo de respuesta.
+ * Se actualiza con cada resultado; las consultas de los K más rápidos recorren
+ * solo K entradas, sin ordenar la lista completa ni tomar un cerrojo global.
+ */
+public class FastestProxyIndex {
+    private final NavigableSet<Entry> all = new ConcurrentSkipListSet<>();
+    private final Map<ProxyInfo.ProxyType, NavigableSet<Entry>> byType = new EnumMap<>(ProxyInfo.ProxyType.class);
+    private final ConcurrentHashMap<ProxyInfo, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+
+    public FastestProxyIndex() {
+        for (ProxyInfo.ProxyType type : ProxyInfo.ProxyType.values()) {
+            byType.put(type, new ConcurrentSkipListSet<>());
+        }
+    }
+
+    /**
+     * Refleja el último resultado del proxy: lo recoloca si es válido y lo retira si no
+     */
+    public void update(ProxyInfo proxy, boolean valid, long responseTime) {
+        // compute serializa las actualizaciones de un mismo proxy
+        entries.compute(proxy, (key, previous) -> {
+            if (previous != null) {
+                all.remove(previous);
+                byType.get(previous.proxy.getType()).remove(previous);
+            }
+            if (!valid) {
+                return null;
+            }
+            Entry entry = new Entry(responseTime, sequence.incrementAndGet(), proxy);
+            all.add(entry);
+            byType.get(proxy.getType()).add(entry);
+            return entry;
+        });
+    }
+
+    public void remove(ProxyInfo proxy) {
+        update(proxy, false, -1);
+    }
+
+    /**
+     * Los limit proxies válidos más rápidos
+     */
+    public List<ProxyInfo> getFastest(int limit) {
+        return collect(all, limit);
+    }
+
+    public List<ProxyInfo> getFastest(ProxyInfo.ProxyType type, int limit) {
+        return collect(byType.get(type), limit);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public void clear() {
+        entries.clear();
+        all.clear();
+        for (NavigableSet<Entry> set : byType.values()) {
+            set.clear();
+        }
+    }
+
+    private static List<ProxyInfo> collect(NavigableSet<Entry> set, int limit) {
+        List<ProxyInfo> result = new ArrayList<>(Math.min(Math.max(limit, 0), 1024));
+        Iterator<Entry> iterator = set.iterator();
+        while (result.size() < limit && iterator.hasNext()) {
+            result.add(iterator.next().proxy);
+        }
+        return result;
+    }
+
+    /**
+     * Entrada inmutable: la secuencia desempata latencias iguales
+     */
+    private static final class Entry implements Comparable<Entry> {
+        final long responseTime;
+        final long sequence;
+        final ProxyInfo proxy;
+
+        Entry(long responseTime, long sequence, ProxyInfo proxy) {
+            this.responseTime = responseTime;
+            this.sequence = sequence;
+            this.proxy = proxy;
+        }
+
+        @Override
+        public int compareTo(Entry other) {
+            int byTime = Long.compare(responseTime, other.responseTime);
+            return byTime != 0 ? byTime : Long.compare(sequence, other.sequence);
+        }
+    }
+}
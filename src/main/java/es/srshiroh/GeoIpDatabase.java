@@ -0,0 +1,261 @@
+package es.srshiroh;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Base de datos GeoIP local para IPv4, sin conexión a ningún servicio.
+ * Se carga de un CSV de rangos (inicio,fin,país como DB-IP o IP2Location, con IPs en texto o
+ * como enteros) o de redes (CIDR,país). Los rangos quedan en arrays primitivos ordenados y cada
+ * consulta es una búsqueda binaria que no crea objetos. Las filas IPv6 se ignoran.
+ */
+public class GeoIpDatabase {
+    private static final Logger logger = LoggerFactory.getLogger(GeoIpDatabase.class);
+
+    private static final int MAX_ROWS = 1 << 24; // El índice de fila cabe en 24 bits al ordenar
+
+    // Con el bit de signo invertido el orden con signo coincide con el de las IPs sin signo
+    private final int[] starts;
+    private final int[] ends;
+    private final char[] countries; // Índice en codes
+    private final String[] codes;
+
+    private GeoIpDatabase(int[] starts, int[] ends, char[] countries, String[] codes) {
+        this.starts = starts;
+        this.ends = ends;
+        this.countries = countries;
+        this.codes = codes;
+    }
+
+    public static GeoIpDatabase load(Path file) throws IOException {
+        int[] starts = new int[1024];
+        int[] ends = new int[1024];
+        char[] countries = new char[1024];
+        Map<String, Integer> codeIndex = new HashMap<>();
+        List<String> codes = new ArrayList<>();
+        int rows = 0;
+        long skipped = 0;
+        boolean sorted = true;
+
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            String[] fields = new String[4];
+            while ((line = reader.readLine()) != null) {
+                int count = split(line, fields);
+                long start;
+                long end;
+                String code;
+                if (count >= 2 && fields[0].indexOf('/') >= 0) {
+                    long[] range = parseCidr(fields[0]);
+                    if (range == null) {
+                        skipped++;
+                        continue;
+                    }
+                    start = range[0];
+                    end = range[1];
+                    code = fields[1];
+                } else if (count >= 3) {
+                    start = parseAddress(fields[0]);
+                    end = parseAddress(fields[1]);
+                    code = fields[2];
+                } else {
+                    skipped++;
+                    continue;
+                }
+                // Cabeceras, IPv6 y filas sin país
+                if (start < 0 || end < start || code.length() != 2 || code.equals("--")) {
+                    skipped++;
+                    continue;
+                }
+                if (rows == MAX_ROWS) {
+                    throw new IOException("Demasiados rangos en " + file + " (máximo " + MAX_ROWS + ")");
+                }
+                if (rows == starts.length) {
+                    starts = Arrays.copyOf(starts, rows * 2);
+                    ends = Arrays.copyOf(ends, rows * 2);
+                    countries = Arrays.copyOf(countries, rows * 2);
+                }
+                String upper = code.toUpperCase();
+                Integer index = codeIndex.get(upper);
+                if (index == null) {
+                    index = codes.size();
+                    codeIndex.put(upper, index);
+                    codes.add(upper);
+                }
+                starts[rows] = (int) start ^ Integer.MIN_VALUE;
+                ends[rows] = (int) end ^ Integer.MIN_VALUE;
+                countries[rows] = (char) index.intValue();
+                if (rows > 0 && starts[rows] < starts[rows - 1]) {
+                    sorted = false;
+                }
+                rows++;
+            }
+        }
+
+        starts = Arrays.copyOf(starts, rows);
+        ends = Arrays.copyOf(ends, rows);
+        countries = Arrays.copyOf(countries, rows);
+        if (!sorted) {
+            // Inicio sin signo en los bits altos y fila en los bajos: ordenar un solo long[]
+            long[] order = new long[rows];
+            for (int i = 0; i < rows; i++) {
+                order[i] = ((long) (starts[i] ^ Integer.MIN_VALUE) & 0xFFFFFFFFL) << 24 | i;
+            }
+            Arrays.sort(order);
+            int[] sortedStarts = new int[rows];
+            int[] sortedEnds = new int[rows];
+            char[] sortedCountries = new char[rows];
+            for (int i = 0; i < rows; i++) {
+                int row = (int) (order[i] & (MAX_ROWS - 1));
+                sortedStarts[i] = starts[row];
+                sortedEnds[i] = ends[row];
+                sortedCountries[i] = countries[row];
+            }
+            starts = sortedStarts;
+            ends = sortedEnds;
+            countries = sortedCountries;
+        }
+
+        logger.info("GeoIP: {} rangos IPv4 de {} países cargados de {} ({} líneas ignoradas)",
+                rows, codes.size(), file, skipped);
+        return new GeoIpDatabase(starts, ends, countries, codes.toArray(new String[0]));
+    }
+
+    /**
+     * País (código ISO de dos letras) de una IPv4 empaquetada big-endian, o null si no está
+     */
+    public String lookup(int address) {
+        int key = address ^ Integer.MIN_VALUE;
+        int low = 0;
+        int high = starts.length - 1;
+        int found = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (starts[mid] <= key) {
+                found = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        if (found < 0 || ends[found] < key) {
+            return null;
+        }
+        return codes[countries[found]];
+    }
+
+    /**
+     * País de una IPv4 en texto, o null si el host no es una IPv4 o no está en la base
+     */
+    public String lookup(String host) {
+        long address = parseAddress(host);
+        return address >= 0 && host.indexOf('.') > 0 ? lookup((int) address) : null;
+    }
+
+    public String lookup(InetAddress address) {
+        if (!(address instanceof Inet4Address)) {
+            return null;
+        }
+        byte[] bytes = address.getAddress();
+        return lookup((bytes[0] & 0xFF) << 24 | (bytes[1] & 0xFF) << 16 | (bytes[2] & 0xFF) << 8 | (bytes[3] & 0xFF));
+    }
+
+    public int size() {
+        return starts.length;
+    }
+
+    public int getCountryCount() {
+        return codes.length;
+    }
+
+    /**
+     * IPv4 en texto o entero decimal (como en IP2Location) a valor sin signo; -1 si no lo es
+     */
+    static long parseAddress(String value) {
+        int length = value.length();
+        if (length == 0) {
+            return -1;
+        }
+        long address = 0;
+        long octet = -1;
+        int dots = 0;
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c >= '0' && c <= '9') {
+                octet = (octet < 0 ? 0 : octet * 10) + (c - '0');
+                if (octet > 0xFFFFFFFFL) {
+                    return -1;
+                }
+            } else if (c == '.' && octet >= 0 && octet <= 255 && dots < 3) {
+                address = (address << 8) | octet;
+                octet = -1;
+                dots++;
+            } else {
+                return -1;
+            }
+        }
+        if (octet < 0) {
+            return -1;
+        }
+        if (dots == 0) {
+            return octet; // Entero decimal
+        }
+        return dots == 3 && octet <= 255 ? (address << 8) | octet : -1;
+    }
+
+    private static long[] parseCidr(String value) {
+        int slash = value.indexOf('/');
+        long network = parseAddress(value.substring(0, slash));
+        int bits;
+        try {
+            bits = Integer.parseInt(value.substring(slash + 1));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        if (network < 0 || bits < 0 || bits > 32) {
+            return null;
+        }
+        long size = 1L << (32 - bits);
+        long start = network & ~(size - 1) & 0xFFFFFFFFL;
+        return new long[]{start, start + size - 1};
+    }
+
+    /**
+     * Separa hasta fields.length campos por comas quitando comillas y espacios
+     */
+    private static int split(String line, String[] fields) {
+        int count = 0;
+        int from = 0;
+        while (count < fields.length && from <= line.length()) {
+            int comma = line.indexOf(',', from);
+            int to = comma >= 0 ? comma : line.length();
+            int begin = from;
+            int end = to;
+            while (begin < end && (line.charAt(begin) == '"' || line.charAt(begin) == ' ')) {
+                begin++;
+            }
+            while (end > begin && (line.charAt(end - 1) == '"' || line.charAt(end - 1) == ' ')) {
+                end--;
+            }
+            fields[count++] = line.substring(begin, end);
+            if (comma < 0) {
+                break;
+            }
+            from = comma + 1;
+        }
+        return count;
+    }
+}
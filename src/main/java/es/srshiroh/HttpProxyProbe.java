@@ -0,0 +1,198 @@
+package es.srshiroh;
+
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Verificación de proxies HTTP reutilizando la conexión.
+ * El socket de la prueba de alcance transporta la petición HTTP y, si el proxy mantiene
+ * la conexión viva, también el túnel CONNECT para HTTPS: 1 o 2 conexiones por proxy.
+ */
+public class HttpProxyProbe {
+    private final int timeout;
+    private final DnsCache dns;
+
+    /**
+     * Resultado de una verificación
+     */
+    public static final class Result {
+        private boolean reachable;
+        private int httpStatus = -1;
+        private byte[] body;
+        private boolean httpsOk;
+        private int connections;
+        private String errorMessage;
+        private ProxyInfo.ErrorType errorType = ProxyInfo.ErrorType.NONE;
+
+        public boolean isReachable() {
+            return reachable;
+        }
+
+        public int getHttpStatus() {
+            return httpStatus;
+        }
+
+        /**
+         * Cuerpo de la respuesta HTTP (null si no llegó)
+         */
+        public byte[] getBody() {
+            return body;
+        }
+
+        public boolean isHttpOk() {
+            return httpStatus == 200;
+        }
+
+        public boolean isHttpsOk() {
+            return httpsOk;
+        }
+
+        public int getConnections() {
+            return connections;
+        }
+
+        public String getErrorMessage() {
+            return errorMessage;
+        }
+
+        public ProxyInfo.ErrorType getErrorType() {
+            return errorType;
+        }
+    }
+
+    public HttpProxyProbe(int timeout) {
+        this(timeout, null);
+    }
+
+    public HttpProxyProbe(int timeout, DnsCache dns) {
+        this.timeout = timeout;
+        this.dns = dns;
+    }
+
+    /**
+     * Verifica el proxy con un GET a httpUrl y, si httpsUrl no es null, un túnel CONNECT a httpsUrl
+     */
+    public Result probe(ProxyInfo proxy, String httpUrl, String httpsUrl) {
+        Result result = new Result();
+        Socket socket = null;
+        // Un único plazo para toda la verificación, no solo para cada lectura
+        long deadline = DeadlineSocket.deadlineIn(timeout);
+
+        try {
+            try {
+                socket = connect(proxy, deadline);
+                result.connections++;
+                result.reachable = true;
+            } catch (IOException e) {
+                result.errorMessage = "Conexión fallida: " + e.getMessage();
+                result.errorType = ProxyInfo.ErrorType.classify(e);
+                return result;
+            }
+
+            InputStream in = new BufferedInputStream(socket.getInputStream());
+            OutputStream out = new BufferedOutputStream(socket.getOutputStream());
+            RawHttp.Response response;
+            try {
+                response = sendAbsoluteGet(in, out, URI.create(httpUrl));
+                result.httpStatus = response.status;
+                result.body = response.body;
+                if (!result.isHttpOk()) {
+                    result.errorType = ProxyInfo.ErrorType.HTTP_STATUS;
+                }
+            } catch (IOException e) {
+                result.errorMessage = "HTTP test failed: " + e.getMessage();
+                result.errorType = ProxyInfo.ErrorType.classify(e);
+                return result;
+            }
+
+            if (!result.isHttpOk() || httpsUrl == null) {
+                return result;
+            }
+
+            // Si el proxy cerró la conexión, una segunda para el túnel
+            if (!response.keepAlive) {
+                socket.close();
+                socket = connect(proxy, deadline);
+                result.connections++;
+                in = new BufferedInputStream(socket.getInputStream());
+                out = new BufferedOutputStream(socket.getOutputStream());
+            }
+
+            result.httpsOk = tunnelGet(socket, in, out, URI.create(httpsUrl)) == 200;
+        } catch (IOException e) {
+            // HTTPS es opcional: su fallo no invalida el proxy
+            result.httpsOk = false;
+        } finally {
+            closeQuietly(socket);
+        }
+        return result;
+    }
+
+    private Socket connect(ProxyInfo proxy, long deadline) throws IOException {
+        Socket socket = new DeadlineSocket(deadline);
+        try {
+            socket.setTcpNoDelay(true);
+            socket.connect(dns != null ? dns.resolve(proxy.getHost(), proxy.getPort())
+                    : new InetSocketAddress(proxy.getHost(), proxy.getPort()), timeout);
+            socket.setSoTimeout(timeout);
+            return socket;
+        } catch (IOException e) {
+            closeQuietly(socket);
+            throw e;
+        }
+    }
+
+    private RawHttp.Response sendAbsoluteGet(InputStream in, OutputStream out, URI uri) throws IOException {
+        String request = "GET " + uri.toASCIIString() + " HTTP/1.1\r\n" +
+                "Host: " + hostHeader(uri) + "\r\n" +
+                "User-Agent: " + RawHttp.USER_AGENT + "\r\n" +
+                "Connection: keep-alive\r\n" +
+                "\r\n";
+        out.write(request.getBytes(StandardCharsets.US_ASCII));
+        out.flush();
+        return RawHttp.readResponse(in);
+    }
+
+    private int tunnelGet(Socket socket, InputStream in, OutputStream out, URI uri) throws IOException {
+        String authority = uri.getHost() + ":" + (uri.getPort() != -1 ? uri.getPort() : 443);
+        String connect = "CONNECT " + authority + " HTTP/1.1\r\n" +
+                "Host: " + authority + "\r\n" +
+                "User-Agent: " + RawHttp.USER_AGENT + "\r\n" +
+                "\r\n";
+        out.write(connect.getBytes(StandardCharsets.US_ASCII));
+        out.flush();
+
+        RawHttp.Response response = RawHttp.readConnectResponse(in);
+        if (response.status / 100 != 2) {
+            return response.status;
+        }
+
+        SSLSocketFactory factory = (SSLSocketFactory) SSLSocketFactory.getDefault();
+        try (SSLSocket tls = (SSLSocket) factory.createSocket(socket, uri.getHost(),
+                uri.getPort() != -1 ? uri.getPort() : 443, true)) {
+            tls.setSoTimeout(timeout);
+            tls.startHandshake();
+            return RawHttp.get(new BufferedInputStream(tls.getInputStream()),
+                    new BufferedOutputStream(tls.getOutputStream()), uri);
+        }
+    }
+
+    private static String hostHeader(URI uri) {
+        return uri.getPort() != -1 ? uri.getHost() + ":" + uri.getPort() : uri.getHost();
+    }
+
+    private static void closeQuietly(Socket socket) {
+        if (socket != null) {
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+                // Nada que hacer
+            }
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package es.srshiroh;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Servidor "juez": responde a cualquier GET con la IP de origen y las cabeceras recibidas,
+ * como httpbin.org/get pero reproducible. Con eso una sola petición a través del proxy da su
+ * validez, su IP de salida y su anonimato. En local es el destino de las pruebas; en una
+ * máquina pública (--judge-server) sirve de juez propio para verificar proxies reales.
+ */
+public class JudgeServer implements Closeable {
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final HttpServer server;
+    private final ExecutorService workers = VirtualThreads.newPerTaskExecutor("judge");
+
+    public JudgeServer(int port) throws IOException {
+        this(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+    }
+
+    public JudgeServer(InetSocketAddress address) throws IOException {
+        this.server = HttpServer.create(address, 1024);
+        server.createContext("/", this::handle);
+        server.setExecutor(workers);
+        server.start();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * URL que devuelve el origen visto por el juez
+     */
+    public String getUrl() {
+        return "http://" + server.getAddress().getAddress().getHostAddress() + ":" + getPort() + "/ip";
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            ObjectNode body = MAPPER.createObjectNode();
+            body.put("origin", exchange.getRemoteAddress().getAddress().getHostAddress());
+            ObjectNode headers = body.putObject("headers");
+            for (Map.Entry<String, List<String>> header : exchange.getRequestHeaders().entrySet()) {
+                headers.put(header.getKey(), String.join(", ", header.getValue()));
+            }
+
+            byte[] bytes = MAPPER.writeValueAsBytes(body);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        workers.shutdownNow();
+    }
+}
@@ -0,0 +1,106 @@
+package es.srshiroh;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histograma de latencias sin cerrojos, en milisegundos.
+ * Cubos exactos hasta 64 ms y después 32 cubos por potencia de dos (error relativo ~3%).
+ * Admite retirar valores, de modo que puede reflejar el estado actual de un conjunto.
+ */
+public class LatencyHistogram {
+    private static final int LINEAR = 64;
+    private static final int SUB_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int LINEAR_EXPONENT = 6; // log2(LINEAR)
+    private static final int MAX_EXPONENT = 40;   // ~12 días en ms; por encima se satura
+    private static final int BUCKETS = LINEAR + (MAX_EXPONENT - LINEAR_EXPONENT + 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+
+    public void record(long millis) {
+        long value = Math.max(0, millis);
+        counts.incrementAndGet(indexOf(value));
+        count.increment();
+        sum.add(value);
+    }
+
+    /**
+     * Retira un valor registrado antes con record
+     */
+    public void remove(long millis) {
+        long value = Math.max(0, millis);
+        counts.decrementAndGet(indexOf(value));
+        count.decrement();
+        sum.add(-value);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public double getMean() {
+        long n = count.sum();
+        return n > 0 ? (double) sum.sum() / n : 0.0;
+    }
+
+    /**
+     * Valor aproximado del percentil (0-100); -1 si el histograma está vacío.
+     * Recorre un número fijo de cubos, independiente de los valores registrados.
+     */
+    public long getPercentile(double percentile) {
+        long n = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            n += counts.get(i);
+        }
+        if (n <= 0) {
+            return -1;
+        }
+
+        long rank = Math.max(1, (long) Math.ceil(Math.min(100.0, percentile) / 100.0 * n));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return valueOf(i);
+            }
+        }
+        return valueOf(BUCKETS - 1);
+    }
+
+    public void clear() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        count.reset();
+        sum.reset();
+    }
+
+    private static int indexOf(long value) {
+        if (value < LINEAR) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        if (exponent > MAX_EXPONENT) {
+            return BUCKETS - 1;
+        }
+        int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return LINEAR + (exponent - LINEAR_EXPONENT) * SUB_BUCKETS + sub;
+    }
+
+    /**
+     * Punto medio del cubo
+     */
+    private static long valueOf(int index) {
+        if (index < LINEAR) {
+            return index;
+        }
+        int exponent = (index - LINEAR) / SUB_BUCKETS + LINEAR_EXPONENT;
+        int sub = (index - LINEAR) % SUB_BUCKETS;
+        long width = 1L << (exponent - SUB_BITS);
+        long lower = (long) (SUB_BUCKETS + sub) << (exponent - SUB_BITS);
+        return lower + width / 2;
+    }
+}
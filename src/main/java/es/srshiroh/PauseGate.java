@@ -0,0 +1,77 @@
+package es.srshiroh;
+
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Punto único de pausa del despacho. Los hilos que entregan trabajo se aparcan aquí mientras
+ * la verificación está pausada, sin ocupar workers ni despertar periódicamente.
+ */
+class PauseGate {
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition opened = lock.newCondition();
+    private volatile boolean paused;
+    private volatile boolean released;
+
+    void pause() {
+        paused = true;
+    }
+
+    void resume() {
+        lock.lock();
+        try {
+            paused = false;
+            opened.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Deja pasar a todos los que esperan y a los que lleguen (cancelación) hasta reopen()
+     */
+    void release() {
+        lock.lock();
+        try {
+            released = true;
+            opened.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Vuelve al estado inicial: abierta y sin liberar
+     */
+    void reopen() {
+        lock.lock();
+        try {
+            released = false;
+            paused = false;
+            opened.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    boolean isPaused() {
+        return paused;
+    }
+
+    /**
+     * Bloquea mientras esté pausada. Sin pausa no toma el cerrojo.
+     */
+    void awaitOpen() throws InterruptedException {
+        if (!paused || released) {
+            return;
+        }
+        lock.lockInterruptibly();
+        try {
+            while (paused && !released) {
+                opened.await();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -5,8 +5,18 @@ import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.ThreadMXBean;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.Scanner;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Aplicación principal del ProxyChecker
@@ -19,6 +29,25 @@ public class ProxyCheckerApp {
         System.out.println("=== ProxyChecker v1.0 by SrShiroh ===");
         System.out.println();
 
+        for (String arg : args) {
+            if (arg.equals("--bench") || arg.startsWith("--bench=")) {
+                runBenchmark(args);
+                return;
+            }
+            if (arg.equals("--server") || arg.startsWith("--server=")) {
+                runServer(args);
+                return;
+            }
+            if (arg.equals("--judge-server") || arg.startsWith("--judge-server=")) {
+                runJudgeServer(arg);
+                return;
+            }
+        }
+        if (args.length == 3 && args[0].equals("--convert")) {
+            convertSnapshot(args[1], args[2]);
+            return;
+        }
+
         // Verificar argumentos
         if (args.length > 0) {
             if (args[0].equals("--help") || args[0].equals("-h")) {
@@ -47,12 +76,45 @@ public class ProxyCheckerApp {
         System.out.println("Opciones:");
         System.out.println("  --gui              Iniciar en modo gráfico");
         System.out.println("  --console [archivo] Iniciar en modo consola");
+        System.out.println("  --engine=<modo>    Motor de verificación: pool (defecto), async o virtual (Java 21+)");
+        System.out.println("  --max-in-flight=<n> Verificaciones simultáneas en modo async/virtual (defecto 10000)");
+        System.out.println("  --threads=<n>      Hilos de verificación en modo pool (defecto 50)");
+        System.out.println("  --timeout=<ms>     Timeout por verificación (defecto 10000)");
+        System.out.println("  --adaptive         Ajustar la concurrencia automáticamente (AIMD) según los errores");
+        System.out.println("  --prefilter        Descartar primero los inalcanzables con connects TCP no bloqueantes");
+        System.out.println("    --prefilter-timeout=<ms>     Timeout del connect del prefiltro (defecto 1500)");
+        System.out.println("    --prefilter-concurrency=<n>  Connects simultáneos del prefiltro (defecto 5000)");
+        System.out.println("  --judge=<url>      Juez que devuelve origen y cabeceras (defecto http://httpbin.org/get)");
+        System.out.println("  --judge-server[=<puerto>] Servir un juez propio en todas las interfaces (defecto 8000)");
+        System.out.println("  --geoip=<csv>      Base GeoIP local (rangos IPv4 inicio,fin,país o CIDR,país) para el país de cada proxy");
+        System.out.println("    --country=<CC>     En modo consola, exportar además los válidos de ese país");
+        System.out.println("  --dns-ttl=<s>      Tiempo que se reutiliza un nombre de host resuelto (defecto: el de la JVM)");
+        System.out.println("  --stream=<archivo> Escribir cada resultado al momento en NDJSON (o array JSON si acaba en .json)");
+        System.out.println("    --stream-rotate=<MB> Tamaño al que se rota el archivo (defecto 256)");
+        System.out.println("  --snapshot=<archivo> Restaurar los resultados de una instantánea binaria y guardarla al terminar");
+        System.out.println("  --convert <entrada> <salida> Convertir entre instantánea binaria y lista de texto");
+        System.out.println("  --checkpoint[=<archivo>] Guardar el progreso periódicamente (defecto <lista>.checkpoint)");
+        System.out.println("    --checkpoint-interval=<s> Segundos entre checkpoints (defecto 60)");
+        System.out.println("  --resume           Continuar la verificación interrumpida desde su checkpoint");
+        System.out.println("  --cache=<archivo>  Guardar los resultados y reutilizar los recientes en la siguiente ejecución");
+        System.out.println("    --cache-ttl=<min>  Antigüedad máxima de un resultado reutilizable (defecto 60)");
+        System.out.println("  --daemon[=<min>]   Tras la carga, revalidar el pool continuamente (intervalo base, defecto 10)");
+        System.out.println("    --evict-after=<n>  Fallos seguidos para expulsar un proxy del pool (defecto 3)");
+        System.out.println("  --gateway[=<puerto>] Pasarela HTTP/CONNECT local que rota por los proxies válidos (defecto 3128)");
+        System.out.println("  --server[=<puerto>] Servicio HTTP local con un motor en caliente (defecto 8080)");
+        System.out.println("  --bench[=<n>]      Prueba de rendimiento contra una granja local de n proxies simulados");
+        System.out.println("    --farm-latency=<ms>    Latencia media de los proxies simulados (defecto 20)");
+        System.out.println("    --farm-drop=<0-1>      Probabilidad de cortar cada conexión (defecto 0.02)");
+        System.out.println("    --farm-blackhole=<0-1> Fracción de proxies que nunca responden (defecto 0.01)");
+        System.out.println("    --farm-slow=<0-1>      Fracción de proxies slow-loris (defecto 0.01)");
         System.out.println("  --help, -h         Mostrar esta ayuda");
         System.out.println();
         System.out.println("Ejemplos:");
         System.out.println("  java -jar proxychecker.jar --gui");
         System.out.println("  java -jar proxychecker.jar --console proxies.txt");
         System.out.println("  java -jar proxychecker.jar proxies.txt");
+        System.out.println("  java -jar proxychecker.jar --engine=async proxies.txt");
+        System.out.println("  java -jar proxychecker.jar --bench=10000 --engine=virtual");
         System.out.println();
         System.out.println("Formato del archivo de proxies:");
         System.out.println("  ip:puerto");
@@ -100,14 +162,310 @@ public class ProxyCheckerApp {
         }
     }
 
+    /**
+     * Aplica las opciones --clave=valor de la línea de comandos al manager
+     */
+    private static void applyOptions(ProxyManager manager, String[] args) {
+        long revalidationInterval = -1;
+        int maxFailures = ProxyManager.DEFAULT_MAX_FAILURES;
+        String streamFile = null;
+        long streamRotate = ResultStreamWriter.DEFAULT_MAX_BYTES;
+        String checkpointFile = null;
+        long checkpointInterval = RunCheckpoint.DEFAULT_INTERVAL;
+        boolean resume = false;
+        String listFile = null;
+        for (String arg : args) {
+            if (!arg.startsWith("--")) {
+                listFile = arg;
+            }
+            try {
+                if (arg.startsWith("--engine=")) {
+                    manager.setCheckMode(ProxyManager.CheckMode.fromString(arg.substring("--engine=".length())));
+                } else if (arg.startsWith("--max-in-flight=")) {
+                    manager.setMaxInFlight(Integer.parseInt(arg.substring("--max-in-flight=".length())));
+                } else if (arg.equals("--prefilter")) {
+                    manager.setTcpPrefilter(true);
+                } else if (arg.startsWith("--prefilter-timeout=")) {
+                    manager.setTcpPrefilter(true);
+                    manager.setPrefilterTimeout(Integer.parseInt(arg.substring("--prefilter-timeout=".length())));
+                } else if (arg.startsWith("--prefilter-concurrency=")) {
+                    manager.setTcpPrefilter(true);
+                    manager.setPrefilterConcurrency(Integer.parseInt(arg.substring("--prefilter-concurrency=".length())));
+                } else if (arg.equals("--adaptive")) {
+                    manager.setAdaptiveConcurrency(true);
+                } else if (arg.startsWith("--threads=")) {
+                    manager.setThreadCount(Integer.parseInt(arg.substring("--threads=".length())));
+                } else if (arg.startsWith("--timeout=")) {
+                    manager.setTimeout(Integer.parseInt(arg.substring("--timeout=".length())));
+                } else if (arg.startsWith("--cache=")) {
+                    manager.setResultCache(arg.substring("--cache=".length()));
+                } else if (arg.startsWith("--judge=")) {
+                    manager.setTestUrl(arg.substring("--judge=".length()));
+                } else if (arg.startsWith("--geoip=")) {
+                    manager.setGeoIpDatabase(arg.substring("--geoip=".length()));
+                } else if (arg.startsWith("--dns-ttl=")) {
+                    manager.setDnsTtl(TimeUnit.SECONDS.toMillis(Long.parseLong(arg.substring("--dns-ttl=".length()))));
+                } else if (arg.startsWith("--stream=")) {
+                    streamFile = arg.substring("--stream=".length());
+                } else if (arg.equals("--checkpoint")) {
+                    checkpointFile = "";
+                } else if (arg.startsWith("--checkpoint=")) {
+                    checkpointFile = arg.substring("--checkpoint=".length());
+                } else if (arg.startsWith("--checkpoint-interval=")) {
+                    checkpointInterval = TimeUnit.SECONDS.toMillis(Long.parseLong(arg.substring("--checkpoint-interval=".length())));
+                } else if (arg.equals("--resume")) {
+                    resume = true;
+                } else if (arg.startsWith("--stream-rotate=")) {
+                    streamRotate = Long.parseLong(arg.substring("--stream-rotate=".length())) * 1024 * 1024;
+                } else if (arg.startsWith("--cache-ttl=")) {
+                    manager.setCacheTtl(TimeUnit.MINUTES.toMillis(Long.parseLong(arg.substring("--cache-ttl=".length()))));
+                } else if (arg.equals("--daemon")) {
+                    revalidationInterval = ProxyManager.DEFAULT_REVALIDATION_INTERVAL;
+                } else if (arg.startsWith("--daemon=")) {
+                    revalidationInterval = TimeUnit.MINUTES.toMillis(Long.parseLong(arg.substring("--daemon=".length())));
+                } else if (arg.startsWith("--evict-after=")) {
+                    maxFailures = Integer.parseInt(arg.substring("--evict-after=".length()));
+                } else if (arg.equals("--gateway") || arg.startsWith("--gateway=")) {
+                    int port = arg.equals("--gateway") ? 3128 : Integer.parseInt(arg.substring("--gateway=".length()));
+                    manager.startGateway(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+                }
+            } catch (NumberFormatException e) {
+                System.out.println("Opción inválida, se ignora: " + arg);
+            } catch (IOException e) {
+                System.out.println("No se pudo aplicar " + arg + ": " + e.getMessage());
+            }
+        }
+        if (revalidationInterval > 0) {
+            manager.startRevalidationDaemon(revalidationInterval, maxFailures);
+        }
+        // Antes que la exportación en streaming: al reanudar, esta continúa donde quedó
+        if ((checkpointFile != null || resume) && listFile != null) {
+            String path = checkpointFile == null || checkpointFile.isEmpty() ? listFile + ".checkpoint" : checkpointFile;
+            try {
+                manager.setCheckpoint(path, checkpointInterval, resume);
+                if (resume && !new File(path).exists()) {
+                    System.out.println("No hay checkpoint en " + path + ": se empieza desde el principio");
+                }
+            } catch (IOException e) {
+                System.out.println("No se pudo reanudar desde " + path + ": " + e.getMessage());
+                System.exit(1);
+            }
+        }
+        if (streamFile != null) {
+            try {
+                manager.setResultStream(streamFile, streamRotate);
+            } catch (IOException e) {
+                System.out.println("No se pudo abrir " + streamFile + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Recarga la instantánea de --snapshot si existe. Va después de configurar callbacks,
+     * streaming y checkpoint para que lo que quede por verificar salga por ellos.
+     */
+    private static void loadSnapshotOption(ProxyManager manager, String[] args) {
+        for (String arg : args) {
+            if (arg.startsWith("--snapshot=")) {
+                String snapshot = arg.substring("--snapshot=".length());
+                if (!new File(snapshot).exists()) {
+                    continue;
+                }
+                try {
+                    manager.loadSnapshot(snapshot);
+                } catch (IOException e) {
+                    System.out.println("No se pudo cargar la instantánea " + snapshot + ": " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Modo --server: un motor en caliente que recibe listas por HTTP en la interfaz local
+     */
+    private static void runServer(String[] args) {
+        int port = 8080;
+        for (String arg : args) {
+            if (arg.startsWith("--server=")) {
+                try {
+                    port = Integer.parseInt(arg.substring("--server=".length()));
+                } catch (NumberFormatException e) {
+                    System.out.println("Puerto inválido, se usa " + port + ": " + arg);
+                }
+            }
+        }
+
+        ProxyManager manager = new ProxyManager();
+        applyOptions(manager, args);
+        try {
+            CheckerServer server = new CheckerServer(manager,
+                    new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                server.close();
+                manager.shutdown();
+            }));
+            String base = "http://127.0.0.1:" + server.getPort();
+            System.out.println("Servidor de verificación en " + base + " (motor " + manager.getCheckMode() + ")");
+            System.out.println("  curl --data-binary @proxies.txt " + base + "/jobs");
+            System.out.println("  curl -N " + base + "/jobs/1/results");
+            System.out.println("  curl '" + base + "/pool?type=SOCKS5&maxLatency=500&limit=20'");
+            loadSnapshotOption(manager, args);
+            manager.checkSnapshotPending();
+        } catch (IOException e) {
+            System.err.println("Error iniciando el servidor: " + e.getMessage());
+            logger.error("Error iniciando el servidor", e);
+            System.exit(1);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // El hilo del servidor HTTP mantiene vivo el proceso
+    }
+
+    /**
+     * Modo --convert: de instantánea binaria a texto o al revés, según la firma de la entrada
+     */
+    private static void convertSnapshot(String input, String output) {
+        Path source = Paths.get(input);
+        Path target = Paths.get(output);
+        try {
+            if (ResultSnapshot.isSnapshot(source)) {
+                int written = ResultSnapshot.toText(source, target);
+                System.out.println(written + " proxies escritos en " + output);
+            } else {
+                int written = ResultSnapshot.fromText(source, target);
+                System.out.println(written + " proxies guardados en la instantánea " + output);
+            }
+        } catch (IOException e) {
+            System.err.println("Error convirtiendo " + input + ": " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Modo --judge-server: juez propio para una máquina con IP pública
+     */
+    private static void runJudgeServer(String arg) {
+        int port = arg.equals("--judge-server") ? 8000 : Integer.parseInt(arg.substring("--judge-server=".length()));
+        try {
+            JudgeServer judge = new JudgeServer(new InetSocketAddress(port));
+            Runtime.getRuntime().addShutdownHook(new Thread(judge::close));
+            System.out.println("Juez escuchando en el puerto " + judge.getPort());
+            System.out.println("Úselo desde el verificador con --judge=http://<ip-pública>:" + judge.getPort() + "/get");
+        } catch (IOException e) {
+            System.err.println("Error iniciando el juez: " + e.getMessage());
+            System.exit(1);
+        }
+        // El hilo del servidor HTTP mantiene vivo el proceso
+    }
+
+    /**
+     * Modo --bench: verifica una granja de proxies simulados y muestra el rendimiento
+     */
+    private static void runBenchmark(String[] args) {
+        int count = 3000;
+        ProxyFarm.Config config = new ProxyFarm.Config();
+        config.setDropRate(0.02);
+        config.setBlackholeRate(0.01);
+        config.setSlowLorisRate(0.01);
+        for (String arg : args) {
+            try {
+                if (arg.startsWith("--bench=")) {
+                    count = Integer.parseInt(arg.substring("--bench=".length()));
+                } else if (arg.startsWith("--farm-latency=")) {
+                    config.setLatency(Integer.parseInt(arg.substring("--farm-latency=".length())));
+                } else if (arg.startsWith("--farm-drop=")) {
+                    config.setDropRate(Double.parseDouble(arg.substring("--farm-drop=".length())));
+                } else if (arg.startsWith("--farm-blackhole=")) {
+                    config.setBlackholeRate(Double.parseDouble(arg.substring("--farm-blackhole=".length())));
+                } else if (arg.startsWith("--farm-slow=")) {
+                    config.setSlowLorisRate(Double.parseDouble(arg.substring("--farm-slow=".length())));
+                }
+            } catch (NumberFormatException e) {
+                System.out.println("Opción inválida, se ignora: " + arg);
+            }
+        }
+
+        // El log por verificación distorsiona la medida
+        ((ch.qos.logback.classic.Logger) LoggerFactory.getLogger("es.srshiroh"))
+                .setLevel(ch.qos.logback.classic.Level.WARN);
+
+        Path list = null;
+        try (JudgeServer judge = new JudgeServer(0); ProxyFarm farm = new ProxyFarm(count, config)) {
+            list = Files.createTempFile("farm_proxies", ".txt");
+            farm.writeProxyList(list);
+
+            ProxyManager manager = new ProxyManager();
+            manager.setTimeout(3000);
+            manager.setTestUrl(judge.getUrl());
+            manager.setTestHttps(false);
+            applyOptions(manager, args);
+
+            LatencyHistogram latencies = new LatencyHistogram();
+            CountDownLatch latch = new CountDownLatch(1);
+            manager.setOnProxyChecked(proxy -> latencies.record(proxy.getResponseTime()));
+            manager.setOnCompleted(latch::countDown);
+
+            System.out.printf("Granja: %d proxies en el puerto %d, juez en %s, motor %s%n",
+                    count, farm.getPort(), judge.getUrl(), manager.getCheckMode());
+
+            ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+            threads.resetPeakThreadCount();
+            for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+                if (pool.getType() == MemoryType.HEAP) {
+                    pool.resetPeakUsage();
+                }
+            }
+
+            long start = System.nanoTime();
+            manager.loadProxiesFromFile(list.toString());
+            latch.await();
+            double seconds = (System.nanoTime() - start) / 1e9;
+
+            long peakHeap = 0;
+            for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+                if (pool.getType() == MemoryType.HEAP) {
+                    peakHeap += pool.getPeakUsage().getUsed();
+                }
+            }
+
+            System.out.println();
+            System.out.println("=== RESULTADO DEL BENCHMARK ===");
+            System.out.printf("Verificaciones: %d en %.2f s (%.1f/s)%n",
+                    manager.getCheckedCount(), seconds, manager.getCheckedCount() / seconds);
+            System.out.printf("Válidos: %d/%d%n", manager.getValidProxyCount(), manager.getTotalCount());
+            System.out.printf("Latencia p50/p99: %d / %d ms%n", latencies.getPercentile(50), latencies.getPercentile(99));
+            System.out.printf("Pico de heap: %.1f MB%n", peakHeap / (1024.0 * 1024.0));
+            System.out.printf("Pico de hilos: %d (incluye los de la granja)%n", threads.getPeakThreadCount());
+            System.out.printf("Conexiones aceptadas por la granja: %d%n", farm.getConnectionCount());
+            if (manager.isAdaptiveConcurrency()) {
+                System.out.printf("Concurrencia final: %d (%s)%n",
+                        manager.getConcurrencyLimit(), manager.getConcurrencyReason());
+            }
+            manager.shutdown();
+        } catch (Exception e) {
+            System.err.println("Error en el benchmark: " + e.getMessage());
+            logger.error("Error en el benchmark", e);
+        } finally {
+            if (list != null) {
+                list.toFile().delete();
+            }
+        }
+        System.exit(0);
+    }
+
     private static void startConsoleMode(String[] args) {
-        if (args.length == 0 || (args.length == 1 && args[0].equals("--console"))) {
+        String filename = null;
+        for (String arg : args) {
+            if (!arg.startsWith("--")) {
+                filename = arg; // Último argumento que no es opción es el archivo
+            }
+        }
+
+        if (filename == null) {
             startConsoleInteractive();
             return;
         }
 
-        String filename = args[args.length - 1]; // Último argumento es el archivo
-
         if (!new File(filename).exists()) {
             System.err.println("Error: Archivo no encontrado: " + filename);
             System.exit(1);
@@ -118,7 +476,14 @@ public class ProxyCheckerApp {
         System.out.println();
 
         ProxyManager manager = new ProxyManager();
+        applyOptions(manager, args);
+        System.out.println("Motor: " + manager.getCheckMode());
         CountDownLatch latch = new CountDownLatch(1);
+        // Al cortar con Ctrl+C se guarda un último checkpoint y lo pendiente del streaming
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            manager.stopCheckpoint();
+            manager.closeResultStream();
+        }));
 
         // Configurar callbacks
         manager.setOnProxyChecked(proxy -> {
@@ -138,9 +503,23 @@ public class ProxyCheckerApp {
 
             // Exportar automáticamente los válidos
             try {
-                String outputFile = "valid_proxies_" + System.currentTimeMillis() + ".txt";
+                long timestamp = System.currentTimeMillis();
+                String outputFile = "valid_proxies_" + timestamp + ".txt";
                 manager.exportValidProxiesToFile(outputFile);
                 System.out.println("Proxies válidos guardados en: " + outputFile);
+                for (String arg : args) {
+                    if (arg.startsWith("--snapshot=")) {
+                        String snapshot = arg.substring("--snapshot=".length());
+                        manager.saveSnapshot(snapshot);
+                        System.out.println("Instantánea guardada en: " + snapshot);
+                    }
+                    if (arg.startsWith("--country=")) {
+                        String country = arg.substring("--country=".length()).toUpperCase();
+                        String countryFile = "valid_proxies_" + timestamp + "_" + country + ".txt";
+                        manager.exportProxiesByCountry(countryFile, country);
+                        System.out.println("Proxies válidos de " + country + " guardados en: " + countryFile);
+                    }
+                }
             } catch (IOException e) {
                 System.err.println("Error guardando proxies válidos: " + e.getMessage());
             }
@@ -149,11 +528,22 @@ public class ProxyCheckerApp {
         });
 
         try {
+            loadSnapshotOption(manager, args);
             manager.loadProxiesFromFile(filename);
 
             // Esperar a que termine
             latch.await();
 
+            // Con revalidación continua o pasarela se sigue hasta cerrar el proceso
+            while (manager.isRevalidationDaemonRunning() || manager.getGateway() != null) {
+                Thread.sleep(60000);
+                ProxyGateway gateway = manager.getGateway();
+                System.out.printf(">> Pool: %d válidos, %d en seguimiento%s%n",
+                        manager.getValidProxyCount(), manager.getRevalidationTrackedCount(),
+                        gateway != null ? String.format(", pasarela: %d conexiones, %d expulsados",
+                                gateway.getServedCount(), gateway.getEjectedCount()) : "");
+            }
+
         } catch (Exception e) {
             System.err.println("Error: " + e.getMessage());
             logger.error("Error en modo consola", e);
@@ -179,7 +569,10 @@ public class ProxyCheckerApp {
             }
         }
 
-        System.out.print("Número de hilos (default 50): ");
+        System.out.print("Motor de verificación (pool/async/virtual, default pool): ");
+        manager.setCheckMode(ProxyManager.CheckMode.fromString(scanner.nextLine().trim()));
+
+        System.out.print("Número de hilos o verificaciones simultáneas (default 50): ");
         String threadsInput = scanner.nextLine().trim();
         if (!threadsInput.isEmpty()) {
             try {
@@ -56,7 +56,7 @@ public class ProxyCheckerGUI extends JFrame {
 
     private void initializeComponents() {
         // Tabla de proxies
-        String[] columnNames = {"Host", "Puerto", "Tipo", "Estado", "Tiempo (ms)", "País", "Última verificación"};
+        String[] columnNames = {"Host", "Puerto", "Tipo", "Estado", "Tiempo (ms)", "País", "Anonimato", "Última verificación"};
         tableModel = new DefaultTableModel(columnNames, 0) {
             @Override
             public boolean isCellEditable(int row, int column) {
@@ -86,7 +86,7 @@ public class ProxyCheckerGUI extends JFrame {
         // Configuración
         timeoutSpinner = new JSpinner(new SpinnerNumberModel(10000, 1000, 60000, 1000));
         threadsSpinner = new JSpinner(new SpinnerNumberModel(50, 1, 200, 5));
-        testUrlField = new JTextField("http://httpbin.org/ip");
+        testUrlField = new JTextField("http://httpbin.org/get");
         httpsCheckBox = new JCheckBox("Verificar HTTPS", true);
 
         // Filtros
@@ -357,6 +357,7 @@ public class ProxyCheckerGUI extends JFrame {
             proxy.getStatusString(),
             proxy.getResponseTime() > 0 ? proxy.getResponseTime() : "-",
             proxy.getCountry(),
+            proxy.getAnonymity(),
             proxy.getLastChecked() != null ?
                 proxy.getLastChecked().format(DateTimeFormatter.ofPattern("HH:mm:ss")) : "-"
         };
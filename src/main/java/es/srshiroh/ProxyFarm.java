@@ -0,0 +1,552 @@
+package es.srshiroh;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Granja de proxies simulados para pruebas de carga reproducibles.
+ * Cada proxy simulado ("listener") tiene su propia dirección en 127.0.0.0/8 y todos comparten
+ * un único puerto: el servidor identifica el listener por la dirección local de la conexión,
+ * así que miles de ellos no consumen miles de puertos ni hilos de aceptación (solo Linux,
+ * donde todo 127.0.0.0/8 es local). Las peticiones se reenvían de verdad, normalmente a un
+ * {@link JudgeServer}, y cada listener tiene su protocolo, latencia, tasa de cortes,
+ * modo agujero negro y modo slow-loris.
+ */
+public class ProxyFarm implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(ProxyFarm.class);
+
+    private static final int HOLD_TIMEOUT = 60000; // Máximo que un agujero negro retiene la conexión
+    private static final int SLOW_LORIS_DELAY = 500; // ms entre bytes en modo slow-loris
+
+    /**
+     * Comportamiento de un proxy simulado; se puede cambiar mientras la granja funciona
+     */
+    public static final class Listener {
+        private final InetAddress address;
+        private final int port;
+        private final ProxyInfo.ProxyType type;
+        private volatile int latency;
+        private volatile double dropRate;
+        private volatile boolean blackhole;
+        private volatile boolean slowLoris;
+        private volatile ProxyInfo.AnonymityLevel anonymity = ProxyInfo.AnonymityLevel.ELITE;
+
+        Listener(InetAddress address, int port, ProxyInfo.ProxyType type) {
+            this.address = address;
+            this.port = port;
+            this.type = type;
+        }
+
+        public InetAddress getAddress() {
+            return address;
+        }
+
+        public ProxyInfo.ProxyType getType() {
+            return type;
+        }
+
+        public int getLatency() {
+            return latency;
+        }
+
+        /**
+         * Retardo en ms antes de cada respuesta (saludo SOCKS o petición HTTP)
+         */
+        public void setLatency(int latency) {
+            this.latency = Math.max(0, latency);
+        }
+
+        public double getDropRate() {
+            return dropRate;
+        }
+
+        /**
+         * Probabilidad (0-1) de cortar cada conexión nada más aceptarla
+         */
+        public void setDropRate(double dropRate) {
+            this.dropRate = Math.max(0, Math.min(1, dropRate));
+        }
+
+        public boolean isBlackhole() {
+            return blackhole;
+        }
+
+        /**
+         * Acepta conexiones pero nunca responde
+         */
+        public void setBlackhole(boolean blackhole) {
+            this.blackhole = blackhole;
+        }
+
+        public boolean isSlowLoris() {
+            return slowLoris;
+        }
+
+        /**
+         * Responde byte a byte, con pausas entre ellos
+         */
+        public void setSlowLoris(boolean slowLoris) {
+            this.slowLoris = slowLoris;
+        }
+
+        public ProxyInfo.AnonymityLevel getAnonymity() {
+            return anonymity;
+        }
+
+        /**
+         * Cabeceras que añade al reenviar HTTP: TRANSPARENT pone Via y X-Forwarded-For con la
+         * IP del cliente, ANONYMOUS solo Via y ELITE ninguna. Los túneles no se tocan.
+         */
+        public void setAnonymity(ProxyInfo.AnonymityLevel anonymity) {
+            this.anonymity = anonymity;
+        }
+
+        /**
+         * Línea para un archivo de proxies
+         */
+        public String toProxyLine() {
+            return address.getHostAddress() + ":" + port + ":" + type;
+        }
+    }
+
+    /**
+     * Reparto de comportamientos al crear la granja
+     */
+    public static final class Config {
+        private int latency = 20;
+        private double dropRate;
+        private double blackholeRate;
+        private double slowLorisRate;
+        private double transparentRate;
+        private double anonymousRate;
+        private long seed = 42;
+
+        /**
+         * Latencia media en ms; cada listener recibe un valor uniforme entre 0 y el doble
+         */
+        public void setLatency(int latency) {
+            this.latency = Math.max(0, latency);
+        }
+
+        public void setDropRate(double dropRate) {
+            this.dropRate = dropRate;
+        }
+
+        /**
+         * Fracción de listeners que son agujeros negros
+         */
+        public void setBlackholeRate(double blackholeRate) {
+            this.blackholeRate = blackholeRate;
+        }
+
+        /**
+         * Fracción de listeners en modo slow-loris
+         */
+        public void setSlowLorisRate(double slowLorisRate) {
+            this.slowLorisRate = slowLorisRate;
+        }
+
+        /**
+         * Fracción de listeners HTTP transparentes
+         */
+        public void setTransparentRate(double transparentRate) {
+            this.transparentRate = transparentRate;
+        }
+
+        /**
+         * Fracción de listeners HTTP anónimos (el resto son élite)
+         */
+        public void setAnonymousRate(double anonymousRate) {
+            this.anonymousRate = anonymousRate;
+        }
+
+        public void setSeed(long seed) {
+            this.seed = seed;
+        }
+    }
+
+    private final ServerSocket serverSocket;
+    private final List<Listener> listeners;
+    private final Map<InetAddress, Listener> byAddress;
+    private final AtomicLong connections = new AtomicLong();
+    private final ExecutorService workers = VirtualThreads.newPerTaskExecutor("proxy-farm");
+
+    /**
+     * Crea count listeners repartidos a partes iguales entre HTTP, SOCKS4 y SOCKS5
+     */
+    public ProxyFarm(int count, Config config) throws IOException {
+        // Escucha en todas las direcciones para recibir las de 127.0.0.0/8; solo se aceptan locales
+        this.serverSocket = new ServerSocket(0, 4096, InetAddress.getByName("0.0.0.0"));
+
+        ProxyInfo.ProxyType[] types = {ProxyInfo.ProxyType.HTTP, ProxyInfo.ProxyType.SOCKS4, ProxyInfo.ProxyType.SOCKS5};
+        Random random = new Random(config.seed);
+        List<Listener> created = new ArrayList<>(count);
+        Map<InetAddress, Listener> index = new HashMap<>(count * 2);
+
+        for (int i = 0; i < count; i++) {
+            int block = i / 254;
+            InetAddress address = InetAddress.getByAddress(new byte[]{
+                    127, (byte) (1 + (block >> 8)), (byte) block, (byte) (1 + i % 254)});
+            Listener listener = new Listener(address, getPort(), types[i % types.length]);
+            listener.setLatency(config.latency > 0 ? random.nextInt(config.latency * 2 + 1) : 0);
+            listener.setDropRate(config.dropRate);
+            double behaviour = random.nextDouble();
+            listener.setBlackhole(behaviour < config.blackholeRate);
+            listener.setSlowLoris(!listener.isBlackhole() && behaviour < config.blackholeRate + config.slowLorisRate);
+            double profile = random.nextDouble();
+            listener.setAnonymity(profile < config.transparentRate ? ProxyInfo.AnonymityLevel.TRANSPARENT
+                    : profile < config.transparentRate + config.anonymousRate ? ProxyInfo.AnonymityLevel.ANONYMOUS
+                    : ProxyInfo.AnonymityLevel.ELITE);
+            created.add(listener);
+            index.put(address, listener);
+        }
+        this.listeners = Collections.unmodifiableList(created);
+        this.byAddress = index;
+
+        workers.submit(this::acceptLoop);
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    public List<Listener> getListeners() {
+        return listeners;
+    }
+
+    /**
+     * Conexiones aceptadas desde el arranque
+     */
+    public long getConnectionCount() {
+        return connections.get();
+    }
+
+    /**
+     * Escribe la lista de proxies de la granja en formato ip:puerto:tipo
+     */
+    public void writeProxyList(Path file) throws IOException {
+        try (PrintWriter writer = new PrintWriter(file.toFile(), StandardCharsets.UTF_8)) {
+            for (Listener listener : listeners) {
+                writer.println(listener.toProxyLine());
+            }
+        }
+    }
+
+    private void acceptLoop() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                connections.incrementAndGet();
+                workers.submit(() -> handle(socket));
+            } catch (IOException e) {
+                if (!serverSocket.isClosed()) {
+                    logger.debug("Error aceptando conexión: {}", e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void handle(Socket socket) {
+        try (Socket s = socket) {
+            Listener listener = byAddress.get(s.getLocalAddress());
+            if (listener == null || !s.getInetAddress().isLoopbackAddress()) {
+                return;
+            }
+            if (listener.dropRate > 0 && ThreadLocalRandom.current().nextDouble() < listener.dropRate) {
+                s.setSoLinger(true, 0); // Cierre con RST, como un proxy que se cae
+                return;
+            }
+            s.setTcpNoDelay(true);
+            s.setSoTimeout(HOLD_TIMEOUT);
+
+            InputStream in = new BufferedInputStream(s.getInputStream());
+            if (listener.blackhole) {
+                // Consumir lo que llegue sin contestar hasta que el cliente se rinda
+                in.transferTo(OutputStream.nullOutputStream());
+                return;
+            }
+            OutputStream out = listener.slowLoris
+                    ? new SlowOutputStream(s.getOutputStream())
+                    : new BufferedOutputStream(s.getOutputStream());
+
+            in.mark(1);
+            int first = in.read();
+            if (first == 0x04 && listener.type == ProxyInfo.ProxyType.SOCKS4) {
+                socks4(listener, in, out);
+            } else if (first == 0x05 && listener.type == ProxyInfo.ProxyType.SOCKS5) {
+                socks5(listener, in, out);
+            } else if (first > 0x05 && listener.type == ProxyInfo.ProxyType.HTTP) {
+                in.reset();
+                http(listener, s, in, out);
+            }
+            // Protocolo equivocado: se cierra sin responder
+        } catch (IOException | InterruptedException e) {
+            logger.debug("Conexión de la granja cerrada: {}", e.getMessage());
+        }
+    }
+
+    private void socks4(Listener listener, InputStream in, OutputStream out) throws IOException, InterruptedException {
+        DataInputStream data = new DataInputStream(in);
+        data.readUnsignedByte(); // CMD
+        int port = data.readUnsignedShort();
+        byte[] ip = new byte[4];
+        data.readFully(ip);
+        readNullTerminated(in); // user id
+        // SOCKS4a: IP 0.0.0.x seguida del nombre de host
+        String host = ip[0] == 0 && ip[1] == 0 && ip[2] == 0 && ip[3] != 0
+                ? readNullTerminated(in)
+                : InetAddress.getByAddress(ip).getHostAddress();
+
+        delay(listener);
+        try (Socket target = connectTarget(host, port)) {
+            out.write(new byte[]{0x00, 0x5A, 0, 0, 0, 0, 0, 0});
+            out.flush();
+            relay(in, out, target);
+        } catch (IOException e) {
+            out.write(new byte[]{0x00, 0x5B, 0, 0, 0, 0, 0, 0});
+            out.flush();
+        }
+    }
+
+    private void socks5(Listener listener, InputStream in, OutputStream out) throws IOException, InterruptedException {
+        DataInputStream data = new DataInputStream(in);
+        int methods = data.readUnsignedByte();
+        data.skipBytes(methods);
+        delay(listener);
+        out.write(new byte[]{0x05, 0x00});
+        out.flush();
+
+        // VER, CMD, RSV, ATYP + dirección + puerto
+        byte[] header = new byte[4];
+        data.readFully(header);
+        String host;
+        if (header[3] == 0x01 || header[3] == 0x04) {
+            byte[] address = new byte[header[3] == 0x01 ? 4 : 16];
+            data.readFully(address);
+            host = InetAddress.getByAddress(address).getHostAddress();
+        } else {
+            byte[] name = new byte[data.readUnsignedByte()];
+            data.readFully(name);
+            host = new String(name, StandardCharsets.US_ASCII);
+        }
+        int port = data.readUnsignedShort();
+
+        try (Socket target = connectTarget(host, port)) {
+            out.write(new byte[]{0x05, 0x00, 0x00, 0x01, 0, 0, 0, 0, 0, 0});
+            out.flush();
+            relay(in, out, target);
+        } catch (IOException e) {
+            out.write(new byte[]{0x05, 0x05, 0x00, 0x01, 0, 0, 0, 0, 0, 0});
+            out.flush();
+        }
+    }
+
+    private void http(Listener listener, Socket client, InputStream in, OutputStream out) throws IOException, InterruptedException {
+        String requestLine;
+        while ((requestLine = RawHttp.readLine(in)) != null && !requestLine.isEmpty()) {
+            List<String> headers = new ArrayList<>();
+            boolean keepAlive = true;
+            String header;
+            while ((header = RawHttp.readLine(in)) != null && !header.isEmpty()) {
+                String lower = header.toLowerCase();
+                if (lower.startsWith("connection:") && lower.contains("close")) {
+                    keepAlive = false;
+                }
+                if (!lower.startsWith("proxy-connection:") && !lower.startsWith("connection:")) {
+                    headers.add(header);
+                }
+            }
+
+            delay(listener);
+            String[] parts = requestLine.split(" ");
+            if (parts.length < 3) {
+                return;
+            }
+
+            if (parts[0].equals("CONNECT")) {
+                int colon = parts[1].lastIndexOf(':');
+                try (Socket target = connectTarget(parts[1].substring(0, colon),
+                        Integer.parseInt(parts[1].substring(colon + 1)))) {
+                    out.write("HTTP/1.1 200 Connection established\r\n\r\n".getBytes(StandardCharsets.US_ASCII));
+                    out.flush();
+                    relay(in, out, target);
+                } catch (IOException | RuntimeException e) {
+                    out.write("HTTP/1.1 502 Bad Gateway\r\nContent-Length: 0\r\n\r\n".getBytes(StandardCharsets.US_ASCII));
+                    out.flush();
+                }
+                return;
+            }
+
+            ProxyInfo.AnonymityLevel anonymity = listener.anonymity;
+            if (anonymity != ProxyInfo.AnonymityLevel.ELITE) {
+                headers.add("Via: 1.1 proxy-farm");
+            }
+            if (anonymity == ProxyInfo.AnonymityLevel.TRANSPARENT) {
+                headers.add("X-Forwarded-For: " + client.getInetAddress().getHostAddress());
+            }
+            if (!forward(parts[0], URI.create(parts[1]), headers, out, keepAlive)) {
+                return;
+            }
+            if (!keepAlive) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Reenvía una petición en forma absoluta al destino y copia la respuesta al cliente
+     */
+    private boolean forward(String method, URI uri, List<String> headers, OutputStream out,
+                            boolean keepAlive) throws IOException {
+        RawHttp.Response response;
+        try (Socket target = connectTarget(uri.getHost(), uri.getPort() != -1 ? uri.getPort() : 80)) {
+            StringBuilder request = new StringBuilder();
+            String path = uri.getRawPath() == null || uri.getRawPath().isEmpty() ? "/" : uri.getRawPath();
+            request.append(method).append(' ').append(path)
+                    .append(uri.getRawQuery() != null ? "?" + uri.getRawQuery() : "").append(" HTTP/1.1\r\n");
+            for (String header : headers) {
+                request.append(header).append("\r\n");
+            }
+            request.append("Connection: close\r\n\r\n");
+
+            OutputStream targetOut = new BufferedOutputStream(target.getOutputStream());
+            targetOut.write(request.toString().getBytes(StandardCharsets.US_ASCII));
+            targetOut.flush();
+            response = RawHttp.readResponse(new BufferedInputStream(target.getInputStream()));
+        } catch (IOException | IllegalArgumentException e) {
+            out.write("HTTP/1.1 502 Bad Gateway\r\nContent-Length: 0\r\n\r\n".getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+            return keepAlive;
+        }
+
+        StringBuilder head = new StringBuilder("HTTP/1.1 ").append(response.status).append(" OK\r\n");
+        String contentType = response.headers.get("content-type");
+        if (contentType != null) {
+            head.append("Content-Type: ").append(contentType).append("\r\n");
+        }
+        head.append("Content-Length: ").append(response.body.length).append("\r\n");
+        if (!keepAlive) {
+            head.append("Connection: close\r\n");
+        }
+        head.append("\r\n");
+        out.write(head.toString().getBytes(StandardCharsets.US_ASCII));
+        out.write(response.body);
+        out.flush();
+        return true;
+    }
+
+    private Socket connectTarget(String host, int port) throws IOException {
+        Socket target = new Socket();
+        try {
+            target.setTcpNoDelay(true);
+            target.connect(new InetSocketAddress(host, port), HOLD_TIMEOUT);
+            target.setSoTimeout(HOLD_TIMEOUT);
+            return target;
+        } catch (IOException e) {
+            target.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Copia en ambos sentidos hasta que uno de los extremos cierre
+     */
+    private void relay(InputStream clientIn, OutputStream clientOut, Socket target) throws IOException {
+        workers.submit(() -> {
+            try {
+                clientIn.transferTo(target.getOutputStream());
+            } catch (IOException ignored) {
+                // El cliente cerró el túnel
+            } finally {
+                try {
+                    target.shutdownOutput();
+                } catch (IOException ignored) {
+                    // Ya cerrado
+                }
+            }
+        });
+        try {
+            // Se vacía tras cada lectura: los túneles TLS son interactivos
+            InputStream targetIn = target.getInputStream();
+            byte[] buffer = new byte[8192];
+            int n;
+            while ((n = targetIn.read(buffer)) != -1) {
+                clientOut.write(buffer, 0, n);
+                clientOut.flush();
+            }
+        } catch (SocketException ignored) {
+            // El destino o el cliente cortaron
+        }
+    }
+
+    private static void delay(Listener listener) throws InterruptedException {
+        if (listener.latency > 0) {
+            Thread.sleep(listener.latency);
+        }
+    }
+
+    private static String readNullTerminated(InputStream in) throws IOException {
+        StringBuilder value = new StringBuilder();
+        int c;
+        while ((c = in.read()) > 0) {
+            value.append((char) c);
+        }
+        if (c < 0) {
+            throw new EOFException("Petición SOCKS4 incompleta");
+        }
+        return value.toString();
+    }
+
+    /**
+     * Salida que entrega un byte cada SLOW_LORIS_DELAY ms
+     */
+    private static final class SlowOutputStream extends FilterOutputStream {
+        SlowOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            try {
+                Thread.sleep(SLOW_LORIS_DELAY);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Slow-loris interrumpido");
+            }
+            out.write(b);
+            out.flush();
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            for (int i = 0; i < len; i++) {
+                write(b[off + i]);
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        workers.shutdownNow();
+    }
+}
@@ -0,0 +1,399 @@
+package es.srshiroh;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Pasarela local HTTP/CONNECT que reenvía el tráfico de los clientes a través de los proxies
+ * válidos en cada momento. La elección no toma cerrojos: dos candidatos al azar entre los más
+ * rápidos y gana el de menor latencia × (peticiones en curso + 1). Un proxy que falla al abrir
+ * la conexión se expulsa al momento, se reintenta con otro y se manda a revalidar.
+ */
+public class ProxyGateway implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(ProxyGateway.class);
+
+    private static final int MAX_CANDIDATES = 1000;
+    private static final long REFRESH_MILLIS = 1000;
+    private static final int MAX_ATTEMPTS = 3;
+    private static final int CHOICES = 2;
+    private static final int IDLE_TIMEOUT = 300000; // Túneles abiertos sin tráfico
+
+    /**
+     * Proxy del pool visto por la pasarela
+     */
+    private static final class Upstream {
+        final ProxyInfo proxy;
+        final AtomicInteger inFlight = new AtomicInteger();
+        final AtomicBoolean ejected = new AtomicBoolean();
+
+        Upstream(ProxyInfo proxy) {
+            this.proxy = proxy;
+        }
+
+        long cost() {
+            return (inFlight.get() + 1L) * Math.max(1, proxy.getResponseTime());
+        }
+    }
+
+    private final ProxyManager manager;
+    private final int timeout;
+    private final ServerSocket serverSocket;
+    private final ExecutorService workers = VirtualThreads.newPerTaskExecutor("gateway");
+    private final Map<ProxyInfo, Upstream> upstreams = new ConcurrentHashMap<>();
+    private volatile Upstream[] candidates = new Upstream[0];
+    private volatile long refreshedAt;
+    private final AtomicBoolean refreshing = new AtomicBoolean(false);
+    private final LongAdder served = new LongAdder();
+    private final LongAdder ejections = new LongAdder();
+
+    public ProxyGateway(ProxyManager manager, InetSocketAddress address, int timeout) throws IOException {
+        this.manager = manager;
+        this.timeout = timeout;
+        this.serverSocket = new ServerSocket();
+        serverSocket.bind(address, 1024);
+        Thread acceptor = new Thread(this::acceptLoop, "gateway-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        logger.info("Pasarela escuchando en {}", serverSocket.getLocalSocketAddress());
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Conexiones de clientes reenviadas con éxito
+     */
+    public long getServedCount() {
+        return served.sum();
+    }
+
+    public long getEjectedCount() {
+        return ejections.sum();
+    }
+
+    public int getCandidateCount() {
+        return candidates.length;
+    }
+
+    private void acceptLoop() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket client = serverSocket.accept();
+                workers.submit(() -> handle(client));
+            } catch (IOException e) {
+                if (!serverSocket.isClosed()) {
+                    logger.debug("Error aceptando conexión: {}", e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Rehace la lista de candidatos como mucho una vez por segundo; el resto sigue con la anterior
+     */
+    private void refreshIfStale() {
+        if (System.currentTimeMillis() - refreshedAt < REFRESH_MILLIS || !refreshing.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            List<ProxyInfo> fastest = manager.getFastestProxies(MAX_CANDIDATES);
+            Upstream[] fresh = new Upstream[fastest.size()];
+            Set<ProxyInfo> current = new HashSet<>(fastest);
+            for (int i = 0; i < fresh.length; i++) {
+                Upstream upstream = upstreams.computeIfAbsent(fastest.get(i), Upstream::new);
+                // Vuelve a estar en el índice: la revalidación lo dio por bueno
+                upstream.ejected.set(false);
+                fresh[i] = upstream;
+            }
+            upstreams.values().removeIf(upstream -> !current.contains(upstream.proxy) && upstream.inFlight.get() == 0);
+            candidates = fresh;
+            refreshedAt = System.currentTimeMillis();
+        } finally {
+            refreshing.set(false);
+        }
+    }
+
+    private Upstream select() {
+        refreshIfStale();
+        Upstream[] pool = candidates;
+        if (pool.length == 0) {
+            return null;
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int attempt = 0; attempt < 4; attempt++) {
+            Upstream best = null;
+            for (int i = 0; i < CHOICES; i++) {
+                Upstream candidate = pool[random.nextInt(pool.length)];
+                if (!candidate.ejected.get() && (best == null || candidate.cost() < best.cost())) {
+                    best = candidate;
+                }
+            }
+            if (best != null) {
+                return best;
+            }
+        }
+        // Casi todos expulsados: buscar cualquiera que quede
+        for (Upstream candidate : pool) {
+            if (!candidate.ejected.get()) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    private void eject(Upstream upstream, Throwable error) {
+        if (!upstream.ejected.compareAndSet(false, true)) {
+            return;
+        }
+        ejections.increment();
+        logger.debug("Proxy {} expulsado de la pasarela: {}", upstream.proxy.getAddress(), error.getMessage());
+        workers.submit(() -> {
+            try {
+                manager.reportFailure(upstream.proxy, error);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+    }
+
+    private void handle(Socket socket) {
+        try (Socket client = socket) {
+            client.setTcpNoDelay(true);
+            client.setSoTimeout(timeout);
+            InputStream in = new BufferedInputStream(client.getInputStream());
+            OutputStream out = new BufferedOutputStream(client.getOutputStream());
+
+            String requestLine = RawHttp.readLine(in);
+            if (requestLine == null) {
+                return;
+            }
+            List<String> headers = new ArrayList<>();
+            String header;
+            while ((header = RawHttp.readLine(in)) != null && !header.isEmpty()) {
+                String lower = header.toLowerCase();
+                if (!lower.startsWith("proxy-connection:") && !lower.startsWith("connection:")
+                        && !lower.startsWith("proxy-authorization:")) {
+                    headers.add(header);
+                }
+            }
+
+            String[] parts = requestLine.split(" ");
+            if (parts.length < 3) {
+                respond(out, 400, "Bad Request");
+                return;
+            }
+            boolean tunnel = parts[0].equalsIgnoreCase("CONNECT");
+            String host;
+            int port;
+            URI uri = null;
+            try {
+                if (tunnel) {
+                    int colon = parts[1].lastIndexOf(':');
+                    host = parts[1].substring(0, colon);
+                    if (host.startsWith("[") && host.endsWith("]")) {
+                        host = host.substring(1, host.length() - 1);
+                    }
+                    port = Integer.parseInt(parts[1].substring(colon + 1));
+                } else {
+                    uri = URI.create(parts[1]);
+                    host = uri.getHost();
+                    port = uri.getPort() != -1 ? uri.getPort() : 80;
+                    if (host == null || !"http".equalsIgnoreCase(uri.getScheme())) {
+                        throw new IllegalArgumentException("Se espera una URL http absoluta");
+                    }
+                }
+            } catch (RuntimeException e) {
+                respond(out, 400, "Bad Request");
+                return;
+            }
+            client.setSoTimeout(IDLE_TIMEOUT);
+
+            for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+                Upstream upstream = select();
+                if (upstream == null) {
+                    respond(out, 503, "No Valid Proxies");
+                    return;
+                }
+                upstream.inFlight.incrementAndGet();
+                try {
+                    Socket remote;
+                    try {
+                        remote = tunnel || upstream.proxy.getType().isSocks()
+                                ? openTunnel(upstream.proxy, host, port)
+                                : openDirect(upstream.proxy);
+                    } catch (IOException e) {
+                        eject(upstream, e);
+                        continue;
+                    }
+                    try (Socket s = remote) {
+                        if (tunnel) {
+                            out.write("HTTP/1.1 200 Connection established\r\n\r\n".getBytes(StandardCharsets.US_ASCII));
+                            out.flush();
+                            relay(in, out, s, false);
+                        } else {
+                            sendRequest(s, parts, uri, headers, !upstream.proxy.getType().isSocks());
+                            if (relay(in, out, s, true) == 0) {
+                                // Aceptó la petición pero no devolvió nada
+                                eject(upstream, new EOFException("El proxy cerró sin responder"));
+                                respond(out, 502, "Bad Gateway");
+                                return;
+                            }
+                        }
+                    }
+                    served.increment();
+                    return;
+                } finally {
+                    upstream.inFlight.decrementAndGet();
+                }
+            }
+            respond(out, 502, "Bad Gateway");
+        } catch (IOException e) {
+            logger.debug("Conexión de la pasarela cerrada: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Túnel hasta host:port a través del proxy (CONNECT o SOCKS)
+     */
+    private Socket openTunnel(ProxyInfo proxy, String host, int port) throws IOException {
+        if (proxy.getType().isSocks()) {
+            return new SocksProber(timeout, manager.getDnsCache()).openTunnel(proxy, host, port);
+        }
+        Socket socket = openDirect(proxy);
+        try {
+            String authority = (host.indexOf(':') >= 0 ? "[" + host + "]" : host) + ":" + port;
+            OutputStream out = socket.getOutputStream();
+            out.write(("CONNECT " + authority + " HTTP/1.1\r\nHost: " + authority + "\r\n\r\n")
+                    .getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+            // Sin búfer: lo que siga a la respuesta ya es del túnel
+            RawHttp.Response response = RawHttp.readConnectResponse(socket.getInputStream());
+            if (response.status != 200) {
+                throw new IOException("CONNECT rechazado (HTTP " + response.status + ")");
+            }
+            return socket;
+        } catch (IOException e) {
+            socket.close();
+            throw e;
+        }
+    }
+
+    private Socket openDirect(ProxyInfo proxy) throws IOException {
+        Socket socket = new Socket();
+        try {
+            socket.setTcpNoDelay(true);
+            socket.connect(manager.getDnsCache().resolve(proxy.getHost(), proxy.getPort()), timeout);
+            socket.setSoTimeout(timeout);
+            return socket;
+        } catch (IOException e) {
+            socket.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Petición en forma absoluta para un proxy HTTP, o de origen a través de un túnel SOCKS
+     */
+    private static void sendRequest(Socket remote, String[] requestLine, URI uri, List<String> headers,
+                                    boolean absolute) throws IOException {
+        StringBuilder request = new StringBuilder(requestLine[0]).append(' ');
+        if (absolute) {
+            request.append(requestLine[1]);
+        } else {
+            String path = uri.getRawPath() == null || uri.getRawPath().isEmpty() ? "/" : uri.getRawPath();
+            request.append(path).append(uri.getRawQuery() != null ? "?" + uri.getRawQuery() : "");
+        }
+        request.append(' ').append(requestLine[2]).append("\r\n");
+        for (String header : headers) {
+            request.append(header).append("\r\n");
+        }
+        request.append("Connection: close\r\n\r\n");
+        OutputStream out = remote.getOutputStream();
+        out.write(request.toString().getBytes(StandardCharsets.ISO_8859_1));
+        out.flush();
+    }
+
+    /**
+     * Copia en ambos sentidos hasta que el remoto cierre; devuelve los bytes recibidos del remoto.
+     * Con awaitResponse el primer byte debe llegar dentro del timeout de verificación.
+     */
+    private long relay(InputStream clientIn, OutputStream clientOut, Socket remote,
+                       boolean awaitResponse) throws IOException {
+        if (!awaitResponse) {
+            remote.setSoTimeout(IDLE_TIMEOUT);
+        }
+        workers.submit(() -> {
+            try {
+                clientIn.transferTo(remote.getOutputStream());
+            } catch (IOException ignored) {
+                // El cliente cerró
+            } finally {
+                try {
+                    remote.shutdownOutput();
+                } catch (IOException ignored) {
+                    // Ya cerrado
+                }
+            }
+        });
+        long received = 0;
+        try {
+            // Se vacía tras cada lectura: los túneles TLS son interactivos
+            InputStream remoteIn = remote.getInputStream();
+            byte[] buffer = new byte[8192];
+            int n;
+            while ((n = remoteIn.read(buffer)) != -1) {
+                if (received == 0 && awaitResponse) {
+                    remote.setSoTimeout(IDLE_TIMEOUT);
+                }
+                clientOut.write(buffer, 0, n);
+                clientOut.flush();
+                received += n;
+            }
+        } catch (SocketException ignored) {
+            // El remoto o el cliente cortaron
+        } catch (IOException e) {
+            if (received == 0) {
+                return 0; // Timeout sin respuesta
+            }
+        }
+        return received;
+    }
+
+    private static void respond(OutputStream out, int status, String reason) throws IOException {
+        out.write(("HTTP/1.1 " + status + " " + reason + "\r\nContent-Length: 0\r\nConnection: close\r\n\r\n")
+                .getBytes(StandardCharsets.US_ASCII));
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        workers.shutdownNow();
+    }
+}
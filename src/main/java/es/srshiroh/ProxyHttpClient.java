@@ -0,0 +1,148 @@
+package es.srshiroh;
+
+import org.apache.hc.client5.http.DnsResolver;
+import org.apache.hc.client5.http.classic.methods.HttpGet;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.client5.http.impl.routing.DefaultRoutePlanner;
+import org.apache.hc.client5.http.protocol.HttpClientContext;
+import org.apache.hc.core5.http.HttpHost;
+import org.apache.hc.core5.http.io.entity.EntityUtils;
+import org.apache.hc.core5.http.protocol.HttpContext;
+import org.apache.hc.core5.io.CloseMode;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Collections;
+
+/**
+ * Cliente HTTP compartido por todas las verificaciones.
+ * Mantiene un único pool de conexiones; el proxy de cada petición se elige
+ * mediante el contexto en lugar de construir un cliente nuevo por proxy.
+ */
+public class ProxyHttpClient implements Closeable {
+    private static final String PROXY_ATTRIBUTE = "es.srshiroh.proxy";
+
+    private final PoolingHttpClientConnectionManager connectionManager;
+    private final CloseableHttpClient client;
+    private volatile int timeout;
+
+    public ProxyHttpClient(int maxConnections, int timeout) {
+        this(maxConnections, timeout, null);
+    }
+
+    /**
+     * Con un resolvedor propio para los nombres de los proxies (null = el del sistema)
+     */
+    public ProxyHttpClient(int maxConnections, int timeout, DnsResolver dnsResolver) {
+        this.timeout = timeout;
+        this.connectionManager = PoolingHttpClientConnectionManagerBuilder.create()
+                .setDnsResolver(dnsResolver)
+                .setMaxConnTotal(maxConnections)
+                .setMaxConnPerRoute(2)
+                .setConnectionConfigResolver(route -> ConnectionConfig.custom()
+                        .setConnectTimeout(Timeout.ofMilliseconds(this.timeout))
+                        .setSocketTimeout(Timeout.ofMilliseconds(this.timeout))
+                        .build())
+                .build();
+
+        this.client = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setRoutePlanner(new ContextProxyRoutePlanner())
+                .evictIdleConnections(TimeValue.ofSeconds(5))
+                .disableAutomaticRetries()
+                .disableCookieManagement()
+                .disableRedirectHandling()
+                .build();
+    }
+
+    public void setTimeout(int timeout) {
+        this.timeout = timeout;
+    }
+
+    public void setMaxConnections(int maxConnections) {
+        connectionManager.setMaxTotal(maxConnections);
+    }
+
+    /**
+     * Ejecuta un GET a través del proxy indicado y devuelve el código de respuesta
+     */
+    public int execute(ProxyInfo proxy, String url) throws IOException {
+        HttpClientContext context = contextFor(proxy);
+
+        HttpGet request = new HttpGet(url);
+        request.setConfig(RequestConfig.custom()
+                .setConnectionRequestTimeout(Timeout.ofMilliseconds(timeout))
+                .setResponseTimeout(Timeout.ofMilliseconds(timeout))
+                .build());
+
+        return client.execute(request, context, response -> {
+            EntityUtils.consume(response.getEntity());
+            return response.getCode();
+        });
+    }
+
+    /**
+     * Como execute, pero devuelve también el cuerpo (hasta 64 KB), p. ej. la respuesta de un juez
+     */
+    RawHttp.Response fetch(ProxyInfo proxy, String url) throws IOException {
+        return fetch(contextFor(proxy), url);
+    }
+
+    /**
+     * GET sin proxy: lo que el destino ve de nosotros directamente
+     */
+    RawHttp.Response fetchDirect(String url) throws IOException {
+        return fetch(HttpClientContext.create(), url);
+    }
+
+    private RawHttp.Response fetch(HttpClientContext context, String url) throws IOException {
+        HttpGet request = new HttpGet(url);
+        request.setConfig(RequestConfig.custom()
+                .setConnectionRequestTimeout(Timeout.ofMilliseconds(timeout))
+                .setResponseTimeout(Timeout.ofMilliseconds(timeout))
+                .build());
+
+        return client.execute(request, context, response -> {
+            byte[] body = response.getEntity() != null
+                    ? EntityUtils.toByteArray(response.getEntity(), RawHttp.MAX_BODY) : new byte[0];
+            EntityUtils.consume(response.getEntity());
+            return new RawHttp.Response(response.getCode(), Collections.emptyMap(), body, false);
+        });
+    }
+
+    /**
+     * Contexto de petición que enruta a través del proxy indicado
+     */
+    static HttpClientContext contextFor(ProxyInfo proxy) {
+        HttpClientContext context = HttpClientContext.create();
+        context.setAttribute(PROXY_ATTRIBUTE, new HttpHost(proxy.getHost(), proxy.getPort()));
+        return context;
+    }
+
+    @Override
+    public void close() {
+        client.close(CloseMode.IMMEDIATE);
+    }
+
+    /**
+     * Selecciona el proxy de la ruta a partir del atributo del contexto
+     */
+    static class ContextProxyRoutePlanner extends DefaultRoutePlanner {
+        ContextProxyRoutePlanner() {
+            super(null);
+        }
+
+        @Override
+        protected HttpHost determineProxy(HttpHost target, HttpContext context) {
+            Object proxy = context.getAttribute(PROXY_ATTRIBUTE);
+            return proxy instanceof HttpHost ? (HttpHost) proxy : null;
+        }
+    }
+}
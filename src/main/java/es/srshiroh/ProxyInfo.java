@@ -1,5 +1,12 @@
 package es.srshiroh;
 
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.ConnectException;
+import java.net.NoRouteToHostException;
+import java.net.SocketException;
+import java.net.UnknownHostException;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 
@@ -13,9 +20,12 @@ public class ProxyInfo {
     private boolean isValid;
     private long responseTime;
     private String errorMessage;
+    private ErrorType errorType;
     private LocalDateTime lastChecked;
     private String country;
-    private boolean isAnonymous;
+    private AnonymityLevel anonymity;
+    private String exitIp;
+    private boolean httpsSupported;
 
     public enum ProxyType {
         HTTP("HTTP"),
@@ -34,6 +44,10 @@ public class ProxyInfo {
             return displayName;
         }
 
+        public boolean isSocks() {
+            return this == SOCKS4 || this == SOCKS5;
+        }
+
         public static ProxyType fromString(String type) {
             for (ProxyType proxyType : values()) {
                 if (proxyType.displayName.equalsIgnoreCase(type)) {
@@ -44,27 +58,98 @@ public class ProxyInfo {
         }
     }
 
+    /**
+     * Nivel de anonimato según lo que el juez recibió a través del proxy
+     */
+    public enum AnonymityLevel {
+        UNKNOWN,     // El destino no devolvió las cabeceras (no es un juez)
+        TRANSPARENT, // Reenvía nuestra IP real (X-Forwarded-For, Forwarded...)
+        ANONYMOUS,   // Oculta nuestra IP pero se identifica como proxy (Via...)
+        ELITE        // Sin rastro del proxy
+    }
+
+    /**
+     * Tipo de fallo de la última verificación
+     */
+    public enum ErrorType {
+        NONE,           // Sin error
+        TIMEOUT,        // Sin respuesta a tiempo (conexión o lectura)
+        REFUSED,        // Conexión rechazada
+        UNREACHABLE,    // Host o red inalcanzable, o nombre sin resolver
+        RESET,          // Conexión cortada a mitad
+        PROTOCOL,       // Respuesta HTTP/SOCKS inválida o rechazada por el proxy
+        HTTP_STATUS,    // El proxy respondió con un código distinto de 200
+        LOCAL_RESOURCE, // Recursos locales agotados (descriptores, puertos efímeros): no es culpa del proxy
+        OTHER;
+
+        /**
+         * Clasifica la excepción de una verificación fallida
+         */
+        public static ErrorType classify(Throwable error) {
+            for (Throwable t = error; t != null; t = t.getCause()) {
+                String message = t.getMessage() != null ? t.getMessage().toLowerCase() : "";
+                // EMFILE/ENFILE y EADDRNOTAVAIL llegan como IOException con el texto del sistema
+                if (message.contains("too many open files") || message.contains("cannot assign requested address")
+                        || message.contains("no buffer space available")) {
+                    return LOCAL_RESOURCE;
+                }
+                if (t instanceof InterruptedIOException) {
+                    return TIMEOUT;
+                }
+                if (t instanceof ConnectException) {
+                    return message.contains("timed out") ? TIMEOUT : REFUSED;
+                }
+                if (t instanceof NoRouteToHostException || t instanceof UnknownHostException) {
+                    return UNREACHABLE;
+                }
+                if (t instanceof EOFException || (t instanceof SocketException && message.contains("reset"))) {
+                    return RESET;
+                }
+            }
+            return error instanceof IOException ? PROTOCOL : OTHER;
+        }
+    }
+
     public ProxyInfo(String host, int port, ProxyType type) {
         this.host = host;
         this.port = port;
         this.type = type;
         this.isValid = false;
         this.responseTime = -1;
+        this.errorType = ErrorType.NONE;
         this.lastChecked = null;
         this.country = "Unknown";
-        this.isAnonymous = false;
+        this.anonymity = AnonymityLevel.UNKNOWN;
     }
 
-    // Constructor desde string (formato: ip:puerto o ip:puerto:tipo)
+    // Constructor desde string (formato: ip:puerto, ip:puerto:tipo o [ipv6]:puerto[:tipo])
     public static ProxyInfo fromString(String proxyString) {
-        String[] parts = proxyString.trim().split(":");
-        if (parts.length < 2) {
-            throw new IllegalArgumentException("Formato de proxy inválido: " + proxyString);
+        String value = proxyString.trim();
+        String host;
+        String rest;
+
+        if (value.startsWith("[")) {
+            int close = value.indexOf(']');
+            if (close < 0 || close + 1 >= value.length() || value.charAt(close + 1) != ':') {
+                throw new IllegalArgumentException("Formato de proxy inválido: " + proxyString);
+            }
+            host = value.substring(1, close);
+            rest = value.substring(close + 2);
+        } else {
+            int colon = value.indexOf(':');
+            if (colon <= 0) {
+                throw new IllegalArgumentException("Formato de proxy inválido: " + proxyString);
+            }
+            host = value.substring(0, colon);
+            rest = value.substring(colon + 1);
         }
 
-        String host = parts[0];
-        int port = Integer.parseInt(parts[1]);
-        ProxyType type = parts.length > 2 ? ProxyType.fromString(parts[2]) : ProxyType.HTTP;
+        int typeSeparator = rest.indexOf(':');
+        int port = Integer.parseInt(typeSeparator >= 0 ? rest.substring(0, typeSeparator) : rest);
+        if (port < 1 || port > 65535) {
+            throw new IllegalArgumentException("Puerto inválido: " + proxyString);
+        }
+        ProxyType type = typeSeparator >= 0 ? ProxyType.fromString(rest.substring(typeSeparator + 1)) : ProxyType.HTTP;
 
         return new ProxyInfo(host, port, type);
     }
@@ -94,6 +179,10 @@ public class ProxyInfo {
         return errorMessage;
     }
 
+    public ErrorType getErrorType() {
+        return errorType;
+    }
+
     public LocalDateTime getLastChecked() {
         return lastChecked;
     }
@@ -103,7 +192,22 @@ public class ProxyInfo {
     }
 
     public boolean isAnonymous() {
-        return isAnonymous;
+        return anonymity == AnonymityLevel.ANONYMOUS || anonymity == AnonymityLevel.ELITE;
+    }
+
+    public AnonymityLevel getAnonymity() {
+        return anonymity;
+    }
+
+    /**
+     * IP con la que el proxy sale a Internet según el juez (null si no se sabe)
+     */
+    public String getExitIp() {
+        return exitIp;
+    }
+
+    public boolean isHttpsSupported() {
+        return httpsSupported;
     }
 
     // Setters
@@ -119,6 +223,10 @@ public class ProxyInfo {
         this.errorMessage = errorMessage;
     }
 
+    public void setErrorType(ErrorType errorType) {
+        this.errorType = errorType != null ? errorType : ErrorType.NONE;
+    }
+
     public void setLastChecked(LocalDateTime lastChecked) {
         this.lastChecked = lastChecked;
     }
@@ -127,20 +235,33 @@ public class ProxyInfo {
         this.country = country;
     }
 
-    public void setAnonymous(boolean anonymous) {
-        this.isAnonymous = anonymous;
+    public void setAnonymity(AnonymityLevel anonymity) {
+        this.anonymity = anonymity != null ? anonymity : AnonymityLevel.UNKNOWN;
+    }
+
+    public void setExitIp(String exitIp) {
+        this.exitIp = exitIp;
+    }
+
+    public void setHttpsSupported(boolean httpsSupported) {
+        this.httpsSupported = httpsSupported;
     }
 
     public String getAddress() {
-        return host + ":" + port;
+        return hostForAddress() + ":" + port;
     }
 
     public String getFullAddress() {
-        return type + "://" + host + ":" + port;
+        return type + "://" + hostForAddress() + ":" + port;
     }
 
     public String toFileFormat() {
-        return host + ":" + port + ":" + type.displayName;
+        return hostForAddress() + ":" + port + ":" + type.displayName;
+    }
+
+    // Las IPv6 van entre corchetes para que el puerto no sea ambiguo
+    private String hostForAddress() {
+        return host.indexOf(':') >= 0 ? "[" + host + "]" : host;
     }
 
     public String getStatusString() {
@@ -160,8 +281,8 @@ public class ProxyInfo {
             if (country != null && !country.equals("Unknown")) {
                 sb.append(", ").append(country);
             }
-            if (isAnonymous) {
-                sb.append(", Anonymous");
+            if (anonymity != AnonymityLevel.UNKNOWN) {
+                sb.append(", ").append(anonymity);
             }
             sb.append("]");
         } else {
@@ -0,0 +1,247 @@
+package es.srshiroh;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Conjunto concurrente de claves host:puerto para deduplicar proxies.
+ * IPv4 + puerto se empaquetan exactos en un long; IPv6 + puerto se guardan como hash de 64 bits.
+ * Ambos viven en tablas de direccionamiento abierto con cerrojo por segmento (~8-16 bytes por
+ * entrada). Los nombres de host usan un conjunto de Strings como respaldo.
+ */
+public class ProxyKeySet {
+    private static final int SEGMENT_BITS = 6;
+    private static final int SEGMENTS = 1 << SEGMENT_BITS;
+    private static final long IPV4_TAG = 1L << 62;
+
+    private final Segment[] ipv4 = newSegments();
+    private final Segment[] ipv6 = newSegments();
+    private final Set<String> hostnames = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Inserta la clave si no existía. Devuelve true si es nueva.
+     */
+    public boolean add(String host, int port) {
+        long packed = packIpv4(host, port);
+        if (packed != 0) {
+            return insert(ipv4, packed);
+        }
+        if (host.indexOf(':') >= 0) {
+            long hashed = hashIpv6(host, port);
+            if (hashed != 0) {
+                return insert(ipv6, hashed);
+            }
+        }
+        return hostnames.add(host.toLowerCase() + ":" + port);
+    }
+
+    /**
+     * Igual que add, para una IPv4 ya empaquetada (big-endian) por el parser
+     */
+    public boolean addIpv4(int address, int port) {
+        return insert(ipv4, packIpv4(address, port));
+    }
+
+    /**
+     * Quita la clave para que el proxy pueda volver a entrar. Devuelve true si estaba.
+     */
+    public boolean remove(String host, int port) {
+        long packed = packIpv4(host, port);
+        if (packed != 0) {
+            return delete(ipv4, packed);
+        }
+        if (host.indexOf(':') >= 0) {
+            long hashed = hashIpv6(host, port);
+            if (hashed != 0) {
+                return delete(ipv6, hashed);
+            }
+        }
+        return hostnames.remove(host.toLowerCase() + ":" + port);
+    }
+
+    public long size() {
+        long size = hostnames.size();
+        for (int i = 0; i < SEGMENTS; i++) {
+            size += ipv4[i].size() + ipv6[i].size();
+        }
+        return size;
+    }
+
+    public void clear() {
+        for (int i = 0; i < SEGMENTS; i++) {
+            ipv4[i].clear();
+            ipv6[i].clear();
+        }
+        hostnames.clear();
+    }
+
+    private static Segment[] newSegments() {
+        Segment[] segments = new Segment[SEGMENTS];
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment();
+        }
+        return segments;
+    }
+
+    private static boolean insert(Segment[] segments, long key) {
+        long hash = mix(key);
+        return segments[(int) (hash >>> (64 - SEGMENT_BITS))].add(key, hash);
+    }
+
+    private static boolean delete(Segment[] segments, long key) {
+        long hash = mix(key);
+        return segments[(int) (hash >>> (64 - SEGMENT_BITS))].remove(key, hash);
+    }
+
+    /**
+     * IPv4 literal + puerto en un long (marcado para no ser nunca 0); 0 si el host no es IPv4
+     */
+    static long packIpv4(String host, int port) {
+        int length = host.length();
+        long address = 0;
+        int octet = -1;
+        int dots = 0;
+
+        for (int i = 0; i < length; i++) {
+            char c = host.charAt(i);
+            if (c >= '0' && c <= '9') {
+                octet = (octet < 0 ? 0 : octet * 10) + (c - '0');
+                if (octet > 255) {
+                    return 0;
+                }
+            } else if (c == '.' && octet >= 0 && dots < 3) {
+                address = (address << 8) | octet;
+                octet = -1;
+                dots++;
+            } else {
+                return 0;
+            }
+        }
+        if (dots != 3 || octet < 0) {
+            return 0;
+        }
+        address = (address << 8) | octet;
+        return packIpv4((int) address, port);
+    }
+
+    private static long packIpv4(int address, int port) {
+        return IPV4_TAG | ((address & 0xFFFFFFFFL) << 16) | (port & 0xFFFF);
+    }
+
+    /**
+     * Hash de 64 bits de un literal IPv6 (normalizado) + puerto; 0 si no es un literal válido
+     */
+    private static long hashIpv6(String host, int port) {
+        String literal = host.startsWith("[") && host.endsWith("]") ? host.substring(1, host.length() - 1) : host;
+        byte[] bytes;
+        try {
+            // Con ':' no es un nombre de host, así que no se consulta DNS
+            bytes = InetAddress.getByName(literal).getAddress();
+        } catch (UnknownHostException | SecurityException e) {
+            return 0;
+        }
+
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : bytes) {
+            hash = (hash ^ (b & 0xFF)) * 0x100000001b3L;
+        }
+        hash = mix(hash ^ port);
+        return hash != 0 ? hash : 1;
+    }
+
+    /**
+     * Finalizador de MurmurHash3 (64 bits)
+     */
+    private static long mix(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return key;
+    }
+
+    /**
+     * Tabla de longs con sondeo lineal; 0 marca hueco libre
+     */
+    private static final class Segment {
+        private static final int INITIAL_CAPACITY = 64;
+
+        private long[] table = new long[INITIAL_CAPACITY];
+        private int size;
+
+        synchronized boolean add(long key, long hash) {
+            if (size + 1 > table.length - (table.length >> 2)) {
+                resize();
+            }
+            if (insertInto(table, key, hash)) {
+                size++;
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * Borrado con desplazamiento hacia atrás: sin lápidas, las búsquedas siguen cortando
+         * en el primer hueco
+         */
+        synchronized boolean remove(long key, long hash) {
+            int mask = table.length - 1;
+            int hole = (int) hash & mask;
+            while (table[hole] != key) {
+                if (table[hole] == 0) {
+                    return false;
+                }
+                hole = (hole + 1) & mask;
+            }
+            for (int next = (hole + 1) & mask; table[next] != 0; next = (next + 1) & mask) {
+                int home = (int) mix(table[next]) & mask;
+                // Se mueve al hueco si su posición ideal no queda entre el hueco y ella
+                if (((next - home) & mask) >= ((next - hole) & mask)) {
+                    table[hole] = table[next];
+                    hole = next;
+                }
+            }
+            table[hole] = 0;
+            size--;
+            return true;
+        }
+
+        synchronized int size() {
+            return size;
+        }
+
+        synchronized void clear() {
+            table = new long[INITIAL_CAPACITY];
+            size = 0;
+        }
+
+        private void resize() {
+            long[] grown = new long[table.length << 1];
+            for (long key : table) {
+                if (key != 0) {
+                    insertInto(grown, key, mix(key));
+                }
+            }
+            table = grown;
+        }
+
+        private static boolean insertInto(long[] table, long key, long hash) {
+            int mask = table.length - 1;
+            int index = (int) hash & mask;
+            while (true) {
+                long current = table[index];
+                if (current == 0) {
+                    table[index] = key;
+                    return true;
+                }
+                if (current == key) {
+                    return false;
+                }
+                index = (index + 1) & mask;
+            }
+        }
+    }
+}
@@ -0,0 +1,404 @@
+package es.srshiroh;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Parser paralelo de listas de proxies sobre el archivo mapeado en memoria.
+ * El archivo se divide en bloques alineados a fin de línea que se analizan en paralelo
+ * directamente desde los bytes; las IPv4 no generan Strings intermedios.
+ * Formatos: host:puerto, host:puerto:tipo, [ipv6]:puerto[:tipo]; '#' y '//' son comentarios.
+ */
+public class ProxyListParser {
+    private static final long MAX_CHUNK = 64L << 20; // 64 MB por región mapeada
+    private static final int MAX_ERRORS_PER_CHUNK = 1000;
+    private static final int WINDOW = 1 << 20; // Ventana de 1 MB; también es la longitud máxima de línea
+    private static final byte[][] TYPE_NAMES;
+
+    static {
+        ProxyInfo.ProxyType[] types = ProxyInfo.ProxyType.values();
+        TYPE_NAMES = new byte[types.length][];
+        for (int i = 0; i < types.length; i++) {
+            TYPE_NAMES[i] = types[i].toString().getBytes(StandardCharsets.US_ASCII);
+        }
+    }
+
+    /**
+     * Receptor de las entradas leídas. Puede llamarse desde varios hilos a la vez.
+     */
+    public interface Handler {
+        /**
+         * Entrada con host IPv4 (dirección en big-endian). Devuelve false para detener la lectura.
+         */
+        boolean onIpv4(int address, int port, ProxyInfo.ProxyType type) throws InterruptedException;
+
+        /**
+         * Entrada con nombre de host o IPv6 (sin corchetes). Devuelve false para detener la lectura.
+         */
+        boolean onHost(String host, int port, ProxyInfo.ProxyType type) throws InterruptedException;
+
+        /**
+         * Línea inválida; se notifica en orden una vez analizado su bloque
+         */
+        void onError(long lineNumber, String line, String message);
+
+        /**
+         * Todas las entradas anteriores a offset (y sus lines líneas) ya se entregaron.
+         * Se notifica en orden al terminar cada bloque.
+         */
+        default void onProgress(long offset, long lines) {
+        }
+    }
+
+    private final int parallelism;
+
+    public ProxyListParser() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    public ProxyListParser(int parallelism) {
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    /**
+     * Analiza el archivo completo y devuelve el número de líneas leídas
+     */
+    public long parse(Path file, Handler handler) throws IOException, InterruptedException {
+        return parse(file, 0, handler);
+    }
+
+    /**
+     * Analiza el archivo desde startOffset, que debe ser un inicio de línea (p. ej. un offset
+     * notificado por onProgress). Números de línea y líneas devueltas cuentan desde ahí.
+     */
+    public long parse(Path file, long startOffset, Handler handler) throws IOException, InterruptedException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            List<long[]> chunks = split(channel, startOffset);
+            if (chunks.isEmpty()) {
+                return 0;
+            }
+
+            AtomicInteger threadIndex = new AtomicInteger();
+            ExecutorService pool = Executors.newFixedThreadPool(Math.min(parallelism, chunks.size()), r -> {
+                Thread thread = new Thread(r, "proxy-parser-" + threadIndex.getAndIncrement());
+                thread.setDaemon(true);
+                return thread;
+            });
+            AtomicBoolean stop = new AtomicBoolean(false);
+
+            try {
+                List<Future<ChunkResult>> futures = new ArrayList<>(chunks.size());
+                for (long[] chunk : chunks) {
+                    futures.add(pool.submit(() -> parseChunk(channel, chunk[0], chunk[1], handler, stop)));
+                }
+
+                // Los números de línea se conocen al sumar las líneas de los bloques anteriores
+                long lineOffset = 0;
+                for (int i = 0; i < futures.size(); i++) {
+                    ChunkResult result = futures.get(i).get();
+                    for (ParseError error : result.errors) {
+                        handler.onError(lineOffset + error.line, error.text, error.message);
+                    }
+                    lineOffset += result.lines;
+                    handler.onProgress(chunks.get(i)[1], lineOffset);
+                }
+                return lineOffset;
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof InterruptedException) {
+                    throw (InterruptedException) cause;
+                }
+                if (cause instanceof IOException) {
+                    throw (IOException) cause;
+                }
+                throw new IOException("Error analizando " + file, cause);
+            } finally {
+                stop.set(true);
+                pool.shutdownNow();
+            }
+        }
+    }
+
+    /**
+     * Divide el archivo desde startOffset en regiones [inicio, fin) que empiezan siempre tras un salto de línea
+     */
+    private List<long[]> split(FileChannel channel, long startOffset) throws IOException {
+        long size = channel.size();
+        List<long[]> chunks = new ArrayList<>();
+        long chunkSize = Math.max(1 << 20, Math.min(MAX_CHUNK, (size - startOffset) / parallelism + 1));
+        ByteBuffer probe = ByteBuffer.allocate(4096);
+
+        long start = Math.max(0, startOffset);
+        while (start < size) {
+            long end = Math.min(size, start + chunkSize);
+            // Avanzar el final hasta justo después del siguiente '\n'
+            while (end < size) {
+                probe.clear();
+                int read = channel.read(probe, end);
+                if (read <= 0) {
+                    end = size;
+                    break;
+                }
+                int newline = -1;
+                for (int i = 0; i < read; i++) {
+                    if (probe.get(i) == '\n') {
+                        newline = i;
+                        break;
+                    }
+                }
+                if (newline >= 0) {
+                    end += newline + 1;
+                    break;
+                }
+                end += read;
+            }
+            chunks.add(new long[]{start, Math.min(end, size)});
+            start = end;
+        }
+        return chunks;
+    }
+
+    private ChunkResult parseChunk(FileChannel channel, long start, long end, Handler handler,
+                                   AtomicBoolean stop) throws IOException, InterruptedException {
+        ByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+        ChunkResult result = new ChunkResult();
+
+        // Se copia por ventanas a un array: el acceso por índice a byte[] es más rápido que al buffer
+        byte[] window = new byte[WINDOW];
+        int filled = 0;
+        boolean skipping = false; // Descartando el resto de una línea más larga que la ventana
+
+        while (!stop.get()) {
+            int toRead = Math.min(window.length - filled, mapped.remaining());
+            mapped.get(window, filled, toRead);
+            filled += toRead;
+            boolean last = !mapped.hasRemaining();
+
+            int position = 0;
+            if (skipping) {
+                while (position < filled && window[position] != '\n') {
+                    position++;
+                }
+                if (position < filled) {
+                    skipping = false;
+                    position++;
+                }
+            }
+            while (position < filled && !stop.get()) {
+                int eol = position;
+                while (eol < filled && window[eol] != '\n') {
+                    eol++;
+                }
+                if (eol == filled && !last) {
+                    if (position > 0) {
+                        break; // Línea incompleta: se termina con la siguiente ventana
+                    }
+                    // Ocupa la ventana entera: una sola línea con error y se salta hasta el '\n'
+                    result.lines++;
+                    if (result.errors.size() < MAX_ERRORS_PER_CHUNK) {
+                        result.errors.add(new ParseError(result.lines, ascii(window, 0, 64) + "...",
+                                "Línea demasiado larga"));
+                    }
+                    skipping = true;
+                    position = filled;
+                    break;
+                }
+                parseLine(window, position, eol, handler, stop, result);
+                position = eol + 1;
+            }
+
+            if (last || stop.get()) {
+                break;
+            }
+            // Mover el resto de la línea incompleta al principio de la ventana
+            int remainder = Math.max(0, filled - position);
+            System.arraycopy(window, position, window, 0, remainder);
+            filled = remainder;
+        }
+        return result;
+    }
+
+    /**
+     * Analiza una línea [from, to) sin el '\n' final
+     */
+    private static void parseLine(byte[] bytes, int from, int to, Handler handler, AtomicBoolean stop,
+                                  ChunkResult result) throws InterruptedException {
+        result.lines++;
+
+        while (from < to && isSpace(bytes[from])) {
+            from++;
+        }
+        while (to > from && isSpace(bytes[to - 1])) {
+            to--;
+        }
+
+        // Ignorar líneas vacías y comentarios
+        if (from == to) {
+            return;
+        }
+        byte first = bytes[from];
+        if (first == '#' || (first == '/' && from + 1 < to && bytes[from + 1] == '/')) {
+            return;
+        }
+
+        String error = parseEntry(bytes, from, to, handler, stop);
+        if (error != null && result.errors.size() < MAX_ERRORS_PER_CHUNK) {
+            result.errors.add(new ParseError(result.lines, ascii(bytes, from, to), error));
+        }
+    }
+
+    /**
+     * Analiza una entrada ya recortada; devuelve el mensaje de error o null si es válida
+     */
+    private static String parseEntry(byte[] bytes, int from, int to, Handler handler,
+                                     AtomicBoolean stop) throws InterruptedException {
+        int i = from;
+        String host = null;
+        long ipv4 = -1;
+
+        if (bytes[i] == '[') {
+            int close = indexOf(bytes, (byte) ']', i + 1, to);
+            if (close < 0 || close + 1 >= to || bytes[close + 1] != ':') {
+                return "Formato de proxy inválido";
+            }
+            host = ascii(bytes, i + 1, close);
+            i = close + 1;
+        } else {
+            int colon = indexOf(bytes, (byte) ':', i, to);
+            if (colon <= i) {
+                return "Formato de proxy inválido";
+            }
+            ipv4 = parseIpv4(bytes, i, colon);
+            if (ipv4 < 0) {
+                host = ascii(bytes, i, colon);
+            }
+            i = colon;
+        }
+
+        // i apunta al ':' que precede al puerto
+        i++;
+        int port = 0;
+        int digits = 0;
+        while (i < to && bytes[i] != ':') {
+            byte c = bytes[i];
+            if (c < '0' || c > '9' || ++digits > 5) {
+                return "Puerto inválido";
+            }
+            port = port * 10 + (c - '0');
+            i++;
+        }
+        if (digits == 0 || port < 1 || port > 65535) {
+            return "Puerto inválido";
+        }
+
+        ProxyInfo.ProxyType type = i < to ? parseType(bytes, i + 1, to) : ProxyInfo.ProxyType.HTTP;
+
+        boolean keepGoing = host == null
+                ? handler.onIpv4((int) ipv4, port, type)
+                : handler.onHost(host, port, type);
+        if (!keepGoing) {
+            stop.set(true);
+        }
+        return null;
+    }
+
+    /**
+     * IPv4 en notación decimal con puntos; -1 si no lo es
+     */
+    private static long parseIpv4(byte[] bytes, int from, int to) {
+        long address = 0;
+        int octet = -1;
+        int dots = 0;
+        for (int i = from; i < to; i++) {
+            byte c = bytes[i];
+            if (c >= '0' && c <= '9') {
+                octet = (octet < 0 ? 0 : octet * 10) + (c - '0');
+                if (octet > 255) {
+                    return -1;
+                }
+            } else if (c == '.' && octet >= 0 && dots < 3) {
+                address = (address << 8) | octet;
+                octet = -1;
+                dots++;
+            } else {
+                return -1;
+            }
+        }
+        if (dots != 3 || octet < 0) {
+            return -1;
+        }
+        return (address << 8) | octet;
+    }
+
+    /**
+     * Tipo sin distinguir mayúsculas; HTTP por defecto, como ProxyType.fromString
+     */
+    private static ProxyInfo.ProxyType parseType(byte[] bytes, int from, int to) {
+        int length = to - from;
+        for (int t = 0; t < TYPE_NAMES.length; t++) {
+            byte[] name = TYPE_NAMES[t];
+            if (name.length != length) {
+                continue;
+            }
+            boolean matches = true;
+            for (int i = 0; i < length && matches; i++) {
+                matches = Character.toUpperCase(bytes[from + i]) == name[i];
+            }
+            if (matches) {
+                return ProxyInfo.ProxyType.values()[t];
+            }
+        }
+        return ProxyInfo.ProxyType.HTTP;
+    }
+
+    /**
+     * Representación textual de una IPv4 empaquetada
+     */
+    public static String formatIpv4(int address) {
+        return ((address >>> 24) & 0xFF) + "." + ((address >>> 16) & 0xFF) + "."
+                + ((address >>> 8) & 0xFF) + "." + (address & 0xFF);
+    }
+
+    private static int indexOf(byte[] bytes, byte value, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (bytes[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean isSpace(byte c) {
+        return c == ' ' || c == '\t' || c == '\r';
+    }
+
+    private static String ascii(byte[] bytes, int from, int to) {
+        return new String(bytes, from, to - from, StandardCharsets.UTF_8);
+    }
+
+    private static final class ChunkResult {
+        long lines;
+        final List<ParseError> errors = new ArrayList<>();
+    }
+
+    private static final class ParseError {
+        final long line;
+        final String text;
+        final String message;
+
+        ParseError(long line, String text, String message) {
+            this.line = line;
+            this.text = text;
+            this.message = message;
+        }
+    }
+}
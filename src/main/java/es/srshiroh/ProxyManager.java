@@ -1,27 +1,24 @@
 package es.srshiroh;
 
-import org.apache.hc.client5.http.classic.methods.HttpGet;
-import org.apache.hc.client5.http.config.RequestConfig;
-import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
-import org.apache.hc.client5.http.impl.classic.CloseableHttpResponse;
-import org.apache.hc.client5.http.impl.classic.HttpClients;
-import org.apache.hc.core5.http.HttpHost;
-import org.apache.hc.core5.util.Timeout;
+import org.apache.hc.client5.http.DnsResolver;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.*;
+import java.net.InetAddress;
 import java.net.InetSocketAddress;
-import java.net.Proxy;
 import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
-import java.util.stream.Collectors;
 
 /**
  * Gestor principal para la verificación de proxies
@@ -32,48 +29,200 @@ public class ProxyManager {
     // Configuración por defecto
     private static final int DEFAULT_TIMEOUT = 10000; // 10 segundos
     private static final int DEFAULT_THREADS = 50;
-    private static final String TEST_URL = "http://httpbin.org/ip";
+    // Juez por defecto: devuelve origen y cabeceras, así la misma petición da el anonimato
+    private static final String TEST_URL = "http://httpbin.org/get";
     private static final String TEST_HTTPS_URL = "https://httpbin.org/ip";
+    private static final int DEFAULT_MAX_IN_FLIGHT = 10000;
+    private static final int MAX_POOL_THREADS = 200;
+    private static final int MAX_IN_FLIGHT = 100000;
+    private static final int DEFAULT_PREFILTER_TIMEOUT = 1500;
+    private static final int DEFAULT_PREFILTER_CONCURRENCY = 5000;
+    private static final int PRIORITY_WINDOW = 65536; // Proxies leídos que se reordenan por prioridad
+    private static final long DEFAULT_CACHE_TTL = TimeUnit.HOURS.toMillis(1);
+    private static final long CACHE_RETENTION = TimeUnit.DAYS.toMillis(7);
+    public static final long DEFAULT_REVALIDATION_INTERVAL = TimeUnit.MINUTES.toMillis(10);
+    public static final int DEFAULT_MAX_FAILURES = 3;
+
+    /**
+     * Motor de verificación
+     */
+    public enum CheckMode {
+        POOL,    // Un hilo de plataforma por verificación
+        ASYNC,   // Cliente asíncrono: pocos hilos de event-loop, miles de verificaciones en vuelo
+        VIRTUAL; // Un hilo virtual por verificación (Java 21+), limitado por semáforo
+
+        public static CheckMode fromString(String mode) {
+            for (CheckMode checkMode : values()) {
+                if (checkMode.name().equalsIgnoreCase(mode)) {
+                    return checkMode;
+                }
+            }
+            return POOL; // Por defecto
+        }
+    }
 
     // Estado del manager
-    private final AtomicBoolean isPaused = new AtomicBoolean(false);
+    private final PauseGate pauseGate = new PauseGate();
     private final AtomicBoolean isCanceled = new AtomicBoolean(false);
     private final AtomicInteger checkedCount = new AtomicInteger(0);
     private final AtomicInteger totalCount = new AtomicInteger(0);
+    private final AtomicBoolean loadingComplete = new AtomicBoolean(true);
+    private final AtomicBoolean completionFired = new AtomicBoolean(false);
 
     // Configuración
     private int timeout = DEFAULT_TIMEOUT;
     private int threadCount = DEFAULT_THREADS;
     private String testUrl = TEST_URL;
     private boolean testHttps = true;
+    private CheckMode checkMode = CheckMode.POOL;
+    private boolean singleConnectionProbe = true;
+    private int maxInFlight = DEFAULT_MAX_IN_FLIGHT;
+    private boolean adaptiveEnabled = false;
+    private boolean tcpPrefilter = false;
+    private int prefilterTimeout = DEFAULT_PREFILTER_TIMEOUT;
+    private int prefilterConcurrency = DEFAULT_PREFILTER_CONCURRENCY;
+    private long cacheTtl = DEFAULT_CACHE_TTL;
 
     // Datos
     private final List<ProxyInfo> workingProxies = Collections.synchronizedList(new ArrayList<>());
-    private final Set<String> processedProxies = Collections.synchronizedSet(new HashSet<>());
+    // Verificados que no están en el pool (fallaron o se expulsaron): completan la instantánea
+    private final Set<ProxyInfo> failedProxies = ConcurrentHashMap.newKeySet();
+    // Registros sin verificar de una instantánea: van al principio de la próxima lista
+    private final Queue<ProxyInfo> snapshotPending = new ConcurrentLinkedQueue<>();
+    private final ProxyKeySet processedProxies = new ProxyKeySet();
+    private final ProxyStatistics statistics = new ProxyStatistics();
+    private final FastestProxyIndex fastestIndex = new FastestProxyIndex();
+    private final ProxyPriority priority = new ProxyPriority();
+
+    // Nombres de host resueltos por adelantado y compartidos por todas las verificaciones
+    private final DnsCache dnsCache = new DnsCache();
+
+    // Base GeoIP local para el país de cada proxy (null si no hay)
+    private volatile GeoIpDatabase geoIp;
+
+    // Nuestra IP vista por el juez sin proxy, para detectar los transparentes
+    private final Object realIpLock = new Object();
+    private volatile String realIp;
+    private volatile String realIpUrl;
+
+    // Resultados de ejecuciones anteriores (null si no hay caché)
+    private volatile ResultCache resultCache;
+    private final AtomicInteger cachedCount = new AtomicInteger(0);
+
+    // Revalidación continua del pool (null si no está activa)
+    private volatile RevalidationDaemon revalidationDaemon;
+
+    // Pasarela local sobre el pool (null si no está activa)
+    private volatile ProxyGateway gateway;
+
+    // Exportación en streaming de cada resultado (null si no está activa)
+    private volatile ResultStreamWriter resultStream;
+
+    // Checkpoints de la carga de listas (null si no se usan) y estado a reanudar
+    private volatile RunCheckpoint checkpoint;
+    private Path checkpointFile;
+    private long checkpointInterval = RunCheckpoint.DEFAULT_INTERVAL;
+    private RunCheckpoint.State resumeState;
 
     // Ejecutor de hilos
     private ExecutorService executor;
 
+    // Cliente HTTP compartido (pool dimensionado según la concurrencia)
+    private ProxyHttpClient httpClient;
+
+    // Motor asíncrono (se crea al usarlo por primera vez)
+    private AsyncProxyChecker asyncChecker;
+
+    // Hilo que lee la entrada y la deja en la cola de prioridad
+    private Thread loader;
+
+    // Hilo que entrega los proxies de la cola a los workers con contrapresión
+    private Thread dispatcher;
+    private volatile CheckScheduler scheduler;
+
+    // Límite de verificaciones en vuelo (modos ASYNC y VIRTUAL)
+    private AdaptiveConcurrency.ResizableSemaphore inFlightLimit =
+            new AdaptiveConcurrency.ResizableSemaphore(DEFAULT_MAX_IN_FLIGHT);
+
+    // Control adaptativo de la concurrencia (null si está desactivado)
+    private volatile AdaptiveConcurrency adaptive;
+
+    // Etapa 1 (prefiltro TCP): connects no bloqueantes; los alcanzables pasan a la etapa 2
+    private TcpPrefilter prefilter;
+    private Semaphore prefilterSlots = new Semaphore(DEFAULT_PREFILTER_CONCURRENCY);
+    private final LinkedBlockingQueue<ProxyInfo> reachableQueue = new LinkedBlockingQueue<>();
+    private Thread verificationDispatcher;
+    // Los descartados se registran fuera del selector: escribir y notificar puede bloquear
+    private final LinkedBlockingQueue<Runnable> unreachableQueue = new LinkedBlockingQueue<>();
+    private Thread unreachableRecorder;
+    private final AtomicInteger prefilteredCount = new AtomicInteger(0);
+    private final AtomicInteger reachableCount = new AtomicInteger(0);
+    private final LatencyHistogram connectLatencies = new LatencyHistogram();
+
     // Callbacks
     private Consumer<ProxyInfo> onProxyChecked;
     private Consumer<String> onStatusUpdate;
     private Runnable onCompleted;
 
     public ProxyManager() {
-        this.executor = Executors.newFixedThreadPool(threadCount);
+        this.executor = createExecutor();
+        this.httpClient = createHttpClient();
+    }
+
+    private ExecutorService createExecutor() {
+        if (checkMode == CheckMode.VIRTUAL) {
+            return VirtualThreads.newPerTaskExecutor("proxy-check");
+        }
+        AdaptiveConcurrency controller = adaptive;
+        int threads = controller != null ? controller.getLimit() : threadCount;
+        // Cola acotada: si está llena, quien envía espera a que un worker saque una tarea
+        return new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(threadCount * 4), (task, pool) -> {
+                    if (pool.isShutdown()) {
+                        throw new RejectedExecutionException("Executor detenido");
+                    }
+                    try {
+                        pool.getQueue().put(task);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new RejectedExecutionException("Envío interrumpido", e);
+                    }
+                });
+    }
+
+    private void restartExecutor() {
+        if (executor != null && !executor.isShutdown()) {
+            executor.shutdown();
+        }
+        this.executor = createExecutor();
+    }
+
+    private int connectionLimit() {
+        // Una conexión HTTP y otra HTTPS por verificación simultánea
+        return (checkMode == CheckMode.VIRTUAL ? maxInFlight : threadCount) * 2;
+    }
+
+    private ProxyHttpClient createHttpClient() {
+        return new ProxyHttpClient(connectionLimit(), timeout, dnsCache);
     }
 
     // Métodos de configuración
     public void setTimeout(int timeout) {
         this.timeout = Math.max(1000, timeout);
+        httpClient.setTimeout(this.timeout);
+        closeAsyncChecker(); // Se crea de nuevo con el timeout nuevo
     }
 
     public void setThreadCount(int threadCount) {
-        this.threadCount = Math.max(1, Math.min(200, threadCount));
-        if (executor != null && !executor.isShutdown()) {
-            executor.shutdown();
+        if (checkMode != CheckMode.POOL) {
+            // Sin pool de hilos fijo el valor pasa a ser el límite de verificaciones en vuelo
+            setMaxInFlight(threadCount);
+            return;
         }
-        this.executor = Executors.newFixedThreadPool(this.threadCount);
+        this.threadCount = Math.max(1, Math.min(MAX_POOL_THREADS, threadCount));
+        restartExecutor();
+        httpClient.setMaxConnections(connectionLimit());
+        configureAdaptive();
     }
 
     public void setTestUrl(String testUrl) {
@@ -84,11 +233,432 @@ public class ProxyManager {
         this.testHttps = testHttps;
     }
 
+    public void setCheckMode(CheckMode checkMode) {
+        CheckMode newMode = checkMode != null ? checkMode : CheckMode.POOL;
+        if (newMode == CheckMode.VIRTUAL && !VirtualThreads.isSupported()) {
+            // Un hilo de plataforma por verificación en vuelo serían miles: se usa el pool fijo
+            logger.warn("Hilos virtuales no disponibles en Java {}; se usará el pool de hilos",
+                    Runtime.version().feature());
+            newMode = CheckMode.POOL;
+        }
+        this.checkMode = newMode;
+        restartExecutor();
+        httpClient.setMaxConnections(connectionLimit());
+        configureAdaptive();
+    }
+
+    /**
+     * Si está activo, los proxies HTTP se verifican reutilizando la conexión de la prueba
+     * de alcance (1-2 conexiones por proxy) en lugar de conexión + cliente HTTP + cliente HTTPS
+     */
+    public void setSingleConnectionProbe(boolean singleConnectionProbe) {
+        this.singleConnectionProbe = singleConnectionProbe;
+    }
+
+    public CheckMode getCheckMode() {
+        return checkMode;
+    }
+
+    /**
+     * Límite de verificaciones simultáneas en los modos ASYNC y VIRTUAL
+     */
+    public void setMaxInFlight(int maxInFlight) {
+        this.maxInFlight = Math.max(1, Math.min(MAX_IN_FLIGHT, maxInFlight));
+        this.inFlightLimit = new AdaptiveConcurrency.ResizableSemaphore(this.maxInFlight);
+        httpClient.setMaxConnections(connectionLimit());
+        closeAsyncChecker(); // Se crea de nuevo con el límite nuevo
+        configureAdaptive();
+    }
+
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    /**
+     * Activa la etapa de prefiltro: antes de la verificación completa se hace solo un connect TCP
+     * no bloqueante, con alta concurrencia y timeout corto. Los inalcanzables se descartan sin
+     * ocupar un worker de la etapa de verificación (pool, async o hilos virtuales).
+     */
+    public void setTcpPrefilter(boolean enabled) {
+        this.tcpPrefilter = enabled;
+    }
+
+    public boolean isTcpPrefilter() {
+        return tcpPrefilter;
+    }
+
+    public void setPrefilterTimeout(int prefilterTimeout) {
+        this.prefilterTimeout = Math.max(100, prefilterTimeout);
+        closePrefilter(); // Se recrea con el nuevo timeout al usarlo
+    }
+
+    /**
+     * Connects simultáneos máximos del prefiltro (incluye los alcanzables que esperan la etapa 2)
+     */
+    public void setPrefilterConcurrency(int prefilterConcurrency) {
+        this.prefilterConcurrency = Math.max(1, Math.min(MAX_IN_FLIGHT, prefilterConcurrency));
+        closePrefilter();
+        this.prefilterSlots = new Semaphore(this.prefilterConcurrency);
+    }
+
+    /**
+     * Resolvedor de nombres de los proxies; por defecto el del sistema
+     */
+    public void setDnsResolver(DnsResolver resolver) {
+        dnsCache.setResolver(resolver);
+    }
+
+    /**
+     * Tiempo que se reutiliza un nombre resuelto; por defecto el networkaddress.cache.ttl de la JVM
+     */
+    public void setDnsTtl(long ttlMillis) {
+        dnsCache.setTtl(ttlMillis);
+    }
+
+    DnsCache getDnsCache() {
+        return dnsCache;
+    }
+
+    /**
+     * Carga una base GeoIP local (CSV de rangos IPv4) para rellenar el país de cada proxy.
+     * Null la desactiva.
+     */
+    public void setGeoIpDatabase(String filename) throws IOException {
+        geoIp = filename != null ? GeoIpDatabase.load(new File(filename).toPath()) : null;
+        if (geoIp != null) {
+            updateStatus("GeoIP: " + geoIp.size() + " rangos de " + geoIp.getCountryCount() + " países");
+        }
+    }
+
+    public boolean hasGeoIpDatabase() {
+        return geoIp != null;
+    }
+
+    /**
+     * Escribe cada resultado en cuanto se produce (NDJSON, o array JSON si el archivo acaba en
+     * .json), rotando al llegar a maxBytes. Null la desactiva.
+     */
+    public void setResultStream(String filename, long maxBytes) throws IOException {
+        ResultStreamWriter previous = resultStream;
+        resultStream = null;
+        if (previous != null) {
+            previous.close();
+        }
+        if (filename != null) {
+            Path file = new File(filename).toPath().toAbsolutePath();
+            RunCheckpoint.State state = resumeState;
+            if (state != null && file.toString().equals(state.getStreamFile())) {
+                // Se continúa donde quedó el checkpoint, sin repetir lo que se verificará de nuevo
+                resultStream = ResultStreamWriter.resume(file, ResultStreamWriter.Format.forFile(file), maxBytes,
+                        ResultStreamWriter.DEFAULT_FLUSH_MILLIS, state.getStreamPosition());
+                updateStatus("📝 Resultados en streaming a " + filename + " (continuando el checkpoint)");
+            } else {
+                resultStream = new ResultStreamWriter(file, ResultStreamWriter.Format.forFile(file), maxBytes,
+                        ResultStreamWriter.DEFAULT_FLUSH_MILLIS);
+                updateStatus("📝 Resultados en streaming a " + filename);
+            }
+        }
+        RunCheckpoint current = checkpoint;
+        if (current != null) {
+            current.setStream(resultStream);
+        }
+    }
+
+    public void setResultStream(String filename) throws IOException {
+        setResultStream(filename, ResultStreamWriter.DEFAULT_MAX_BYTES);
+    }
+
+    /**
+     * Guarda checkpoints periódicos de las listas que se carguen en filename. Con resume, si
+     * el checkpoint existe, la próxima carga de su lista continúa donde se quedó: restaura los
+     * resultados, vuelve a encolar las entradas pendientes y sigue leyendo desde la marca de
+     * agua. Debe configurarse antes que la exportación en streaming para continuarla también.
+     */
+    public void setCheckpoint(String filename, long intervalMillis, boolean resume) throws IOException {
+        checkpointFile = filename != null ? new File(filename).toPath().toAbsolutePath() : null;
+        checkpointInterval = intervalMillis;
+        resumeState = null;
+        if (checkpointFile != null && resume && Files.exists(checkpointFile)) {
+            resumeState = RunCheckpoint.load(checkpointFile);
+            updateStatus("⏯ Checkpoint de " + resumeState.getSource().getFileName() + ": "
+                    + resumeState.getResultCount() + " entradas, leído hasta la línea " + resumeState.getLines());
+        }
+    }
+
+    /**
+     * Detiene los checkpoints escribiendo uno final con el estado actual
+     */
+    public void stopCheckpoint() {
+        RunCheckpoint current = checkpoint;
+        if (current != null) {
+            current.stop();
+        }
+    }
+
+    /**
+     * Vacía y cierra la exportación en streaming (el array JSON queda cerrado)
+     */
+    public void closeResultStream() {
+        try {
+            setResultStream(null);
+        } catch (IOException e) {
+            logger.warn("Error cerrando la exportación en streaming: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Asigna el país al proxy si el host es una IPv4 o un nombre ya resuelto
+     */
+    private void locate(ProxyInfo proxy) {
+        GeoIpDatabase database = geoIp;
+        if (database == null) {
+            return;
+        }
+        String country = database.lookup(proxy.getHost());
+        if (country == null && !DnsCache.isLiteral(proxy.getHost())) {
+            InetAddress address = dnsCache.peek(proxy.getHost());
+            country = address != null ? database.lookup(address) : null;
+        }
+        if (country != null) {
+            proxy.setCountry(country);
+            if (proxy.isValid()) {
+                statistics.classify(proxy);
+            }
+        }
+    }
+
+    /**
+     * Usa una caché persistente de resultados: al cargar una lista, los proxies verificados hace
+     * menos del TTL toman el resultado guardado en lugar de volver a verificarse, y los más
+     * antiguos se verifican antes si fueron válidos. Null la desactiva.
+     */
+    public void setResultCache(String filename) throws IOException {
+        ResultCache previous = resultCache;
+        resultCache = filename != null ? new ResultCache(new File(filename).toPath(), CACHE_RETENTION) : null;
+        priority.setHistory(resultCache);
+        if (previous != null) {
+            previous.close();
+        }
+        if (resultCache != null) {
+            updateStatus("Caché de resultados: " + resultCache.size() + " proxies en " + filename);
+        }
+    }
+
+    /**
+     * Antigüedad máxima de un resultado en caché para no volver a verificarlo
+     */
+    public void setCacheTtl(long cacheTtlMillis) {
+        this.cacheTtl = Math.max(0, cacheTtlMillis);
+    }
+
+    public long getCacheTtl() {
+        return cacheTtl;
+    }
+
+    /**
+     * Reescribe la caché dejando solo el último resultado de cada proxy
+     */
+    public void compactResultCache() throws IOException {
+        ResultCache cache = resultCache;
+        if (cache != null) {
+            cache.compact();
+        }
+    }
+
+    /**
+     * Revisa continuamente los proxies válidos, cada uno con su propio intervalo (ajustado según
+     * su estabilidad, con jitter), y expulsa del pool los que fallan maxFailures veces seguidas.
+     * Los que se validen después se incorporan solos.
+     */
+    public void startRevalidationDaemon(long intervalMillis, int maxFailures) {
+        stopRevalidationDaemon();
+        RevalidationDaemon daemon = new RevalidationDaemon(this, intervalMillis, maxFailures);
+        synchronized (workingProxies) {
+            for (ProxyInfo proxy : workingProxies) {
+                daemon.track(proxy);
+            }
+        }
+        revalidationDaemon = daemon;
+        updateStatus(String.format("🔁 Revalidación continua: %d proxies, intervalo base %d s, expulsión tras %d fallos",
+                daemon.getTrackedCount(), intervalMillis / 1000, maxFailures));
+    }
+
+    public void stopRevalidationDaemon() {
+        RevalidationDaemon daemon = revalidationDaemon;
+        if (daemon != null) {
+            daemon.stop();
+            revalidationDaemon = null;
+        }
+    }
+
+    public boolean isRevalidationDaemonRunning() {
+        RevalidationDaemon daemon = revalidationDaemon;
+        return daemon != null && daemon.isRunning();
+    }
+
+    /**
+     * Proxies del pool seguidos por la revalidación continua
+     */
+    public int getRevalidationTrackedCount() {
+        RevalidationDaemon daemon = revalidationDaemon;
+        return daemon != null ? daemon.getTrackedCount() : 0;
+    }
+
+    /**
+     * Abre una pasarela HTTP/CONNECT local que reenvía el tráfico por los proxies válidos.
+     * Los que fallan en uso se expulsan y se mandan a revalidar.
+     */
+    public ProxyGateway startGateway(InetSocketAddress address) throws IOException {
+        stopGateway();
+        gateway = new ProxyGateway(this, address, timeout);
+        updateStatus("🔀 Pasarela de proxies en " + address.getHostString() + ":" + gateway.getPort());
+        return gateway;
+    }
+
+    public void stopGateway() {
+        ProxyGateway current = gateway;
+        if (current != null) {
+            try {
+                current.close();
+            } catch (IOException e) {
+                logger.warn("Error cerrando la pasarela: {}", e.getMessage());
+            }
+            gateway = null;
+        }
+    }
+
+    public ProxyGateway getGateway() {
+        return gateway;
+    }
+
+    /**
+     * Vuelve a verificar un proxy ya procesado: revisiones de la revalidación continua y
+     * resultados caducados en el modo servidor
+     */
+    boolean revalidate(ProxyInfo proxy) throws InterruptedException {
+        if (isCanceled.get()) {
+            return false;
+        }
+        totalCount.incrementAndGet();
+        return submitCheck(proxy);
+    }
+
+    /**
+     * Un proxy del pool falló en uso real (p. ej. en la pasarela): deja de estar entre los válidos
+     * al momento y se vuelve a verificar para que recupere su sitio si fue un fallo puntual
+     */
+    public void reportFailure(ProxyInfo proxy, Throwable error) throws InterruptedException {
+        totalCount.incrementAndGet();
+        recordResult(proxy, false, proxy.getResponseTime(), "Fallo en uso: " + error.getMessage(),
+                ProxyInfo.ErrorType.classify(error));
+        revalidate(proxy);
+    }
+
+    /**
+     * Saca del pool un proxy que falló demasiadas veces seguidas. No lo hace (y devuelve false)
+     * si entretanto terminó válida otra verificación suya.
+     */
+    boolean evict(ProxyInfo proxy, int failures) {
+        synchronized (proxy) {
+            if (proxy.isValid()) {
+                return false;
+            }
+            workingProxies.remove(proxy);
+            fastestIndex.remove(proxy);
+            failedProxies.add(proxy);
+        }
+        updateStatus(String.format("🗑️ %s expulsado del pool tras %d fallos consecutivos", proxy.getAddress(), failures));
+        return true;
+    }
+
+    /**
+     * Activa el control adaptativo (AIMD): el límite de verificaciones simultáneas sube mientras
+     * no haya errores locales y baja ante EMFILE, puertos efímeros agotados o picos de timeouts.
+     * En modo POOL se ajusta el número de hilos (hasta 200); en ASYNC y VIRTUAL el número en
+     * vuelo, con maxInFlight como techo.
+     */
+    public void setAdaptiveConcurrency(boolean enabled) {
+        this.adaptiveEnabled = enabled;
+        if (enabled) {
+            configureAdaptive();
+        } else {
+            adaptive = null;
+            applyConcurrencyLimit(checkMode == CheckMode.POOL ? threadCount : maxInFlight);
+        }
+    }
+
+    public boolean isAdaptiveConcurrency() {
+        return adaptiveEnabled;
+    }
+
+    /**
+     * Límite actual de verificaciones simultáneas (hilos en POOL, en vuelo en ASYNC/VIRTUAL)
+     */
+    public int getConcurrencyLimit() {
+        AdaptiveConcurrency controller = adaptive;
+        if (controller != null) {
+            return controller.getLimit();
+        }
+        return checkMode == CheckMode.POOL ? threadCount : maxInFlight;
+    }
+
+    /**
+     * Motivo del último cambio del límite adaptativo
+     */
+    public String getConcurrencyReason() {
+        AdaptiveConcurrency controller = adaptive;
+        return controller != null ? controller.getReason() : "Límite fijo";
+    }
+
+    private void configureAdaptive() {
+        if (!adaptiveEnabled) {
+            return;
+        }
+        int initial;
+        int max;
+        if (checkMode == CheckMode.POOL) {
+            initial = threadCount;
+            max = MAX_POOL_THREADS;
+        } else {
+            // Se empieza bajo y se sube mientras el sistema aguante
+            initial = Math.min(maxInFlight, 256);
+            max = maxInFlight;
+        }
+        adaptive = new AdaptiveConcurrency(initial, 1, max, (oldLimit, newLimit, reason) -> {
+            applyConcurrencyLimit(newLimit);
+            updateStatus(String.format("⚙️ Concurrencia %d → %d: %s", oldLimit, newLimit, reason));
+        });
+        applyConcurrencyLimit(adaptive.getLimit());
+    }
+
+    private void applyConcurrencyLimit(int limit) {
+        if (checkMode == CheckMode.POOL) {
+            ExecutorService current = executor;
+            if (current instanceof ThreadPoolExecutor) {
+                ThreadPoolExecutor pool = (ThreadPoolExecutor) current;
+                // El máximo nunca puede quedar por debajo del núcleo
+                if (limit > pool.getMaximumPoolSize()) {
+                    pool.setMaximumPoolSize(limit);
+                    pool.setCorePoolSize(limit);
+                } else {
+                    pool.setCorePoolSize(limit);
+                    pool.setMaximumPoolSize(limit);
+                }
+            }
+        } else {
+            inFlightLimit.resize(limit);
+        }
+    }
+
     // Callbacks
     public void setOnProxyChecked(Consumer<ProxyInfo> callback) {
         this.onProxyChecked = callback;
     }
 
+    public Consumer<ProxyInfo> getOnProxyChecked() {
+        return onProxyChecked;
+    }
+
     public void setOnStatusUpdate(Consumer<String> callback) {
         this.onStatusUpdate = callback;
     }
@@ -98,55 +668,194 @@ public class ProxyManager {
     }
 
     // Métodos principales
+
+    /**
+     * Lee el archivo en un hilo propio y entrega los proxies a los workers a medida que se leen,
+     * por orden de prioridad dentro de una ventana acotada: la memoria no depende del tamaño de
+     * la entrada.
+     */
     public void loadProxiesFromFile(String filename) throws IOException {
         File file = new File(filename);
         if (!file.exists()) {
             throw new FileNotFoundException("Archivo no encontrado: " + filename);
         }
 
-        List<ProxyInfo> proxies = new ArrayList<>();
-        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
-            String line;
-            int lineNumber = 0;
-
-            while ((line = reader.readLine()) != null) {
-                lineNumber++;
-                line = line.trim();
+        loadingComplete.set(false);
+        completionFired.set(false);
 
-                // Ignorar líneas vacías y comentarios
-                if (line.isEmpty() || line.startsWith("#") || line.startsWith("//")) {
-                    continue;
+        RunCheckpoint previous = checkpoint;
+        if (previous != null) {
+            previous.stop();
+            checkpoint = null;
+        }
+        RunCheckpoint.State state = resumeState;
+        resumeState = null;
+        List<ProxyInfo> carried = Collections.emptyList();
+        long startOffset = 0;
+        long startLines = 0;
+        RunCheckpoint run = null;
+        if (checkpointFile != null) {
+            run = new RunCheckpoint(checkpointFile, file.toPath(), checkpointInterval);
+            run.setStream(resultStream);
+            if (state != null && state.getSource().equals(file.toPath().toAbsolutePath())) {
+                run.continueFrom(state);
+                carried = restoreCheckpoint(state, run);
+                startOffset = state.getWatermark();
+                startLines = state.getLines();
+            } else if (state != null) {
+                logger.warn("El checkpoint es de {}, no de {}: se empieza desde el principio",
+                        state.getSource(), filename);
+            }
+            checkpoint = run;
+            run.start();
+        }
+        updateStatus(startOffset > 0 ? "Cargando proxies desde " + filename + " a partir de la línea " + (startLines + 1)
+                : "Cargando proxies desde " + filename);
+
+        RunCheckpoint tracker = run;
+        long offset = startOffset;
+        long lineBase = startLines;
+        List<ProxyInfo> resumed = carried;
+        CheckScheduler queue = newScheduler(PRIORITY_WINDOW);
+        dispatcher = startThread("check-dispatcher", () -> dispatch(queue));
+        loader = startThread("proxy-loader", () -> {
+            AtomicInteger loaded = new AtomicInteger();
+            try {
+                // Las pendientes del checkpoint y de la instantánea van primero; ya están contadas
+                // y marcadas
+                boolean open = true;
+                for (ProxyInfo proxy : resumed) {
+                    dnsCache.prefetch(proxy.getHost());
+                    if (!(open = queue.put(proxy))) {
+                        break;
+                    }
                 }
+                ProxyInfo pending;
+                while (open && (pending = snapshotPending.poll()) != null) {
+                    locate(pending);
+                    dnsCache.prefetch(pending.getHost());
+                    if (tracker != null) {
+                        tracker.onEnqueued(pending);
+                    }
+                    open = queue.put(pending);
+                }
+                new ProxyListParser().parse(file.toPath(), offset, new ProxyListParser.Handler() {
+                    @Override
+                    public boolean onIpv4(int address, int port, ProxyInfo.ProxyType type) throws InterruptedException {
+                        // El String del host solo se crea si la entrada no es un duplicado
+                        if (!processedProxies.addIpv4(address, port)) {
+                            return true;
+                        }
+                        ProxyInfo proxy = new ProxyInfo(ProxyListParser.formatIpv4(address), port, type);
+                        GeoIpDatabase database = geoIp;
+                        String country = database != null ? database.lookup(address) : null;
+                        if (country != null) {
+                            proxy.setCountry(country);
+                        }
+                        return enqueue(proxy);
+                    }
 
-                try {
-                    ProxyInfo proxy = ProxyInfo.fromString(line);
-                    String key = proxy.getHost() + ":" + proxy.getPort();
+                    @Override
+                    public boolean onHost(String host, int port, ProxyInfo.ProxyType type) throws InterruptedException {
+                        if (!processedProxies.add(host, port)) {
+                            return true;
+                        }
+                        // Se resuelve mientras espera en la cola de prioridad
+                        dnsCache.prefetch(host);
+                        ProxyInfo proxy = new ProxyInfo(host, port, type);
+                        locate(proxy);
+                        return enqueue(proxy);
+                    }
 
-                    if (!processedProxies.contains(key)) {
-                        proxies.add(proxy);
-                        processedProxies.add(key);
+                    @Override
+                    public void onError(long lineNumber, String line, String message) {
+                        logger.warn("Error procesando línea {}: {} - {}", lineBase + lineNumber, line, message);
                     }
-                } catch (Exception e) {
-                    logger.warn("Error procesando línea {}: {} - {}", lineNumber, line, e.getMessage());
-                }
+
+                    @Override
+                    public void onProgress(long position, long lines) {
+                        if (tracker != null) {
+                            tracker.onProgress(position, lineBase + lines);
+                        }
+                    }
+
+                    private boolean enqueue(ProxyInfo proxy) throws InterruptedException {
+                        totalCount.incrementAndGet();
+                        loaded.incrementAndGet();
+                        if (tracker != null) {
+                            tracker.onEnqueued(proxy);
+                        }
+                        if (applyCachedResult(proxy)) {
+                            return true;
+                        }
+                        return queue.put(proxy);
+                    }
+                });
+            } catch (IOException e) {
+                logger.error("Error leyendo " + filename, e);
+                updateStatus("Error leyendo " + filename + ": " + e.getMessage());
+            } finally {
+                queue.finish();
+            }
+
+            if (isCanceled.get()) {
+                return;
             }
+            updateStatus("Cargados " + loaded.get() + " proxies desde " + filename);
+            loadingComplete.set(true);
+            checkCompletion();
+        });
+    }
+
+    /**
+     * Verifica un proxy que no llega de un archivo (p. ej. en modo servidor), con la misma
+     * deduplicación y caché que la carga de listas. Bloquea mientras no haya hueco en el motor.
+     * Devuelve false si el proxy ya se había procesado o la verificación se canceló.
+     */
+    public boolean submitProxy(ProxyInfo proxy) throws InterruptedException {
+        if (isCanceled.get() || !processedProxies.add(proxy.getHost(), proxy.getPort())) {
+            return false;
         }
+        totalCount.incrementAndGet();
+        completionFired.set(false);
+        locate(proxy);
+        if (applyCachedResult(proxy)) {
+            return true;
+        }
+        dnsCache.prefetch(proxy.getHost());
+        return submitCheck(proxy);
+    }
 
-        totalCount.set(proxies.size());
-        updateStatus("Cargados " + proxies.size() + " proxies desde " + filename);
+    /**
+     * Olvida que el proxy ya se procesó: un submitProxy posterior lo vuelve a verificar
+     */
+    public boolean forgetProxy(ProxyInfo proxy) {
+        failedProxies.remove(proxy);
+        return processedProxies.remove(proxy.getHost(), proxy.getPort());
+    }
 
-        // Comenzar verificación
-        checkProxies(proxies);
+    /**
+     * Instancia del pool para host:puerto, o null si no está entre los válidos
+     */
+    public ProxyInfo findProxy(String host, int port) {
+        synchronized (workingProxies) {
+            for (ProxyInfo proxy : workingProxies) {
+                if (proxy.getPort() == port && proxy.getHost().equalsIgnoreCase(host)) {
+                    return proxy;
+                }
+            }
+        }
+        return null;
     }
 
     public void addProxy(String proxyString) {
         try {
             ProxyInfo proxy = ProxyInfo.fromString(proxyString);
-            String key = proxy.getHost() + ":" + proxy.getPort();
 
-            if (!processedProxies.contains(key)) {
-                processedProxies.add(key);
+            if (processedProxies.add(proxy.getHost(), proxy.getPort())) {
                 totalCount.incrementAndGet();
+                completionFired.set(false);
+                locate(proxy);
                 checkProxy(proxy);
             }
         } catch (Exception e) {
@@ -154,159 +863,694 @@ public class ProxyManager {
         }
     }
 
-    private void checkProxies(List<ProxyInfo> proxies) {
-        for (ProxyInfo proxy : proxies) {
-            if (isCanceled.get()) {
+    /**
+     * Si la caché tiene un resultado reciente del proxy lo aplica sin verificarlo
+     */
+    private boolean applyCachedResult(ProxyInfo proxy) {
+        ResultCache cache = resultCache;
+        if (cache == null || cacheTtl == 0) {
+            return false;
+        }
+        ResultCache.Entry cached = cache.get(proxy);
+        if (cached == null || !cached.isFresh(cacheTtl, System.currentTimeMillis())) {
+            return false;
+        }
+        cachedCount.incrementAndGet();
+        applyResult(proxy, cached.isValid(), cached.getResponseTime(),
+                cached.isValid() ? null : "En caché: " + cached.getErrorType(), cached.getErrorType(),
+                LocalDateTime.ofInstant(Instant.ofEpochMilli(cached.getCheckedAt()), ZoneId.systemDefault()));
+        return true;
+    }
+
+    /**
+     * Guarda en una instantánea binaria todos los proxies verificados con su último resultado:
+     * los del pool y también los que fallaron, para que al recargarla no vuelvan a verificarse
+     */
+    public int saveSnapshot(String filename) throws IOException {
+        // Los válidos del más rápido al más lento: al recargar el índice se llena en orden
+        List<ProxyInfo> proxies = getValidProxies();
+        for (ProxyInfo proxy : getAllProxies()) {
+            if (!proxy.isValid()) {
+                proxies.add(proxy); // En el pool pero fallando sus revisiones
+            }
+        }
+        proxies.addAll(failedProxies);
+        int saved = ResultSnapshot.write(new File(filename).toPath(), proxies);
+        updateStatus("💾 " + saved + " resultados guardados en la instantánea " + filename);
+        return saved;
+    }
+
+    /**
+     * Recarga una instantánea: sus resultados vuelven al pool, a las estadísticas y al índice de
+     * los más rápidos sin verificarlos de nuevo, y los proxies que ya estén en ella se omiten
+     * en las listas que se carguen después. Los registros sin verificar (convertidos de texto)
+     * se encolan los primeros en la siguiente loadProxiesFromFile o, sin lista, con
+     * checkSnapshotPending. Devuelve el número de resultados restaurados.
+     */
+    public int loadSnapshot(String filename) throws IOException {
+        ResultSnapshot snapshot = ResultSnapshot.open(new File(filename).toPath());
+        int unchecked = 0;
+        int restored = 0;
+        for (int i = 0; i < snapshot.size(); i++) {
+            ProxyInfo proxy = snapshot.get(i);
+            if (!processedProxies.add(proxy.getHost(), proxy.getPort())) {
+                continue;
+            }
+            totalCount.incrementAndGet();
+            if (proxy.getLastChecked() == null) {
+                snapshotPending.add(proxy);
+                unchecked++;
+                continue;
+            }
+            restoreResult(proxy);
+            restored++;
+        }
+        updateStatus("💾 " + restored + " resultados restaurados de la instantánea " + filename
+                + " (" + statistics.getValidCount() + " válidos)"
+                + (unchecked > 0 ? ", " + unchecked + " por verificar" : ""));
+        return restored;
+    }
+
+    /**
+     * Verifica los registros sin resultado de las instantáneas cargadas cuando no va a cargarse
+     * ninguna lista (modo servidor). Bloquea mientras el motor no admita más trabajo.
+     */
+    public int checkSnapshotPending() throws InterruptedException {
+        int submitted = 0;
+        ProxyInfo proxy;
+        while ((proxy = snapshotPending.poll()) != null) {
+            completionFired.set(false);
+            locate(proxy);
+            dnsCache.prefetch(proxy.getHost());
+            if (!submitCheck(proxy)) {
                 break;
             }
+            submitted++;
+        }
+        return submitted;
+    }
 
-            executor.submit(() -> checkProxy(proxy));
+    /**
+     * Aplica un resultado guardado sin verificar el proxy ni notificarlo
+     */
+    private void restoreResult(ProxyInfo proxy) {
+        if ("Unknown".equals(proxy.getCountry())) {
+            locate(proxy);
+        }
+        statistics.record(proxy.getType(), false, -1, proxy.isValid(), proxy.getResponseTime());
+        statistics.classify(proxy);
+        fastestIndex.update(proxy, proxy.isValid(), proxy.getResponseTime());
+        priority.record(proxy, proxy.isValid());
+        if (proxy.isValid()) {
+            workingProxies.add(proxy);
+            RevalidationDaemon daemon = revalidationDaemon;
+            if (daemon != null) {
+                daemon.track(proxy);
+            }
+        } else {
+            failedProxies.add(proxy);
         }
+        checkedCount.incrementAndGet();
     }
 
-    private void checkProxy(ProxyInfo proxy) {
-        try {
-            // Esperar si está pausado
-            while (isPaused.get() && !isCanceled.get()) {
-                Thread.sleep(100);
+    /**
+     * Restaura los resultados de un checkpoint y devuelve las entradas que quedaron pendientes
+     */
+    private List<ProxyInfo> restoreCheckpoint(RunCheckpoint.State state, RunCheckpoint run) throws IOException {
+        List<ProxyInfo> pending = new ArrayList<>();
+        int[] restored = new int[1];
+        state.forEachResult(proxy -> {
+            if (!processedProxies.add(proxy.getHost(), proxy.getPort())) {
+                return;
+            }
+            totalCount.incrementAndGet();
+            if (proxy.getLastChecked() == null) {
+                run.onEnqueued(proxy);
+                pending.add(proxy);
+            } else {
+                // Ya está en el diario o la base, que el checkpoint continúa
+                restoreResult(proxy);
+                restored[0]++;
             }
+        });
+        updateStatus("⏯ Reanudando: " + restored[0] + " resultados restaurados (" + statistics.getValidCount()
+                + " válidos), " + pending.size() + " pendientes");
+        return pending;
+    }
 
-            if (isCanceled.get()) {
+    private void checkProxies(List<ProxyInfo> proxies) {
+        CheckScheduler queue = newScheduler(proxies.size());
+        dispatcher = startThread("check-dispatcher", () -> {
+            // Lista completa en memoria: se ordena entera
+            for (ProxyInfo proxy : proxies) {
+                dnsCache.prefetch(proxy.getHost());
+                locate(proxy);
+                if (!queue.put(proxy)) {
+                    return;
+                }
+            }
+            queue.finish();
+            dispatch(queue);
+        });
+    }
+
+    private CheckScheduler newScheduler(int capacity) {
+        CheckScheduler queue = new CheckScheduler(capacity, priority);
+        scheduler = queue;
+        return queue;
+    }
+
+    /**
+     * Entrega los proxies de la cola por prioridad hasta vaciarla o cancelar
+     */
+    private void dispatch(CheckScheduler queue) throws InterruptedException {
+        ProxyInfo proxy;
+        while ((proxy = queue.take()) != null) {
+            // Si caducó mientras esperaba en la cola, se vuelve a pedir antes de llegar al worker
+            dnsCache.prefetch(proxy.getHost());
+            if (!submitCheck(proxy)) {
+                queue.close();
                 return;
             }
+        }
+    }
 
-            long startTime = System.currentTimeMillis();
-            boolean isValid = false;
-            String errorMessage = null;
+    /**
+     * Tarea de un hilo despachador
+     */
+    private interface DispatchTask {
+        void run() throws InterruptedException;
+    }
 
+    private Thread startThread(String name, DispatchTask task) {
+        Thread thread = new Thread(() -> {
             try {
-                // Verificar conectividad básica
-                if (testBasicConnectivity(proxy)) {
-                    // Verificar HTTP
-                    if (testHttpRequest(proxy)) {
-                        isValid = true;
-
-                        // Si está habilitado, también probar HTTPS
-                        if (testHttps && proxy.getType() != ProxyInfo.ProxyType.SOCKS4) {
-                            testHttpsRequest(proxy);
-                        }
-                    }
-                }
-            } catch (Exception e) {
-                errorMessage = e.getMessage();
-                logger.debug("Error verificando proxy {}: {}", proxy.getAddress(), e.getMessage());
+                task.run();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
             }
+        }, name);
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
 
-            long responseTime = System.currentTimeMillis() - startTime;
+    /**
+     * Entrega un proxy al motor activo, bloqueando mientras no haya hueco.
+     * Devuelve false si la verificación se canceló.
+     */
+    private boolean submitCheck(ProxyInfo proxy) throws InterruptedException {
+        if (!tcpPrefilter) {
+            return submitVerification(proxy);
+        }
 
-            proxy.setValid(isValid);
-            proxy.setResponseTime(responseTime);
-            proxy.setErrorMessage(errorMessage);
-            proxy.setLastChecked(LocalDateTime.now());
+        pauseGate.awaitOpen();
+        if (isCanceled.get()) {
+            return false;
+        }
 
-            if (isValid) {
-                workingProxies.add(proxy);
-            }
+        // El hueco se libera al descartar el proxy o cuando la etapa 2 lo recoge
+        Semaphore slots = prefilterSlots;
+        slots.acquire();
+        try {
+            getPrefilter().submit(proxy);
+        } catch (IOException | RuntimeException e) {
+            slots.release();
+            logger.error("No se pudo iniciar el prefiltro TCP: {}", e.getMessage());
+            return submitVerification(proxy);
+        }
+        return true;
+    }
 
-            // Callback
-            if (onProxyChecked != null) {
-                onProxyChecked.accept(proxy);
-            }
+    private synchronized TcpPrefilter getPrefilter() throws IOException {
+        if (prefilter == null) {
+            Semaphore slots = prefilterSlots;
+            prefilter = new TcpPrefilter(prefilterTimeout, (proxy, reachable, millis, error) ->
+                    onPrefilterResult(slots, proxy, reachable, millis, error), dnsCache);
+            verificationDispatcher = new Thread(this::verificationLoop, "verification-dispatcher");
+            verificationDispatcher.setDaemon(true);
+            verificationDispatcher.start();
+            unreachableRecorder = new Thread(this::unreachableLoop, "prefilter-results");
+            unreachableRecorder.setDaemon(true);
+            unreachableRecorder.start();
+        }
+        return prefilter;
+    }
 
-            int checked = checkedCount.incrementAndGet();
-            int total = totalCount.get();
+    private synchronized void closePrefilter() {
+        if (prefilter != null) {
+            prefilter.close();
+            prefilter = null;
+        }
+        if (verificationDispatcher != null) {
+            verificationDispatcher.interrupt();
+            verificationDispatcher = null;
+        }
+        if (unreachableRecorder != null) {
+            unreachableRecorder.interrupt();
+            unreachableRecorder = null;
+        }
+        reachableQueue.clear();
+        unreachableQueue.clear();
+    }
 
-            updateStatus(String.format("Progreso: %d/%d (%d válidos)",
-                checked, total, getValidProxyCount()));
+    /**
+     * Resultado de la etapa 1 (hilo del selector: no bloquear)
+     */
+    private void onPrefilterResult(Semaphore slots, ProxyInfo proxy, boolean reachable, long millis, Throwable error) {
+        prefilteredCount.incrementAndGet();
+        if (isCanceled.get()) {
+            slots.release();
+            return;
+        }
+        if (reachable) {
+            reachableCount.incrementAndGet();
+            connectLatencies.record(millis);
+            reachableQueue.add(proxy);
+        } else {
+            slots.release();
+            String message = "Conexión fallida: " + error.getMessage();
+            ProxyInfo.ErrorType errorType = ProxyInfo.ErrorType.classify(error);
+            unreachableQueue.add(() -> storeResult(proxy, false, millis, message, errorType));
+        }
+    }
 
-            // Verificar si hemos terminado
-            if (checked >= total) {
-                if (onCompleted != null) {
-                    onCompleted.run();
+    /**
+     * Registra los proxies que la etapa 1 descartó, en orden de llegada
+     */
+    private void unreachableLoop() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                Runnable record = unreachableQueue.take();
+                try {
+                    record.run();
+                } catch (RuntimeException e) {
+                    logger.error("Error registrando un proxy descartado por el prefiltro", e);
                 }
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
 
+    /**
+     * Etapa 2: entrega los proxies alcanzables al motor de verificación completo
+     */
+    private void verificationLoop() {
+        Semaphore slots = prefilterSlots;
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                ProxyInfo proxy = reachableQueue.take();
+                slots.release();
+                if (!submitVerification(proxy)) {
+                    return;
+                }
+            }
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
         }
     }
 
-    private boolean testBasicConnectivity(ProxyInfo proxy) {
-        try (Socket socket = new Socket()) {
-            socket.connect(new InetSocketAddress(proxy.getHost(), proxy.getPort()), timeout);
+    /**
+     * Entrega un proxy a la etapa de verificación completa
+     */
+    private boolean submitVerification(ProxyInfo proxy) throws InterruptedException {
+        pauseGate.awaitOpen();
+        if (isCanceled.get()) {
+            return false;
+        }
+        resolveRealIp();
+
+        try {
+            if (checkMode == CheckMode.POOL || (checkMode == CheckMode.ASYNC && proxy.getType().isSocks())) {
+                // En ASYNC los SOCKS van al pool bloqueante: el cliente asíncrono no habla SOCKS
+                executor.execute(() -> checkProxy(proxy));
+                return true;
+            }
+
+            Semaphore inFlight = inFlightLimit;
+            inFlight.acquire();
+            CompletableFuture<?> check;
+            try {
+                check = checkMode == CheckMode.ASYNC
+                        ? checkProxyAsync(getAsyncChecker(), proxy)
+                        : CompletableFuture.runAsync(() -> checkProxy(proxy), executor);
+            } catch (RuntimeException e) {
+                inFlight.release();
+                throw e;
+            }
+            check.whenComplete((ignored, error) -> inFlight.release());
             return true;
-        } catch (Exception e) {
-            proxy.setErrorMessage("Conexión fallida: " + e.getMessage());
+        } catch (RejectedExecutionException e) {
+            if (Thread.currentThread().isInterrupted()) {
+                throw new InterruptedException();
+            }
             return false;
         }
     }
 
-    private boolean testHttpRequest(ProxyInfo proxy) {
-        try {
-            RequestConfig config = RequestConfig.custom()
-                .setConnectTimeout(Timeout.ofMilliseconds(timeout))
-                .setResponseTimeout(Timeout.ofMilliseconds(timeout))
-                .build();
+    private synchronized AsyncProxyChecker getAsyncChecker() {
+        if (asyncChecker == null) {
+            asyncChecker = new AsyncProxyChecker(maxInFlight, timeout, dnsCache);
+        }
+        return asyncChecker;
+    }
 
-            HttpHost proxyHost = new HttpHost(proxy.getHost(), proxy.getPort());
+    // Paquete: usado también por los benchmarks JMH.
+    // La pausa se aplica al despachar; las tareas ya entregadas terminan sin esperar en el worker.
+    void checkProxy(ProxyInfo proxy) {
+        if (isCanceled.get()) {
+            return;
+        }
 
-            try (CloseableHttpClient client = HttpClients.custom()
-                    .setDefaultRequestConfig(config)
-                    .setProxy(proxyHost)
-                    .build()) {
+        long startTime = System.currentTimeMillis();
+        boolean isValid = false;
+        String errorMessage = null;
+        ProxyInfo.ErrorType errorType = ProxyInfo.ErrorType.NONE;
 
-                HttpGet request = new HttpGet(testUrl);
-                try (CloseableHttpResponse response = client.execute(request)) {
-                    return response.getCode() == 200;
+        try {
+            if (proxy.getType().isSocks()) {
+                // SOCKS: saludo, túnel y petición sobre un único socket
+                RawHttp.Response response = testSocksRequest(proxy);
+                int status = response.status;
+                isValid = status == 200;
+                if (isValid) {
+                    judgeAnonymity(proxy, response.body);
+                    if (testHttps && proxy.getType() != ProxyInfo.ProxyType.SOCKS4) {
+                        testSocksHttpsRequest(proxy);
+                    }
+                } else {
+                    errorMessage = "HTTP " + status;
+                    errorType = ProxyInfo.ErrorType.HTTP_STATUS;
+                }
+            } else if (singleConnectionProbe) {
+                HttpProxyProbe.Result result = new HttpProxyProbe(timeout, dnsCache).probe(proxy, testUrl,
+                        testHttps ? TEST_HTTPS_URL : null);
+                isValid = result.isHttpOk();
+                if (isValid) {
+                    judgeAnonymity(proxy, result.getBody());
+                }
+                proxy.setHttpsSupported(result.isHttpsOk());
+                if (!isValid) {
+                    errorMessage = result.getErrorMessage() != null
+                            ? result.getErrorMessage() : "HTTP " + result.getHttpStatus();
+                    errorType = result.getErrorType();
+                }
+            } else {
+                testBasicConnectivity(proxy);
+                // Verificar HTTP
+                RawHttp.Response response = testHttpRequest(proxy);
+                int status = response.status;
+                isValid = status == 200;
+                if (isValid) {
+                    judgeAnonymity(proxy, response.body);
+                    // Si está habilitado, también probar HTTPS
+                    if (testHttps && proxy.getType() != ProxyInfo.ProxyType.SOCKS4) {
+                        testHttpsRequest(proxy);
+                    }
+                } else {
+                    errorMessage = "HTTP " + status;
+                    errorType = ProxyInfo.ErrorType.HTTP_STATUS;
                 }
             }
         } catch (Exception e) {
-            proxy.setErrorMessage("HTTP test failed: " + e.getMessage());
-            return false;
+            errorMessage = (proxy.getType().isSocks() ? "SOCKS test failed: " : "") + e.getMessage();
+            errorType = ProxyInfo.ErrorType.classify(e);
+            logger.debug("Error verificando proxy {}: {}", proxy.getAddress(), e.getMessage());
         }
+
+        recordResult(proxy, isValid, System.currentTimeMillis() - startTime, errorMessage, errorType);
     }
 
-    private boolean testHttpsRequest(ProxyInfo proxy) {
-        try {
-            RequestConfig config = RequestConfig.custom()
-                .setConnectTimeout(Timeout.ofMilliseconds(timeout))
-                .setResponseTimeout(Timeout.ofMilliseconds(timeout))
-                .build();
-
-            HttpHost proxyHost = new HttpHost(proxy.getHost(), proxy.getPort());
-
-            try (CloseableHttpClient client = HttpClients.custom()
-                    .setDefaultRequestConfig(config)
-                    .setProxy(proxyHost)
-                    .build()) {
-
-                HttpGet request = new HttpGet(TEST_HTTPS_URL);
-                try (CloseableHttpResponse response = client.execute(request)) {
-                    if (response.getCode() == 200) {
-                        proxy.setAnonymous(true); // Si puede hacer HTTPS, probablemente sea anónimo
-                        return true;
+    private CompletableFuture<Void> checkProxyAsync(AsyncProxyChecker checker, ProxyInfo proxy) {
+        long startTime = System.currentTimeMillis();
+
+        return checker.fetch(proxy, testUrl)
+                .thenCompose(response -> {
+                    if (response.status != 200) {
+                        return CompletableFuture.completedFuture(false);
+                    }
+                    judgeAnonymity(proxy, response.body);
+                    if (!testHttps || proxy.getType() == ProxyInfo.ProxyType.SOCKS4) {
+                        return CompletableFuture.completedFuture(true);
                     }
+                    // HTTPS es opcional: su fallo no invalida el proxy
+                    return checker.execute(proxy, TEST_HTTPS_URL)
+                            .handle((httpsCode, error) -> {
+                                proxy.setHttpsSupported(error == null && httpsCode == 200);
+                                return true;
+                            });
+                })
+                .handle((isValid, error) -> {
+                    if (isCanceled.get()) {
+                        return null;
+                    }
+                    String errorMessage = null;
+                    ProxyInfo.ErrorType errorType = ProxyInfo.ErrorType.NONE;
+                    if (error != null) {
+                        Throwable cause = error instanceof CompletionException && error.getCause() != null
+                                ? error.getCause() : error;
+                        errorMessage = "HTTP test failed: " + cause.getMessage();
+                        errorType = ProxyInfo.ErrorType.classify(cause);
+                    } else if (isValid == null || !isValid) {
+                        errorType = ProxyInfo.ErrorType.HTTP_STATUS;
+                    }
+                    recordResult(proxy, isValid != null && isValid,
+                            System.currentTimeMillis() - startTime, errorMessage, errorType);
+                    return null;
+                });
+    }
+
+    /**
+     * Registra el resultado de una verificación y notifica a los callbacks
+     */
+    void recordResult(ProxyInfo proxy, boolean isValid, long responseTime, String errorMessage) {
+        recordResult(proxy, isValid, responseTime, errorMessage,
+                isValid ? ProxyInfo.ErrorType.NONE : ProxyInfo.ErrorType.OTHER);
+    }
+
+    void recordResult(ProxyInfo proxy, boolean isValid, long responseTime, String errorMessage,
+                      ProxyInfo.ErrorType errorType) {
+        AdaptiveConcurrency controller = adaptive;
+        if (controller != null) {
+            controller.onResult(errorType);
+        }
+        storeResult(proxy, isValid, responseTime, errorMessage, errorType);
+    }
+
+    /**
+     * Guarda un resultado sin pasarlo al control adaptativo: los fallos de la etapa 1 no miden
+     * la concurrencia de las verificaciones completas
+     */
+    private void storeResult(ProxyInfo proxy, boolean isValid, long responseTime, String errorMessage,
+                             ProxyInfo.ErrorType errorType) {
+        ResultCache cache = resultCache;
+        if (cache != null) {
+            cache.put(proxy, isValid, responseTime, errorType, System.currentTimeMillis());
+        }
+        applyResult(proxy, isValid, responseTime, errorMessage, errorType, LocalDateTime.now());
+    }
+
+    private void applyResult(ProxyInfo proxy, boolean isValid, long responseTime, String errorMessage,
+                             ProxyInfo.ErrorType errorType, LocalDateTime checkedAt) {
+        boolean firstCheck;
+        boolean rejoined;
+        synchronized (proxy) {
+            // El estado anterior permite ajustar las estadísticas en las revalidaciones
+            firstCheck = proxy.getLastChecked() == null;
+            // Solo está entre los fallidos si volvió a verificarse tras fallar o ser expulsado
+            rejoined = isValid && failedProxies.remove(proxy);
+            if (!isValid && firstCheck) {
+                failedProxies.add(proxy);
+            }
+            statistics.record(proxy.getType(), proxy.isValid(), proxy.getResponseTime(), isValid, responseTime);
+            fastestIndex.update(proxy, isValid, responseTime);
+            priority.record(proxy, isValid);
+
+            proxy.setValid(isValid);
+            proxy.setResponseTime(responseTime);
+            proxy.setErrorMessage(errorMessage);
+            proxy.setErrorType(errorType);
+            proxy.setLastChecked(checkedAt);
+        }
+
+        // Los nombres de host tienen país cuando ya se resolvieron para verificarlos
+        if (firstCheck && "Unknown".equals(proxy.getCountry())) {
+            locate(proxy);
+        }
+        statistics.classify(proxy);
+
+        // Los revalidados ya están en la lista; los que vuelven de fallar o de una expulsión, no
+        RevalidationDaemon daemon = revalidationDaemon;
+        if (isValid && (firstCheck || rejoined)) {
+            workingProxies.add(proxy);
+            if (daemon != null) {
+                daemon.track(proxy);
+            }
+        } else if (daemon != null) {
+            daemon.onResult(proxy, isValid, responseTime, statistics.getResponseTimePercentile(50));
+        }
+
+        RunCheckpoint run = firstCheck ? checkpoint : null;
+        ResultStreamWriter stream = resultStream;
+        if (stream != null) {
+            // Con el cerrojo del escritor: el checkpoint ve el resultado en la salida y en su lista a la vez
+            synchronized (stream) {
+                try {
+                    stream.write(proxy);
+                } catch (IOException e) {
+                    logger.warn("Error escribiendo en {}: {}", stream.getFile().getFileName(), e.getMessage());
                 }
+                if (run != null) {
+                    run.onCompleted(proxy);
+                }
+            }
+        } else if (run != null) {
+            run.onCompleted(proxy);
+        }
+
+        // Callback
+        if (onProxyChecked != null) {
+            onProxyChecked.accept(proxy);
+        }
+
+        int checked = checkedCount.incrementAndGet();
+        int total = totalCount.get();
+        int cached = cachedCount.get();
+
+        if (tcpPrefilter) {
+            updateStatus(String.format("Progreso: %d/%d (%d válidos) | TCP: %d/%d (%d alcanzables) | Verificación: %d/%d",
+                checked, total, statistics.getValidCount(), prefilteredCount.get(), total,
+                reachableCount.get(), getVerifiedCount(), reachableCount.get()));
+        } else {
+            updateStatus(String.format(cached > 0 ? "Progreso: %d/%d (%d válidos, %d de caché)" : "Progreso: %d/%d (%d válidos)",
+                checked, total, statistics.getValidCount(), cached));
+        }
+
+        checkCompletion();
+    }
+
+    /**
+     * Notifica el fin una sola vez, cuando la entrada se leyó entera y todo está verificado
+     */
+    private void checkCompletion() {
+        if (loadingComplete.get() && checkedCount.get() >= totalCount.get()
+                && completionFired.compareAndSet(false, true)) {
+            RunCheckpoint run = checkpoint;
+            if (run != null) {
+                // Checkpoint final: reanudar una verificación terminada no repite nada
+                run.stop();
+            }
+            if (onCompleted != null) {
+                onCompleted.run();
+            }
+        }
+    }
+
+    /**
+     * Pide una vez al juez, sin proxy, nuestra IP: si luego aparece en las cabeceras que recibe
+     * a través de un proxy, ese proxy es transparente
+     */
+    private void resolveRealIp() {
+        String url = testUrl;
+        if (url.equals(realIpUrl)) {
+            return;
+        }
+        synchronized (realIpLock) {
+            if (url.equals(realIpUrl)) {
+                return;
+            }
+            String ip = null;
+            try {
+                RawHttp.Response response = httpClient.fetchDirect(url);
+                ip = response.status == 200 ? AnonymityJudge.origin(response.body) : null;
+            } catch (IOException e) {
+                logger.debug("El juez no responde sin proxy: {}", e.getMessage());
             }
+            if (ip == null) {
+                logger.warn("No se pudo obtener la IP real desde {}: los transparentes se verán como anónimos", url);
+            }
+            realIp = ip;
+            realIpUrl = url;
+        }
+    }
+
+    /**
+     * Anonimato e IP de salida a partir de la respuesta del juez a la petición de validación
+     */
+    private void judgeAnonymity(ProxyInfo proxy, byte[] body) {
+        AnonymityJudge.Verdict verdict = AnonymityJudge.judge(body, realIp);
+        synchronized (proxy) {
+            proxy.setAnonymity(verdict.level);
+            proxy.setExitIp(verdict.exitIp);
+        }
+    }
+
+    private void testBasicConnectivity(ProxyInfo proxy) throws IOException {
+        try (Socket socket = new Socket()) {
+            socket.connect(dnsCache.resolve(proxy.getHost(), proxy.getPort()), timeout);
+        }
+    }
+
+    private RawHttp.Response testHttpRequest(ProxyInfo proxy) throws IOException {
+        return httpClient.fetch(proxy, testUrl);
+    }
+
+    private boolean testHttpsRequest(ProxyInfo proxy) {
+        boolean supported = false;
+        try {
+            supported = httpClient.execute(proxy, TEST_HTTPS_URL) == 200;
         } catch (Exception e) {
             logger.debug("HTTPS test failed for {}: {}", proxy.getAddress(), e.getMessage());
         }
-        return false;
+        proxy.setHttpsSupported(supported);
+        return supported;
+    }
+
+    private RawHttp.Response testSocksRequest(ProxyInfo proxy) throws IOException {
+        return new SocksProber(timeout, dnsCache).fetch(proxy, testUrl);
+    }
+
+    private boolean testSocksHttpsRequest(ProxyInfo proxy) {
+        boolean supported = false;
+        try {
+            supported = new SocksProber(timeout, dnsCache).probe(proxy, TEST_HTTPS_URL) == 200;
+        } catch (Exception e) {
+            logger.debug("SOCKS HTTPS test failed for {}: {}", proxy.getAddress(), e.getMessage());
+        }
+        proxy.setHttpsSupported(supported);
+        return supported;
     }
 
     // Métodos de control
     public void pause() {
-        isPaused.set(true);
+        pauseGate.pause();
         updateStatus("Verificación pausada");
     }
 
     public void resume() {
-        isPaused.set(false);
+        pauseGate.resume();
         updateStatus("Verificación reanudada");
     }
 
     public void cancel() {
         isCanceled.set(true);
+        pauseGate.release();
+        stopRevalidationDaemon();
+        if (scheduler != null) {
+            scheduler.close();
+            scheduler = null;
+        }
+        if (loader != null) {
+            loader.interrupt();
+            loader = null;
+        }
+        if (dispatcher != null) {
+            dispatcher.interrupt();
+            dispatcher = null;
+        }
+        closeAsyncChecker();
+        closePrefilter();
         if (executor != null && !executor.isShutdown()) {
             executor.shutdownNow();
             try {
@@ -320,18 +1564,43 @@ public class ProxyManager {
         updateStatus("Verificación cancelada");
     }
 
+    private synchronized void closeAsyncChecker() {
+        if (asyncChecker != null) {
+            asyncChecker.close();
+            asyncChecker = null;
+        }
+    }
+
     public void reset() {
         cancel();
         workingProxies.clear();
+        failedProxies.clear();
         processedProxies.clear();
+        statistics.clear();
+        fastestIndex.clear();
+        priority.clear();
         checkedCount.set(0);
         totalCount.set(0);
-        isPaused.set(false);
+        cachedCount.set(0);
+        resetStageCounters();
+        loadingComplete.set(true);
+        completionFired.set(false);
+        inFlightLimit = new AdaptiveConcurrency.ResizableSemaphore(getConcurrencyLimit());
         isCanceled.set(false);
-        executor = Executors.newFixedThreadPool(threadCount);
+        pauseGate.reopen();
+        executor = createExecutor();
+        httpClient.close();
+        httpClient = createHttpClient();
         updateStatus("Sistema reiniciado");
     }
 
+    private void resetStageCounters() {
+        prefilteredCount.set(0);
+        reachableCount.set(0);
+        connectLatencies.clear();
+        prefilterSlots = new Semaphore(prefilterConcurrency);
+    }
+
     private void updateStatus(String message) {
         if (onStatusUpdate != null) {
             onStatusUpdate.accept(message);
@@ -341,19 +1610,44 @@ public class ProxyManager {
 
     // Métodos de consulta
     public boolean isPaused() {
-        return isPaused.get();
+        return pauseGate.isPaused();
     }
 
     public boolean isCanceled() {
         return isCanceled.get();
     }
 
-    public synchronized int getProxyCount() {
+    public int getProxyCount() {
         return workingProxies.size();
     }
 
-    public synchronized int getValidProxyCount() {
-        return (int) workingProxies.stream().filter(ProxyInfo::isValid).count();
+    public int getValidProxyCount() {
+        return (int) statistics.getValidCount();
+    }
+
+    public int getValidProxyCount(ProxyInfo.ProxyType type) {
+        return (int) statistics.getValidCount(type);
+    }
+
+    /**
+     * Latencia media de los proxies válidos; -1 si no hay ninguno
+     */
+    public double getAverageResponseTime() {
+        return statistics.getAverageResponseTime();
+    }
+
+    /**
+     * Percentil (0-100) de latencia de los proxies válidos; -1 si no hay ninguno
+     */
+    public long getResponseTimePercentile(double percentile) {
+        return statistics.getResponseTimePercentile(percentile);
+    }
+
+    /**
+     * Proxies resueltos con la caché sin verificarse
+     */
+    public int getCachedCount() {
+        return cachedCount.get();
     }
 
     public int getCheckedCount() {
@@ -369,28 +1663,106 @@ public class ProxyManager {
         return total > 0 ? (double) checkedCount.get() / total : 0.0;
     }
 
+    /**
+     * Progreso de la etapa 1: proxies que ya pasaron por el prefiltro TCP
+     */
+    public double getPrefilterProgress() {
+        int total = totalCount.get();
+        return total > 0 ? (double) prefilteredCount.get() / total : 0.0;
+    }
+
+    /**
+     * Progreso de la etapa 2: alcanzables ya verificados sobre los alcanzables hasta ahora
+     */
+    public double getVerificationProgress() {
+        int reachable = reachableCount.get();
+        return reachable > 0 ? (double) getVerifiedCount() / reachable : 0.0;
+    }
+
+    public int getPrefilteredCount() {
+        return prefilteredCount.get();
+    }
+
+    public int getReachableCount() {
+        return reachableCount.get();
+    }
+
+    /**
+     * Verificaciones completas (etapa 2) terminadas
+     */
+    public int getVerifiedCount() {
+        if (!tcpPrefilter) {
+            return checkedCount.get();
+        }
+        return Math.max(0, checkedCount.get() - (prefilteredCount.get() - reachableCount.get()));
+    }
+
     public synchronized List<ProxyInfo> getAllProxies() {
         return new ArrayList<>(workingProxies);
     }
 
-    public synchronized List<ProxyInfo> getValidProxies() {
-        return workingProxies.stream()
-                .filter(ProxyInfo::isValid)
-                .collect(ArrayList::new, ArrayList::add, ArrayList::addAll);
+    /**
+     * Proxies válidos, del más rápido al más lento
+     */
+    public List<ProxyInfo> getValidProxies() {
+        return fastestIndex.getFastest(Integer.MAX_VALUE);
     }
 
-    public synchronized List<ProxyInfo> getProxiesByType(ProxyInfo.ProxyType type) {
-        return workingProxies.stream()
-                .filter(proxy -> proxy.getType() == type && proxy.isValid())
-                .collect(ArrayList::new, ArrayList::add, ArrayList::addAll);
+    /**
+     * Proxies válidos del tipo indicado, del más rápido al más lento
+     */
+    public List<ProxyInfo> getProxiesByType(ProxyInfo.ProxyType type) {
+        return fastestIndex.getFastest(type, Integer.MAX_VALUE);
     }
 
-    public synchronized List<ProxyInfo> getFastestProxies(int limit) {
-        return workingProxies.stream()
-                .filter(ProxyInfo::isValid)
-                .sorted(Comparator.comparingLong(ProxyInfo::getResponseTime))
-                .limit(limit)
-                .collect(ArrayList::new, ArrayList::add, ArrayList::addAll);
+    /**
+     * Los limit proxies válidos más rápidos, leídos del índice en O(limit)
+     */
+    public List<ProxyInfo> getFastestProxies(int limit) {
+        return fastestIndex.getFastest(limit);
+    }
+
+    public List<ProxyInfo> getFastestProxies(ProxyInfo.ProxyType type, int limit) {
+        return fastestIndex.getFastest(type, limit);
+    }
+
+    /**
+     * Proxies válidos del país indicado (código ISO), del más rápido al más lento
+     */
+    public List<ProxyInfo> getProxiesByCountry(String country) {
+        List<ProxyInfo> proxies = new ArrayList<>();
+        for (ProxyInfo proxy : getValidProxies()) {
+            if (country.equalsIgnoreCase(proxy.getCountry())) {
+                proxies.add(proxy);
+            }
+        }
+        return proxies;
+    }
+
+    /**
+     * Proxies válidos con el nivel de anonimato indicado, del más rápido al más lento
+     */
+    public List<ProxyInfo> getProxiesByAnonymity(ProxyInfo.AnonymityLevel level) {
+        List<ProxyInfo> proxies = new ArrayList<>();
+        for (ProxyInfo proxy : getValidProxies()) {
+            if (proxy.getAnonymity() == level) {
+                proxies.add(proxy);
+            }
+        }
+        return proxies;
+    }
+
+    /**
+     * Proxies válidos por país, de más a menos
+     */
+    public Map<String, Integer> getValidCountByCountry() {
+        List<Map.Entry<String, Long>> entries = new ArrayList<>(statistics.getValidCountByCountry().entrySet());
+        entries.sort(Map.Entry.<String, Long>comparingByValue().reversed());
+        Map<String, Integer> sorted = new LinkedHashMap<>();
+        for (Map.Entry<String, Long> entry : entries) {
+            sorted.put(entry.getKey(), entry.getValue().intValue());
+        }
+        return sorted;
     }
 
     // Métodos de exportación
@@ -424,6 +1796,35 @@ public class ProxyManager {
         updateStatus("✅ " + proxies.size() + " proxies " + type + " exportados a: " + filename);
     }
 
+    public void exportProxiesByCountry(String filename, String country) throws IOException {
+        List<ProxyInfo> proxies = getProxiesByCountry(country);
+
+        try (FileWriter writer = new FileWriter(filename)) {
+            writer.write("# Proxies válidos de " + country + " exportados el " + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss")) + "\n");
+            writer.write("# Total de proxies de " + country + ": " + proxies.size() + "\n\n");
+
+            for (ProxyInfo proxy : proxies) {
+                writer.write(proxy.toFileFormat() + "\n");
+            }
+        }
+
+        updateStatus("✅ " + proxies.size() + " proxies de " + country + " exportados a: " + filename);
+    }
+
+    public void exportFastestProxies(String filename, int limit) throws IOException {
+        List<ProxyInfo> proxies = getFastestProxies(limit);
+
+        try (FileWriter writer = new FileWriter(filename)) {
+            writer.write("# " + proxies.size() + " proxies más rápidos exportados el " + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss")) + "\n\n");
+
+            for (ProxyInfo proxy : proxies) {
+                writer.write(proxy.toFileFormat() + "\n");
+            }
+        }
+
+        updateStatus("✅ " + proxies.size() + " proxies más rápidos exportados a: " + filename);
+    }
+
     public String getStatistics() {
         int total = getProxyCount();
         int valid = getValidProxyCount();
@@ -436,25 +1837,61 @@ public class ProxyManager {
         stats.append("Válidos: ").append(valid).append(" (").append(String.format("%.1f%%", validPercent)).append(")\n");
         stats.append("Inválidos: ").append(invalid).append("\n");
         stats.append("Progreso: ").append(checkedCount.get()).append("/").append(totalCount.get()).append("\n");
+        if (cachedCount.get() > 0) {
+            stats.append("Resultados tomados de la caché: ").append(cachedCount.get()).append("\n");
+        }
+        if (tcpPrefilter) {
+            int prefiltered = prefilteredCount.get();
+            int reachable = reachableCount.get();
+            stats.append("Prefiltro TCP: ").append(prefiltered).append(" probados, ")
+                    .append(reachable).append(" alcanzables, ").append(prefiltered - reachable).append(" descartados");
+            if (connectLatencies.getCount() > 0) {
+                stats.append(" (connect p50 ").append(connectLatencies.getPercentile(50)).append(" ms)");
+            }
+            stats.append("\n");
+            stats.append("Verificación completa: ").append(getVerifiedCount()).append("/").append(reachable).append("\n");
+        }
+        if (dnsCache.getLookupCount() > 0) {
+            stats.append("DNS: ").append(dnsCache.getLookupCount()).append(" resoluciones (")
+                    .append(dnsCache.getFailureCount()).append(" fallidas), ")
+                    .append(dnsCache.getHitCount()).append(" aciertos de caché\n");
+        }
 
-        if (!workingProxies.isEmpty()) {
-            Map<ProxyInfo.ProxyType, Long> typeCount = workingProxies.stream()
-                    .filter(ProxyInfo::isValid)
-                    .collect(Collectors.groupingBy(ProxyInfo::getType, Collectors.counting()));
-
+        if (valid > 0) {
             stats.append("\nPor tipo:\n");
-            for (Map.Entry<ProxyInfo.ProxyType, Long> entry : typeCount.entrySet()) {
-                stats.append("  ").append(entry.getKey()).append(": ").append(entry.getValue()).append("\n");
+            for (ProxyInfo.ProxyType type : ProxyInfo.ProxyType.values()) {
+                long count = statistics.getValidCount(type);
+                if (count > 0) {
+                    stats.append("  ").append(type).append(": ").append(count).append("\n");
+                }
             }
 
-            OptionalDouble avgResponseTime = workingProxies.stream()
-                    .filter(ProxyInfo::isValid)
-                    .mapToLong(ProxyInfo::getResponseTime)
-                    .average();
-
-            if (avgResponseTime.isPresent()) {
-                stats.append("Tiempo promedio de respuesta: ").append(String.format("%.0f ms", avgResponseTime.getAsDouble())).append("\n");
+            stats.append("Anonimato:");
+            for (ProxyInfo.AnonymityLevel level : ProxyInfo.AnonymityLevel.values()) {
+                long count = statistics.getValidCount(level);
+                if (count > 0) {
+                    stats.append(" ").append(level).append(" ").append(count);
+                }
+            }
+            stats.append("\n");
+
+            if (geoIp != null) {
+                stats.append("Por país:\n");
+                int shown = 0;
+                for (Map.Entry<String, Integer> entry : getValidCountByCountry().entrySet()) {
+                    if (shown++ == 10) {
+                        stats.append("  ...\n");
+                        break;
+                    }
+                    stats.append("  ").append(entry.getKey()).append(": ").append(entry.getValue()).append("\n");
+                }
             }
+
+            stats.append("Tiempo promedio de respuesta: ").append(String.format("%.0f ms", statistics.getAverageResponseTime())).append("\n");
+            stats.append("Latencia p50/p90/p99: ")
+                    .append(statistics.getResponseTimePercentile(50)).append(" / ")
+                    .append(statistics.getResponseTimePercentile(90)).append(" / ")
+                    .append(statistics.getResponseTimePercentile(99)).append(" ms\n");
         }
 
         return stats.toString();
@@ -462,6 +1899,19 @@ public class ProxyManager {
 
     public void shutdown() {
         cancel();
+        stopGateway();
+        httpClient.close();
+        dnsCache.close();
+        stopCheckpoint();
+        closeResultStream();
+        ResultCache cache = resultCache;
+        if (cache != null) {
+            try {
+                cache.close();
+            } catch (IOException e) {
+                logger.warn("Error cerrando la caché de resultados: {}", e.getMessage());
+            }
+        }
     }
 
     public void printProxyStatus() {
@@ -471,21 +1921,43 @@ public class ProxyManager {
         System.out.println("Progreso: " + getCheckedCount() + "/" + getTotalCount() + " (" + String.format("%.1f%%", getProgress() * 100) + ")");
         System.out.println("Pausado: " + isPaused());
         System.out.println("Cancelado: " + isCanceled());
-        System.out.println("Hilos activos: " + threadCount);
+        System.out.println("Motor: " + checkMode);
+        if (checkMode == CheckMode.POOL) {
+            System.out.println("Hilos activos: " + threadCount);
+        } else {
+            System.out.println("Máximo en vuelo: " + maxInFlight);
+        }
+        if (adaptiveEnabled) {
+            System.out.println("Concurrencia adaptativa: " + getConcurrencyLimit() + " (" + getConcurrencyReason() + ")");
+        }
+        if (isRevalidationDaemonRunning()) {
+            System.out.println("Revalidación continua: " + getRevalidationTrackedCount() + " proxies en seguimiento");
+        }
     }
 
     public void forceFullRevalidation() {
         updateStatus("🔄 Forzando revalidación completa de todos los proxies...");
         isCanceled.set(false);
-        isPaused.set(false);
+        pauseGate.reopen();
         checkedCount.set(0);
         totalCount.set(workingProxies.size());
+        closePrefilter();
+        resetStageCounters();
+        loadingComplete.set(true);
+        completionFired.set(false);
 
         // Reiniciar el executor
+        if (scheduler != null) {
+            scheduler.close();
+        }
+        if (dispatcher != null) {
+            dispatcher.interrupt();
+        }
         if (executor != null && !executor.isShutdown()) {
             executor.shutdownNow();
         }
-        executor = Executors.newFixedThreadPool(threadCount);
+        executor = createExecutor();
+        inFlightLimit = new AdaptiveConcurrency.ResizableSemaphore(getConcurrencyLimit());
 
         // Revalidar todos los proxies
         checkProxies(new ArrayList<>(workingProxies));
@@ -0,0 +1,107 @@
+package es.srshiroh;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Prioridad de verificación: primero los que ya fueron válidos (los más rápidos antes), luego los
+ * de subredes /24 con proxies válidos, después los desconocidos y al final los de subredes que
+ * solo han fallado y los que ya fallaron. Menor valor = antes. Para los aún no verificados en
+ * esta ejecución se usa el último resultado de la caché de resultados, si la hay.
+ */
+class ProxyPriority {
+    private static final long TIER = 1L << 40;
+    private static final int MAX_SUBNETS = 1 << 18; // Memoria acotada con listas enormes
+    private static final int MIN_FAILURES = 3;      // Fallos para considerar mala una subred
+
+    // Por subred /24: válidos en los 32 bits altos, verificados en los bajos
+    private final ConcurrentHashMap<Integer, AtomicLong> subnets = new ConcurrentHashMap<>();
+    private volatile ResultCache history;
+
+    void setHistory(ResultCache history) {
+        this.history = history;
+    }
+
+    long score(ProxyInfo proxy) {
+        synchronized (proxy) {
+            if (proxy.getLastChecked() != null) {
+                return proxy.isValid()
+                        ? Math.min(Math.max(0, proxy.getResponseTime()), TIER - 1)
+                        : 4 * TIER;
+            }
+        }
+
+        ResultCache cache = history;
+        ResultCache.Entry previous = cache != null ? cache.get(proxy) : null;
+        if (previous != null) {
+            return previous.isValid()
+                    ? Math.min(Math.max(0, previous.getResponseTime()), TIER - 1)
+                    : 4 * TIER;
+        }
+
+        int subnet = subnetOf(proxy.getHost());
+        AtomicLong counters = subnet >= 0 ? subnets.get(subnet) : null;
+        if (counters == null) {
+            return 2 * TIER;
+        }
+        long value = counters.get();
+        long valid = value >>> 32;
+        long checked = value & 0xFFFFFFFFL;
+        if (valid > 0) {
+            // Menor proporción de fallos antes
+            return TIER + (checked - valid) * 1000 / checked;
+        }
+        return checked >= MIN_FAILURES ? 3 * TIER : 2 * TIER;
+    }
+
+    void record(ProxyInfo proxy, boolean valid) {
+        int subnet = subnetOf(proxy.getHost());
+        if (subnet < 0) {
+            return;
+        }
+        AtomicLong counters = subnets.get(subnet);
+        if (counters == null) {
+            if (subnets.size() >= MAX_SUBNETS) {
+                return;
+            }
+            counters = subnets.computeIfAbsent(subnet, key -> new AtomicLong());
+        }
+        counters.addAndGet(valid ? (1L << 32) + 1 : 1);
+    }
+
+    int getSubnetCount() {
+        return subnets.size();
+    }
+
+    void clear() {
+        subnets.clear();
+    }
+
+    /**
+     * Subred /24 de una IPv4 en texto, o -1 si el host no es una IPv4
+     */
+    static int subnetOf(String host) {
+        int address = 0;
+        int octet = -1;
+        int dots = 0;
+        for (int i = 0; i < host.length(); i++) {
+            char c = host.charAt(i);
+            if (c >= '0' && c <= '9') {
+                octet = (octet < 0 ? 0 : octet * 10) + (c - '0');
+                if (octet > 255) {
+                    return -1;
+                }
+            } else if (c == '.' && octet >= 0 && dots < 3) {
+                address = (address << 8) | octet;
+                octet = -1;
+                dots++;
+            } else {
+                return -1;
+            }
+        }
+        if (dots != 3 || octet < 0) {
+            return -1;
+        }
+        return ((address << 8) | octet) >>> 8;
+    }
+}
@@ -0,0 +1,168 @@
+package es.srshiroh;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Agregador de estadísticas actualizado una vez por resultado.
+ * Cuenta las verificaciones por tipo y estado, mantiene cuántos proxies son válidos ahora
+ * mismo (por tipo, país y anonimato) y el histograma de latencias de esos proxies; ninguna
+ * consulta recorre el pool.
+ */
+public class ProxyStatistics {
+    private static final ProxyInfo.ProxyType[] TYPES = ProxyInfo.ProxyType.values();
+    private static final ProxyInfo.AnonymityLevel[] LEVELS = ProxyInfo.AnonymityLevel.values();
+
+    /**
+     * País y anonimato con que se contó un proxy válido
+     */
+    private static final class Classification {
+        final String country;
+        final ProxyInfo.AnonymityLevel anonymity;
+
+        Classification(String country, ProxyInfo.AnonymityLevel anonymity) {
+            this.country = country;
+            this.anonymity = anonymity;
+        }
+    }
+
+    private final LongAdder[] validChecks = newAdders(TYPES.length);
+    private final LongAdder[] invalidChecks = newAdders(TYPES.length);
+    private final LongAdder[] validNow = newAdders(TYPES.length);
+    private final LongAdder[] validByAnonymity = newAdders(LEVELS.length);
+    private final Map<String, LongAdder> validByCountry = new ConcurrentHashMap<>();
+    // El anonimato cambia durante la verificación y el país al localizarse: se descuenta lo contado
+    private final Map<ProxyInfo, Classification> classified = new ConcurrentHashMap<>();
+    private final LatencyHistogram latencies = new LatencyHistogram();
+
+    /**
+     * Registra un resultado indicando el estado anterior del proxy (para revalidaciones)
+     */
+    public void record(ProxyInfo.ProxyType type, boolean wasValid, long previousResponseTime,
+                       boolean isValid, long responseTime) {
+        int t = type.ordinal();
+        (isValid ? validChecks : invalidChecks)[t].increment();
+
+        if (wasValid) {
+            validNow[t].decrement();
+            latencies.remove(previousResponseTime);
+        }
+        if (isValid) {
+            validNow[t].increment();
+            latencies.record(responseTime);
+        }
+    }
+
+    /**
+     * Cuenta el proxy por país y anonimato según su estado actual, descontando cómo se contó
+     * antes. Se llama tras aplicar cada resultado y cuando cambian su país o su anonimato.
+     */
+    public void classify(ProxyInfo proxy) {
+        classified.compute(proxy, (key, previous) -> {
+            if (previous != null) {
+                validByAnonymity[previous.anonymity.ordinal()].decrement();
+                countryAdder(previous.country).decrement();
+            }
+            Classification current;
+            synchronized (proxy) {
+                current = proxy.isValid() ? new Classification(
+                        proxy.getCountry() != null ? proxy.getCountry() : "Unknown", proxy.getAnonymity()) : null;
+            }
+            if (current != null) {
+                validByAnonymity[current.anonymity.ordinal()].increment();
+                countryAdder(current.country).increment();
+            }
+            return current;
+        });
+    }
+
+    private LongAdder countryAdder(String country) {
+        return validByCountry.computeIfAbsent(country, key -> new LongAdder());
+    }
+
+    /**
+     * Proxies válidos en este momento
+     */
+    public long getValidCount() {
+        long valid = 0;
+        for (LongAdder adder : validNow) {
+            valid += adder.sum();
+        }
+        return valid;
+    }
+
+    public long getValidCount(ProxyInfo.ProxyType type) {
+        return validNow[type.ordinal()].sum();
+    }
+
+    public long getValidCount(ProxyInfo.AnonymityLevel anonymity) {
+        return validByAnonymity[anonymity.ordinal()].sum();
+    }
+
+    /**
+     * Proxies válidos por país (solo los países con alguno)
+     */
+    public Map<String, Long> getValidCountByCountry() {
+        Map<String, Long> counts = new HashMap<>();
+        for (Map.Entry<String, LongAdder> entry : validByCountry.entrySet()) {
+            long count = entry.getValue().sum();
+            if (count > 0) {
+                counts.put(entry.getKey(), count);
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * Verificaciones realizadas con el resultado indicado
+     */
+    public long getCheckCount(ProxyInfo.ProxyType type, boolean valid) {
+        return (valid ? validChecks : invalidChecks)[type.ordinal()].sum();
+    }
+
+    public long getCheckCount() {
+        long checks = 0;
+        for (int t = 0; t < TYPES.length; t++) {
+            checks += validChecks[t].sum() + invalidChecks[t].sum();
+        }
+        return checks;
+    }
+
+    /**
+     * Latencia media de los proxies válidos; -1 si no hay ninguno
+     */
+    public double getAverageResponseTime() {
+        return latencies.getCount() > 0 ? latencies.getMean() : -1;
+    }
+
+    /**
+     * Percentil de latencia de los proxies válidos; -1 si no hay ninguno
+     */
+    public long getResponseTimePercentile(double percentile) {
+        return latencies.getPercentile(percentile);
+    }
+
+    public void clear() {
+        for (int t = 0; t < TYPES.length; t++) {
+            validChecks[t].reset();
+            invalidChecks[t].reset();
+            validNow[t].reset();
+        }
+        for (LongAdder adder : validByAnonymity) {
+            adder.reset();
+        }
+        validByCountry.clear();
+        classified.clear();
+        latencies.clear();
+    }
+
+    private static LongAdder[] newAdders(int count) {
+        LongAdder[] adders = new LongAdder[count];
+        for (int i = 0; i < adders.length; i++) {
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+}
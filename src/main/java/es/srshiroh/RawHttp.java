@@ -0,0 +1,241 @@
+package es.srshiroh;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Utilidades mínimas de HTTP/1.1 sobre streams ya conectados (túneles SOCKS y CONNECT)
+ */
+final class RawHttp {
+    static final String USER_AGENT = "ProxyChecker/1.0";
+    static final int MAX_BODY = 64 * 1024;
+    static final int MAX_LINE = 8 * 1024;
+    static final int MAX_HEADERS = 64 * 1024; // Suma de las líneas de cabecera de una respuesta
+
+    /**
+     * Respuesta leída completa: estado, cabeceras (en minúsculas) y cuerpo
+     */
+    static final class Response {
+        final int status;
+        final Map<String, String> headers;
+        final byte[] body;
+        final boolean keepAlive;
+
+        Response(int status, Map<String, String> headers, byte[] body, boolean keepAlive) {
+            this.status = status;
+            this.headers = headers;
+            this.body = body;
+            this.keepAlive = keepAlive;
+        }
+
+        String bodyAsString() {
+            return new String(body, StandardCharsets.UTF_8);
+        }
+    }
+
+    private RawHttp() {
+    }
+
+    /**
+     * Envía un GET en forma de origen y devuelve el código de estado de la respuesta
+     */
+    static int get(InputStream in, OutputStream out, URI uri) throws IOException {
+        sendGet(out, uri);
+        return readStatus(in);
+    }
+
+    /**
+     * Igual que get, pero lee la respuesta completa con su cuerpo
+     */
+    static Response fetch(InputStream in, OutputStream out, URI uri) throws IOException {
+        sendGet(out, uri);
+        return readResponse(in);
+    }
+
+    private static void sendGet(OutputStream out, URI uri) throws IOException {
+        String path = uri.getRawPath() == null || uri.getRawPath().isEmpty() ? "/" : uri.getRawPath();
+        if (uri.getRawQuery() != null) {
+            path += "?" + uri.getRawQuery();
+        }
+
+        String request = "GET " + path + " HTTP/1.1\r\n" +
+                "Host: " + uri.getHost() + "\r\n" +
+                "User-Agent: " + USER_AGENT + "\r\n" +
+                "Connection: close\r\n" +
+                "\r\n";
+        out.write(request.getBytes(StandardCharsets.US_ASCII));
+        out.flush();
+    }
+
+    /**
+     * Lee la línea de estado ("HTTP/1.1 200 OK") y devuelve el código
+     */
+    static int readStatus(InputStream in) throws IOException {
+        String statusLine = readLine(in);
+        if (statusLine == null) {
+            throw new IOException("Respuesta vacía");
+        }
+        String[] parts = statusLine.split(" ", 3);
+        if (parts.length < 2 || !parts[0].startsWith("HTTP/")) {
+            throw new IOException("Línea de estado inválida: " + statusLine);
+        }
+        try {
+            return Integer.parseInt(parts[1]);
+        } catch (NumberFormatException e) {
+            throw new IOException("Código de estado inválido: " + statusLine);
+        }
+    }
+
+    /**
+     * Lee una respuesta completa dejando el stream listo para la siguiente en la misma conexión.
+     * Si el cuerpo no tiene longitud conocida o excede el límite, la conexión no es reutilizable.
+     */
+    static Response readResponse(InputStream in) throws IOException {
+        return readResponse(in, false);
+    }
+
+    /**
+     * Igual que readResponse, pero una respuesta 2xx a CONNECT no tiene cuerpo: empieza el túnel
+     */
+    static Response readConnectResponse(InputStream in) throws IOException {
+        return readResponse(in, true);
+    }
+
+    private static Response readResponse(InputStream in, boolean connect) throws IOException {
+        String statusLine = readLine(in);
+        if (statusLine == null) {
+            throw new EOFException("Respuesta vacía");
+        }
+        String[] parts = statusLine.split(" ", 3);
+        int status;
+        try {
+            status = parts.length >= 2 && parts[0].startsWith("HTTP/") ? Integer.parseInt(parts[1]) : -1;
+        } catch (NumberFormatException e) {
+            status = -1;
+        }
+        if (status < 0) {
+            throw new IOException("Línea de estado inválida: " + statusLine);
+        }
+
+        Map<String, String> headers = new HashMap<>();
+        String line;
+        int headerBytes = 0;
+        while ((line = readLine(in)) != null && !line.isEmpty()) {
+            headerBytes += line.length() + 2;
+            if (headerBytes > MAX_HEADERS) {
+                throw new IOException("Cabeceras demasiado grandes");
+            }
+            int colon = line.indexOf(':');
+            if (colon > 0) {
+                headers.merge(line.substring(0, colon).trim().toLowerCase(),
+                        line.substring(colon + 1).trim(), (a, b) -> a + ", " + b);
+            }
+        }
+
+        String connection = headers.getOrDefault("connection", headers.getOrDefault("proxy-connection", ""));
+        boolean keepAlive = statusLine.startsWith("HTTP/1.1")
+                ? !connection.equalsIgnoreCase("close")
+                : connection.equalsIgnoreCase("keep-alive");
+
+        byte[] body;
+        if (status / 100 == 1 || status == 204 || status == 304 || (connect && status / 100 == 2)) {
+            body = new byte[0];
+        } else if ("chunked".equalsIgnoreCase(headers.get("transfer-encoding"))) {
+            body = readChunked(in);
+        } else if (headers.containsKey("content-length")) {
+            long length = Long.parseLong(headers.get("content-length"));
+            if (length > MAX_BODY) {
+                body = readUpTo(in, MAX_BODY);
+                keepAlive = false;
+            } else {
+                body = readUpTo(in, (int) length);
+                if (body.length < length) {
+                    throw new EOFException("Cuerpo incompleto");
+                }
+            }
+        } else {
+            body = readUpTo(in, MAX_BODY);
+            keepAlive = false;
+        }
+
+        return new Response(status, headers, body, keepAlive);
+    }
+
+    private static byte[] readChunked(InputStream in) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        while (true) {
+            String sizeLine = readLine(in);
+            if (sizeLine == null) {
+                throw new EOFException("Cuerpo chunked incompleto");
+            }
+            int semicolon = sizeLine.indexOf(';');
+            int size = Integer.parseInt((semicolon >= 0 ? sizeLine.substring(0, semicolon) : sizeLine).trim(), 16);
+            if (size == 0) {
+                // Trailers hasta la línea vacía
+                String trailer;
+                int trailerBytes = 0;
+                while ((trailer = readLine(in)) != null && !trailer.isEmpty()) {
+                    trailerBytes += trailer.length() + 2;
+                    if (trailerBytes > MAX_HEADERS) {
+                        throw new IOException("Trailers demasiado grandes");
+                    }
+                }
+                return body.toByteArray();
+            }
+            if (body.size() + size > MAX_BODY) {
+                throw new IOException("Cuerpo demasiado grande");
+            }
+            byte[] chunk = readUpTo(in, size);
+            if (chunk.length < size) {
+                throw new EOFException("Cuerpo chunked incompleto");
+            }
+            body.write(chunk);
+            readLine(in); // CRLF tras el chunk
+        }
+    }
+
+    private static byte[] readUpTo(InputStream in, int length) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(Math.min(length, 8192));
+        byte[] buffer = new byte[Math.min(Math.max(length, 1), 8192)];
+        int remaining = length;
+        while (remaining > 0) {
+            int n = in.read(buffer, 0, Math.min(buffer.length, remaining));
+            if (n == -1) {
+                break;
+            }
+            out.write(buffer, 0, n);
+            remaining -= n;
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Lee una línea terminada en CRLF (o LF); null si el stream terminó.
+     * Falla si supera MAX_LINE bytes sin terminar.
+     */
+    static String readLine(InputStream in) throws IOException {
+        StringBuilder line = new StringBuilder();
+        int c;
+        while ((c = in.read()) != -1) {
+            if (c == '\n') {
+                int length = line.length();
+                if (length > 0 && line.charAt(length - 1) == '\r') {
+                    line.setLength(length - 1);
+                }
+                return line.toString();
+            }
+            if (line.length() >= MAX_LINE) {
+                throw new IOException("Línea demasiado larga");
+            }
+            line.append((char) c);
+        }
+        return line.length() > 0 ? line.toString() : null;
+    }
+}
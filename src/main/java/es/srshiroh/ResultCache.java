@@ -0,0 +1,291 @@
+package es.srshiroh;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Caché persistente de resultados, clave host:puerto:tipo. El archivo es de solo añadir y cada
+ * registro se escribe con una escritura posicional en el canal; al abrirlo se recorre una vez
+ * para construir el índice en memoria con el último resultado de cada proxy. La compactación
+ * reescribe solo los resultados vigentes y descarta los más antiguos que la retención. No se
+ * mapea en memoria: en Windows un archivo mapeado no se puede truncar ni reemplazar.
+ *
+ * Formato: cabecera "PXRC" + versión (int) y registros
+ * [longitud del host (short)][tipo][válido][error][puerto (int)][latencia (int)][fecha (long)][host].
+ * Una longitud 0 (archivos de versiones anteriores) o un registro incompleto marcan el final.
+ */
+public class ResultCache implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(ResultCache.class);
+
+    private static final int MAGIC = 0x50585243; // "PXRC"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 8;
+    private static final int RECORD_FIXED_SIZE = 2 + 1 + 1 + 1 + 4 + 4 + 8;
+
+    /**
+     * Último resultado conocido de un proxy
+     */
+    public static final class Entry {
+        private final boolean valid;
+        private final long responseTime;
+        private final ProxyInfo.ErrorType errorType;
+        private final long checkedAt;
+
+        Entry(boolean valid, long responseTime, ProxyInfo.ErrorType errorType, long checkedAt) {
+            this.valid = valid;
+            this.responseTime = responseTime;
+            this.errorType = errorType;
+            this.checkedAt = checkedAt;
+        }
+
+        public boolean isValid() {
+            return valid;
+        }
+
+        public long getResponseTime() {
+            return responseTime;
+        }
+
+        public ProxyInfo.ErrorType getErrorType() {
+            return errorType;
+        }
+
+        /**
+         * Momento de la verificación en milisegundos epoch
+         */
+        public long getCheckedAt() {
+            return checkedAt;
+        }
+
+        public boolean isFresh(long ttlMillis, long now) {
+            return now - checkedAt < ttlMillis;
+        }
+    }
+
+    private final Path file;
+    private final long retentionMillis;
+    private final Map<String, Entry> index = new ConcurrentHashMap<>();
+
+    // Escritura: protegidas por this
+    private FileChannel channel;
+    private long writePosition;
+    private long recordCount;
+
+    /**
+     * Abre (o crea) la caché. En la compactación se descartan los resultados más antiguos
+     * que retentionMillis.
+     */
+    public ResultCache(Path file, long retentionMillis) throws IOException {
+        this.file = file;
+        this.retentionMillis = retentionMillis;
+        open();
+        // Más registros obsoletos que vigentes: compactar antes de seguir añadiendo
+        if (recordCount > 10000 && recordCount > 2L * index.size()) {
+            compact();
+        }
+    }
+
+    private void open() throws IOException {
+        index.clear();
+        recordCount = 0;
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        if (channel.size() < HEADER_SIZE) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).putInt(VERSION);
+            header.flip();
+            channel.write(header, 0);
+            writePosition = HEADER_SIZE;
+        } else {
+            writePosition = load();
+            // Un registro a medias (o la región preasignada de versiones anteriores) se descarta
+            channel.truncate(writePosition);
+        }
+    }
+
+    /**
+     * Recorre el archivo y devuelve la posición donde terminan los datos
+     */
+    private long load() throws IOException {
+        channel.position(0);
+        InputStream raw = Channels.newInputStream(channel);
+        DataInputStream in = new DataInputStream(new BufferedInputStream(raw, 1 << 20));
+        if (in.readInt() != MAGIC) {
+            throw new IOException("No es un archivo de caché de resultados: " + file);
+        }
+        int version = in.readInt();
+        if (version != VERSION) {
+            throw new IOException("Versión de caché no soportada: " + version);
+        }
+
+        long position = HEADER_SIZE;
+        ProxyInfo.ProxyType[] types = ProxyInfo.ProxyType.values();
+        ProxyInfo.ErrorType[] errors = ProxyInfo.ErrorType.values();
+        byte[] hostBytes = new byte[256];
+        try {
+            while (true) {
+                int hostLength = in.readUnsignedShort();
+                if (hostLength == 0) {
+                    break;
+                }
+                int type = in.readUnsignedByte();
+                boolean valid = in.readBoolean();
+                int error = in.readUnsignedByte();
+                int port = in.readInt();
+                int responseTime = in.readInt();
+                long checkedAt = in.readLong();
+                if (hostBytes.length < hostLength) {
+                    hostBytes = new byte[hostLength];
+                }
+                in.readFully(hostBytes, 0, hostLength);
+                position += RECORD_FIXED_SIZE + hostLength;
+                recordCount++;
+
+                if (type >= types.length || error >= errors.length) {
+                    continue; // Registro de una versión con más tipos: se ignora
+                }
+                String host = new String(hostBytes, 0, hostLength, StandardCharsets.UTF_8);
+                index.merge(key(host, port, types[type]), new Entry(valid, responseTime, errors[error], checkedAt),
+                        (old, updated) -> updated.checkedAt >= old.checkedAt ? updated : old);
+            }
+        } catch (EOFException e) {
+            // Registro incompleto al final (cierre abrupto): se sobrescribe
+        }
+        return position;
+    }
+
+    private static String key(String host, int port, ProxyInfo.ProxyType type) {
+        return host + ":" + port + ":" + type.name();
+    }
+
+    public Entry get(ProxyInfo proxy) {
+        return index.get(key(proxy.getHost(), proxy.getPort(), proxy.getType()));
+    }
+
+    /**
+     * Añade el resultado actual del proxy
+     */
+    public void put(ProxyInfo proxy, boolean valid, long responseTime, ProxyInfo.ErrorType errorType, long checkedAt) {
+        ProxyInfo.ErrorType error = errorType != null ? errorType : ProxyInfo.ErrorType.NONE;
+        byte[] host = proxy.getHost().getBytes(StandardCharsets.UTF_8);
+        if (host.length == 0 || host.length > 0xFFFF) {
+            return;
+        }
+        synchronized (this) {
+            if (channel == null) {
+                return;
+            }
+            // Dentro del cerrojo para que una compactación en curso no lo pierda
+            index.put(key(proxy.getHost(), proxy.getPort(), proxy.getType()),
+                    new Entry(valid, responseTime, error, checkedAt));
+            ByteBuffer record = ByteBuffer.allocate(RECORD_FIXED_SIZE + host.length);
+            putRecord(record, host, proxy.getType(), valid, error, proxy.getPort(), responseTime, checkedAt);
+            record.flip();
+            try {
+                long position = writePosition;
+                while (record.hasRemaining()) {
+                    position += channel.write(record, position);
+                }
+                writePosition = position;
+                recordCount++;
+            } catch (IOException e) {
+                logger.error("No se pudo escribir en la caché de resultados {}: {}", file, e.getMessage());
+            }
+        }
+    }
+
+    public int size() {
+        return index.size();
+    }
+
+    /**
+     * Registros en el archivo, incluidos los obsoletos
+     */
+    public synchronized long getRecordCount() {
+        return recordCount;
+    }
+
+    /**
+     * Reescribe el archivo con el último resultado de cada proxy dentro de la retención
+     */
+    public synchronized void compact() throws IOException {
+        long before = recordCount;
+        long cutoff = System.currentTimeMillis() - retentionMillis;
+        Path temp = file.resolveSibling(file.getFileName() + ".compact");
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocate(1 << 20);
+            buffer.putInt(MAGIC).putInt(VERSION);
+            for (Map.Entry<String, Entry> item : index.entrySet()) {
+                Entry entry = item.getValue();
+                if (entry.checkedAt < cutoff) {
+                    continue;
+                }
+                // Clave host:puerto:tipo; el host puede ser IPv6 y contener ':'
+                String key = item.getKey();
+                int typeSeparator = key.lastIndexOf(':');
+                int portSeparator = key.lastIndexOf(':', typeSeparator - 1);
+                byte[] host = key.substring(0, portSeparator).getBytes(StandardCharsets.UTF_8);
+                if (buffer.remaining() < RECORD_FIXED_SIZE + host.length) {
+                    buffer.flip();
+                    while (buffer.hasRemaining()) {
+                        out.write(buffer);
+                    }
+                    buffer.clear();
+                }
+                putRecord(buffer, host, ProxyInfo.ProxyType.valueOf(key.substring(typeSeparator + 1)),
+                        entry.valid, entry.errorType, Integer.parseInt(key.substring(portSeparator + 1, typeSeparator)),
+                        entry.responseTime, entry.checkedAt);
+            }
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                out.write(buffer);
+            }
+            out.force(true);
+        }
+
+        closeChannel();
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        open();
+        logger.info("Caché de resultados compactada: {} → {} registros", before, recordCount);
+    }
+
+    private static void putRecord(ByteBuffer buffer, byte[] host, ProxyInfo.ProxyType type, boolean valid,
+                                  ProxyInfo.ErrorType error, int port, long responseTime, long checkedAt) {
+        buffer.putShort((short) host.length)
+                .put((byte) type.ordinal())
+                .put((byte) (valid ? 1 : 0))
+                .put((byte) error.ordinal())
+                .putInt(port)
+                .putInt((int) Math.min(Integer.MAX_VALUE, Math.max(0, responseTime)))
+                .putLong(checkedAt)
+                .put(host);
+    }
+
+    private void closeChannel() throws IOException {
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        closeChannel();
+    }
+}
@@ -0,0 +1,338 @@
+package es.srshiroh;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Instantánea binaria de un conjunto de resultados, pensada para guardar y recargar millones
+ * de proxies sin analizar texto. El archivo se lee de una vez en un búfer y cada registro se
+ * decodifica directamente en su posición al pedirlo; los nombres de host y las IPs de salida se
+ * guardan una sola vez en una tabla de cadenas. No se mapea: en Windows un archivo mapeado no se
+ * puede borrar ni reemplazar mientras viva el mapeo, y el mapeo no se libera hasta el GC.
+ *
+ * Formato (big-endian): cabecera de 32 bytes
+ * "PXSN" + versión (int) + registros (int) + cadenas (int) + posición de la tabla (long) + fecha (long),
+ * registros de 32 bytes
+ * [host (int)][IP de salida (int, -1 si no hay)][fecha (long, 0 si sin verificar)][latencia (int)]
+ * [puerto (char)][tipo][error][anonimato][flags: 1 válido, 2 HTTPS][país (2 bytes ASCII)][reservado (int)]
+ * y la tabla: cadenas + 1 posiciones (int) relativas a los datos, seguidas de los datos en UTF-8.
+ */
+public class ResultSnapshot {
+    private static final Logger logger = LoggerFactory.getLogger(ResultSnapshot.class);
+
+    private static final int MAGIC = 0x5058534E; // "PXSN"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 32;
+    private static final int RECORD_SIZE = 32;
+    private static final int FLAG_VALID = 1;
+    private static final int FLAG_HTTPS = 2;
+
+    private static final ProxyInfo.ProxyType[] TYPES = ProxyInfo.ProxyType.values();
+    private static final ProxyInfo.ErrorType[] ERRORS = ProxyInfo.ErrorType.values();
+    private static final ProxyInfo.AnonymityLevel[] LEVELS = ProxyInfo.AnonymityLevel.values();
+
+    private final Path file;
+    private final ByteBuffer buffer;
+    private final int recordCount;
+    private final int stringCount;
+    private final int stringTable;
+    private final long createdAt;
+    private final String[] strings; // Se decodifican al pedirlas
+
+    private ResultSnapshot(Path file, ByteBuffer buffer) throws IOException {
+        this.file = file;
+        this.buffer = buffer;
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException("No es una instantánea de resultados: " + file);
+        }
+        int version = buffer.getInt(4);
+        if (version != VERSION) {
+            throw new IOException("Versión de instantánea no soportada: " + version);
+        }
+        this.recordCount = buffer.getInt(8);
+        this.stringCount = buffer.getInt(12);
+        long table = buffer.getLong(16);
+        this.createdAt = buffer.getLong(24);
+        if (recordCount < 0 || stringCount < 0 || table != HEADER_SIZE + (long) recordCount * RECORD_SIZE
+                || table + 4L * (stringCount + 1) > buffer.capacity()) {
+            throw new IOException("Instantánea truncada o dañada: " + file);
+        }
+        this.stringTable = (int) table;
+        this.strings = new String[stringCount];
+    }
+
+    /**
+     * Lee la instantánea sin decodificarla: no se crea ningún objeto por registro hasta pedirlo
+     */
+    public static ResultSnapshot open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Instantánea demasiado grande para leerla: " + file);
+            }
+            ByteBuffer buffer = ByteBuffer.allocate((int) size);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, buffer.position()) < 0) {
+                    throw new IOException("Instantánea truncada o dañada: " + file);
+                }
+            }
+            buffer.clear();
+            return new ResultSnapshot(file, buffer);
+        }
+    }
+
+    /**
+     * Comprueba la firma del archivo
+     */
+    public static boolean isSnapshot(Path file) {
+        try (InputStream raw = Files.newInputStream(file); DataInputStream in = new DataInputStream(raw)) {
+            return in.readInt() == MAGIC;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    public int size() {
+        return recordCount;
+    }
+
+    /**
+     * Momento en que se escribió, en milisegundos epoch
+     */
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * Reconstruye el proxy del registro con su último resultado. Sin verificar (convertido de
+     * texto) queda con getLastChecked() null.
+     */
+    public ProxyInfo get(int index) {
+        if (index < 0 || index >= recordCount) {
+            throw new IndexOutOfBoundsException("Registro " + index + " de " + recordCount);
+        }
+        int offset = HEADER_SIZE + index * RECORD_SIZE;
+        int type = buffer.get(offset + 22) & 0xFF;
+        ProxyInfo proxy = new ProxyInfo(string(buffer.getInt(offset)), buffer.getChar(offset + 20),
+                type < TYPES.length ? TYPES[type] : ProxyInfo.ProxyType.HTTP);
+
+        long checkedAt = buffer.getLong(offset + 8);
+        if (checkedAt != 0) {
+            int flags = buffer.get(offset + 25);
+            int error = buffer.get(offset + 23) & 0xFF;
+            proxy.setValid((flags & FLAG_VALID) != 0);
+            proxy.setHttpsSupported((flags & FLAG_HTTPS) != 0);
+            proxy.setResponseTime(buffer.getInt(offset + 16));
+            proxy.setErrorType(error < ERRORS.length ? ERRORS[error] : ProxyInfo.ErrorType.OTHER);
+            if (!proxy.isValid()) {
+                proxy.setErrorMessage("En instantánea: " + proxy.getErrorType());
+            }
+            proxy.setLastChecked(LocalDateTime.ofInstant(Instant.ofEpochMilli(checkedAt), ZoneId.systemDefault()));
+        }
+        int level = buffer.get(offset + 24) & 0xFF;
+        proxy.setAnonymity(level < LEVELS.length ? LEVELS[level] : ProxyInfo.AnonymityLevel.UNKNOWN);
+        int exitIp = buffer.getInt(offset + 4);
+        if (exitIp >= 0) {
+            proxy.setExitIp(string(exitIp));
+        }
+        byte first = buffer.get(offset + 26);
+        if (first != 0) {
+            proxy.setCountry(new String(new char[]{(char) first, (char) buffer.get(offset + 27)}));
+        }
+        return proxy;
+    }
+
+    private String string(int index) {
+        if (index < 0 || index >= stringCount) {
+            throw new IllegalStateException("Cadena " + index + " fuera de la tabla en " + file);
+        }
+        String value = strings[index];
+        if (value == null) {
+            int data = stringTable + 4 * (stringCount + 1);
+            int start = buffer.getInt(stringTable + 4 * index);
+            int end = buffer.getInt(stringTable + 4 * (index + 1));
+            byte[] bytes = new byte[end - start];
+            ByteBuffer view = buffer.duplicate();
+            view.position(data + start);
+            view.get(bytes);
+            value = new String(bytes, StandardCharsets.UTF_8);
+            strings[index] = value; // Carrera benigna: dos hilos decodifican la misma cadena
+        }
+        return value;
+    }
+
+    /**
+     * Escribe los proxies en un archivo temporal y lo sustituye de forma atómica. Los recorre
+     * una sola vez, así que pueden generarse al vuelo. Devuelve el número de registros.
+     */
+    public static int write(Path file, Iterable<ProxyInfo> proxies) throws IOException {
+        Map<String, Integer> stringIndex = new HashMap<>();
+        List<byte[]> strings = new ArrayList<>();
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        int count = 0;
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocate(1 << 20);
+            buffer.position(HEADER_SIZE); // La cabecera se escribe al final, con los totales
+            for (ProxyInfo proxy : proxies) {
+                if (buffer.remaining() < RECORD_SIZE) {
+                    drain(out, buffer);
+                }
+                synchronized (proxy) {
+                    int host = intern(proxy.getHost(), stringIndex, strings);
+                    int exitIp = proxy.getExitIp() != null ? intern(proxy.getExitIp(), stringIndex, strings) : -1;
+                    LocalDateTime checked = proxy.getLastChecked();
+                    String country = proxy.getCountry();
+                    boolean hasCountry = country != null && country.length() == 2
+                            && country.charAt(0) < 0x80 && country.charAt(1) < 0x80;
+                    buffer.putInt(host)
+                            .putInt(exitIp)
+                            .putLong(checked != null ? checked.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli() : 0)
+                            .putInt((int) Math.min(Integer.MAX_VALUE, Math.max(-1, proxy.getResponseTime())))
+                            .putChar((char) proxy.getPort())
+                            .put((byte) proxy.getType().ordinal())
+                            .put((byte) proxy.getErrorType().ordinal())
+                            .put((byte) proxy.getAnonymity().ordinal())
+                            .put((byte) ((proxy.isValid() ? FLAG_VALID : 0) | (proxy.isHttpsSupported() ? FLAG_HTTPS : 0)))
+                            .put((byte) (hasCountry ? country.charAt(0) : 0))
+                            .put((byte) (hasCountry ? country.charAt(1) : 0))
+                            .putInt(0);
+                }
+                count++;
+            }
+
+            long table = HEADER_SIZE + (long) count * RECORD_SIZE;
+            int position = 0;
+            for (int i = 0; i <= strings.size(); i++) {
+                if (buffer.remaining() < 4) {
+                    drain(out, buffer);
+                }
+                buffer.putInt(position);
+                if (i < strings.size()) {
+                    position += strings.get(i).length;
+                }
+            }
+            for (byte[] value : strings) {
+                if (buffer.remaining() < value.length) {
+                    drain(out, buffer);
+                }
+                buffer.put(value);
+            }
+            drain(out, buffer);
+            if (table + 4L * (strings.size() + 1) + position > Integer.MAX_VALUE) {
+                throw new IOException("Demasiados resultados para una instantánea: " + count);
+            }
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE)
+                    .putInt(MAGIC).putInt(VERSION).putInt(count).putInt(strings.size())
+                    .putLong(table).putLong(System.currentTimeMillis());
+            header.flip();
+            while (header.hasRemaining()) {
+                out.write(header, HEADER_SIZE - header.remaining());
+            }
+            out.force(true);
+        } catch (IOException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        logger.info("Instantánea guardada en {}: {} resultados, {} cadenas", file, count, strings.size());
+        return count;
+    }
+
+    private static int intern(String value, Map<String, Integer> index, List<byte[]> strings) {
+        Integer existing = index.get(value);
+        if (existing != null) {
+            return existing;
+        }
+        int id = strings.size();
+        index.put(value, id);
+        strings.add(value.getBytes(StandardCharsets.UTF_8));
+        return id;
+    }
+
+    /**
+     * Vacía el búfer al canal; el primer vaciado empieza tras el hueco de la cabecera
+     */
+    private static void drain(FileChannel out, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        if (out.position() == 0) {
+            out.position(HEADER_SIZE);
+            buffer.position(HEADER_SIZE);
+        }
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Convierte una lista en el formato de texto de las exportaciones (host:puerto:tipo) a una
+     * instantánea. El texto no lleva resultados: los registros quedan sin verificar.
+     */
+    public static int fromText(Path text, Path snapshot) throws IOException {
+        List<ProxyInfo> proxies = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(text, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                try {
+                    proxies.add(ProxyInfo.fromString(line));
+                } catch (IllegalArgumentException e) {
+                    logger.warn("Línea ignorada en {}: {} - {}", text, line, e.getMessage());
+                }
+            }
+        }
+        return write(snapshot, proxies);
+    }
+
+    /**
+     * Convierte una instantánea al formato de texto de las exportaciones. Como en ellas, se
+     * omiten los proxies verificados como no válidos; los que no se verificaron se conservan.
+     */
+    public static int toText(Path snapshot, Path text) throws IOException {
+        ResultSnapshot source = open(snapshot);
+        int written = 0;
+        try (BufferedWriter writer = Files.newBufferedWriter(text, StandardCharsets.UTF_8)) {
+            writer.write("# Proxies exportados de " + snapshot.getFileName() + " el "
+                    + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss")) + "\n\n");
+            for (int i = 0; i < source.size(); i++) {
+                ProxyInfo proxy = source.get(i);
+                if (proxy.getLastChecked() != null && !proxy.isValid()) {
+                    continue;
+                }
+                writer.write(proxy.toFileFormat() + "\n");
+                written++;
+            }
+        }
+        return written;
+    }
+}
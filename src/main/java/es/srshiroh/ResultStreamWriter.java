@@ -0,0 +1,351 @@
+package es.srshiroh;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.ZoneId;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Exportación en streaming: cada resultado se escribe en cuanto se produce, en NDJSON (un objeto
+ * por línea, se puede seguir con tail -F) o como un array JSON (archivos .json, válido al cerrarse).
+ * Usa el JsonGenerator de Jackson sobre un canal con búfer, que se vacía periódicamente. Al
+ * superar el tamaño máximo el archivo activo se renombra a nombre.N.ext y se abre otro vacío.
+ * Con mark() se obtiene la posición consistente de un checkpoint, sync() la lleva al disco sin
+ * bloquear a quien escribe, y con resume() se continúa desde ella descartando lo escrito después.
+ */
+public class ResultStreamWriter implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(ResultStreamWriter.class);
+
+    public static final long DEFAULT_MAX_BYTES = 256L * 1024 * 1024;
+    public static final long DEFAULT_FLUSH_MILLIS = 1000;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final JsonFactory JSON = new JsonFactory();
+
+    public enum Format {
+        NDJSON,
+        JSON;
+
+        static Format forFile(Path file) {
+            return file.getFileName().toString().toLowerCase().endsWith(".json") ? JSON : NDJSON;
+        }
+    }
+
+    /**
+     * Punto de la salida guardado en un checkpoint: última rotación y bytes del archivo activo
+     */
+    public static final class Position {
+        private final int rotation;
+        private final long bytes;
+
+        public Position(int rotation, long bytes) {
+            this.rotation = rotation;
+            this.bytes = bytes;
+        }
+
+        public int getRotation() {
+            return rotation;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+    }
+
+    private final Path file;
+    private final Format format;
+    private final long maxBytes;
+    private final long flushMillis;
+    private final Thread flusher;
+
+    private FileChannel channel;
+    private FileChannel marked; // Canal del último mark(), pendiente de sync()
+    private CountingOutputStream counter;
+    private JsonGenerator generator;
+    private long records;
+    private long fileRecords; // En el archivo activo: decide si hace falta la coma en JSON
+    private int rotations;
+    private int lastRotation; // Índice N del último nombre.N.ext creado
+    private boolean dirty;
+    private volatile boolean closed;
+
+    public ResultStreamWriter(Path file) throws IOException {
+        this(file, Format.forFile(file), DEFAULT_MAX_BYTES, DEFAULT_FLUSH_MILLIS);
+    }
+
+    public ResultStreamWriter(Path file, Format format, long maxBytes, long flushMillis) throws IOException {
+        this(file, format, maxBytes, flushMillis, null);
+    }
+
+    private ResultStreamWriter(Path file, Format format, long maxBytes, long flushMillis, Position resumeAt)
+            throws IOException {
+        this.file = file.toAbsolutePath();
+        this.format = format;
+        this.maxBytes = Math.max(4096, maxBytes);
+        this.flushMillis = Math.max(10, flushMillis);
+        synchronized (this) {
+            if (resumeAt != null) {
+                reopen(resumeAt);
+            } else {
+                // Un archivo anterior no se mezcla con esta ejecución: se archiva como una rotación
+                if (Files.exists(this.file) && Files.size(this.file) > 0) {
+                    Files.move(this.file, nextRotatedPath(), StandardCopyOption.ATOMIC_MOVE);
+                }
+                open(0);
+            }
+        }
+        this.flusher = new Thread(this::flushLoop, "result-stream-flush");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    /**
+     * Continúa una salida en el punto de un checkpoint: lo escrito después (incluidas las
+     * rotaciones posteriores) se descarta para que los resultados repetidos no salgan dos veces
+     */
+    public static ResultStreamWriter resume(Path file, Format format, long maxBytes, long flushMillis,
+                                            Position position) throws IOException {
+        return new ResultStreamWriter(file, format, maxBytes, flushMillis, position);
+    }
+
+    private void reopen(Position position) throws IOException {
+        lastRotation = position.getRotation();
+        // El archivo activo del checkpoint pudo rotarse después: es el siguiente índice
+        Path rotated = rotatedPath(lastRotation + 1);
+        if (Files.exists(rotated)) {
+            Files.move(rotated, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            for (int index = lastRotation + 2; Files.deleteIfExists(rotatedPath(index)); index++) {
+                logger.debug("Descartada la rotación {} posterior al checkpoint", index);
+            }
+        }
+        long size = Files.exists(file) ? Files.size(file) : 0;
+        if (size < position.getBytes()) {
+            throw new IOException("La salida " + file + " es más corta que en el checkpoint ("
+                    + size + " < " + position.getBytes() + " bytes)");
+        }
+        open(position.getBytes());
+    }
+
+    /**
+     * Abre el archivo activo conservando sus primeros keep bytes (0 para empezar uno nuevo)
+     */
+    private void open(long keep) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        channel.truncate(keep);
+        channel.position(keep);
+        counter = new CountingOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE));
+        counter.count = keep;
+        generator = JSON.createGenerator(counter, JsonEncoding.UTF8);
+        // Los separadores los pone cada registro: NDJSON necesita un salto de línea y el array
+        // JSON se enmarca a mano para poder continuarlo tras un checkpoint
+        generator.setRootValueSeparator(null);
+        fileRecords = keep > 1 ? 1 : 0;
+        if (format == Format.JSON && keep == 0) {
+            generator.writeRaw('[');
+        }
+    }
+
+    /**
+     * Escribe el resultado actual del proxy; rota si el archivo llega al tamaño máximo
+     */
+    public synchronized void write(ProxyInfo proxy) throws IOException {
+        if (closed) {
+            return;
+        }
+        if (format == Format.JSON && fileRecords > 0) {
+            generator.writeRaw(',');
+        }
+        writeRecord(generator, proxy);
+        if (format == Format.NDJSON) {
+            generator.writeRaw('\n');
+        }
+        records++;
+        fileRecords++;
+        dirty = true;
+        if (counter.count + generator.getOutputBuffered() >= maxBytes) {
+            rotate();
+        }
+    }
+
+    /**
+     * Un resultado como objeto JSON; lo comparten la exportación y el modo servidor
+     */
+    static void writeRecord(JsonGenerator generator, ProxyInfo proxy) throws IOException {
+        synchronized (proxy) {
+            generator.writeStartObject();
+            generator.writeStringField("proxy", proxy.getAddress());
+            generator.writeStringField("type", proxy.getType().name());
+            generator.writeBooleanField("valid", proxy.isValid());
+            generator.writeNumberField("responseTime", proxy.getResponseTime());
+            generator.writeStringField("error", proxy.getErrorType().name());
+            generator.writeStringField("country", proxy.getCountry());
+            generator.writeStringField("anonymity", proxy.getAnonymity().name());
+            if (proxy.getExitIp() != null) {
+                generator.writeStringField("exitIp", proxy.getExitIp());
+            }
+            if (proxy.getLastChecked() != null) {
+                generator.writeNumberField("checkedAt",
+                        proxy.getLastChecked().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli());
+            }
+            generator.writeEndObject();
+        }
+    }
+
+    private void rotate() throws IOException {
+        if (marked == channel) {
+            // Lo marcado ya no podrá sincronizarse desde fuera del cerrojo: se hace aquí
+            generator.flush();
+            channel.force(false);
+            marked = null;
+        }
+        finish();
+        Path rotated = nextRotatedPath();
+        Files.move(file, rotated, StandardCopyOption.ATOMIC_MOVE);
+        rotations++;
+        logger.info("Resultados rotados a {}", rotated.getFileName());
+        open(0);
+    }
+
+    /**
+     * Cierra el archivo activo dejándolo completo (el array JSON cerrado)
+     */
+    private void finish() throws IOException {
+        if (format == Format.JSON) {
+            generator.writeRaw(']');
+        }
+        generator.close(); // También cierra el contador, el búfer y el canal
+    }
+
+    private Path nextRotatedPath() {
+        for (int index = lastRotation + 1; ; index++) {
+            Path candidate = rotatedPath(index);
+            if (!Files.exists(candidate)) {
+                lastRotation = index;
+                return candidate;
+            }
+        }
+    }
+
+    private Path rotatedPath(int index) {
+        String name = file.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        String stem = dot > 0 ? name.substring(0, dot) : name;
+        String extension = dot > 0 ? name.substring(dot) : "";
+        return file.resolveSibling(stem + "." + index + extension);
+    }
+
+    public synchronized void flush() throws IOException {
+        if (closed || !dirty) {
+            return;
+        }
+        generator.flush();
+        dirty = false;
+    }
+
+    /**
+     * Entrega lo escrito al sistema y devuelve la posición de la salida. Mientras se tiene el
+     * cerrojo del escritor no se escribe ningún resultado, lo que permite tomar el resto del
+     * checkpoint de forma consistente. Hasta sync() la posición puede no estar en el disco.
+     */
+    public synchronized Position mark() throws IOException {
+        if (closed) {
+            throw new IOException("Salida cerrada: " + file);
+        }
+        generator.flush();
+        dirty = false;
+        marked = channel;
+        return new Position(lastRotation, counter.count);
+    }
+
+    /**
+     * Lleva al disco lo entregado hasta el último mark(). Se llama sin el cerrojo del escritor:
+     * los workers siguen escribiendo mientras dura el fsync.
+     */
+    public void sync() throws IOException {
+        FileChannel target;
+        synchronized (this) {
+            target = marked;
+            marked = null;
+        }
+        if (target == null) {
+            return; // Rotado o cerrado: ya se sincronizó allí
+        }
+        try {
+            target.force(false);
+        } catch (ClosedChannelException e) {
+            // Cerrado entre medias por close(), que ya lo dejó completo
+        }
+    }
+
+    private void flushLoop() {
+        while (!closed) {
+            LockSupport.parkNanos(flushMillis * 1_000_000L);
+            try {
+                flush();
+            } catch (IOException e) {
+                logger.warn("Error vaciando {}: {}", file.getFileName(), e.getMessage());
+            }
+        }
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    public synchronized long getRecordCount() {
+        return records;
+    }
+
+    public synchronized int getRotationCount() {
+        return rotations;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        LockSupport.unpark(flusher);
+        marked = null;
+        finish();
+    }
+
+    /**
+     * Cuenta los bytes que el generador entrega para saber el tamaño sin preguntar al canal
+     */
+    private static final class CountingOutputStream extends FilterOutputStream {
+        long count;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+}
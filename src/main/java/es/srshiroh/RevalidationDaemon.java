@@ -0,0 +1,167 @@
+package es.srshiroh;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Revalidación continua del pool de proxies válidos. Cada proxy tiene su propio intervalo con
+ * jitter: los rápidos y estables se revisan cada vez menos (hasta 4 veces el intervalo base) y
+ * los que fallan cada vez más a menudo (hasta una cuarta parte). Tras N fallos consecutivos el
+ * proxy se expulsa del pool. Los plazos se guardan en una rueda de temporizadores para repartir
+ * la carga en el tiempo en lugar de revisar todo a la vez.
+ */
+class RevalidationDaemon {
+    private static final Logger logger = LoggerFactory.getLogger(RevalidationDaemon.class);
+
+    private static final long TICK_MILLIS = 1000;
+    private static final int WHEEL_SLOTS = 4096;
+    private static final double JITTER = 0.2;          // ±20% sobre el intervalo
+    private static final double STABLE_GROWTH = 1.5;   // Rápido y sin fallos
+    private static final double SLOW_GROWTH = 1.2;     // Válido pero lento
+    private static final double FAILURE_SHRINK = 0.5;
+
+    /**
+     * Estado de revalidación de un proxy
+     */
+    private static final class Schedule {
+        long interval;
+        int failures;
+        boolean queued; // En la rueda esperando su turno
+    }
+
+    private final ProxyManager manager;
+    private final long baseInterval;
+    private final long minInterval;
+    private final long maxInterval;
+    private final int maxFailures;
+    private final TimerWheel<ProxyInfo> wheel = new TimerWheel<>(TICK_MILLIS, WHEEL_SLOTS);
+    private final Map<ProxyInfo, Schedule> schedules = new ConcurrentHashMap<>();
+    private final Thread thread;
+    private volatile boolean running = true;
+
+    RevalidationDaemon(ProxyManager manager, long baseInterval, int maxFailures) {
+        this.manager = manager;
+        this.baseInterval = Math.max(TICK_MILLIS, baseInterval);
+        this.minInterval = Math.max(TICK_MILLIS, this.baseInterval / 4);
+        this.maxInterval = this.baseInterval * 4;
+        this.maxFailures = Math.max(1, maxFailures);
+        this.thread = new Thread(this::loop, "revalidation-daemon");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Empieza a revisar un proxy del pool. El primer plazo es aleatorio dentro del intervalo
+     * base para que un pool cargado de golpe no se revise de golpe.
+     */
+    void track(ProxyInfo proxy) {
+        Schedule schedule = new Schedule();
+        schedule.interval = baseInterval;
+        schedule.queued = true;
+        if (schedules.putIfAbsent(proxy, schedule) == null) {
+            wheel.schedule(proxy, ThreadLocalRandom.current().nextLong(baseInterval));
+        }
+    }
+
+    /**
+     * Resultado de cualquier verificación de un proxy seguido: ajusta su intervalo y, si no está
+     * ya en la rueda (p. ej. revalidado a mano), lo reprograma
+     */
+    void onResult(ProxyInfo proxy, boolean valid, long responseTime, long fastThreshold) {
+        Schedule schedule = schedules.get(proxy);
+        if (schedule == null) {
+            return;
+        }
+        long delay;
+        synchronized (schedule) {
+            if (valid) {
+                boolean fast = fastThreshold < 0 || responseTime <= fastThreshold;
+                double growth = schedule.failures == 0 && fast ? STABLE_GROWTH : SLOW_GROWTH;
+                schedule.failures = 0;
+                schedule.interval = Math.min(maxInterval, (long) (schedule.interval * growth));
+            } else {
+                schedule.failures++;
+                if (schedule.failures >= maxFailures) {
+                    schedules.remove(proxy);
+                    if (manager.evict(proxy, schedule.failures)) {
+                        return;
+                    }
+                    // Una verificación válida terminó entretanto: sigue en el pool
+                    schedules.putIfAbsent(proxy, schedule);
+                }
+                schedule.interval = Math.max(minInterval, (long) (schedule.interval * FAILURE_SHRINK));
+            }
+            if (schedule.queued) {
+                return;
+            }
+            delay = jitter(schedule.interval);
+            schedule.queued = true;
+        }
+        wheel.schedule(proxy, delay);
+    }
+
+    private static long jitter(long interval) {
+        double factor = 1 + (ThreadLocalRandom.current().nextDouble() * 2 - 1) * JITTER;
+        return (long) (interval * factor);
+    }
+
+    private void loop() {
+        while (running) {
+            LockSupport.parkNanos(TICK_MILLIS * 1_000_000L);
+            List<ProxyInfo> due = wheel.advance();
+            for (ProxyInfo proxy : due) {
+                Schedule schedule = schedules.get(proxy);
+                if (schedule == null || !running) {
+                    continue; // Expulsado o detenido mientras esperaba
+                }
+                synchronized (schedule) {
+                    schedule.queued = false;
+                }
+                try {
+                    if (!manager.revalidate(proxy)) {
+                        running = false;
+                    }
+                } catch (InterruptedException e) {
+                    running = false;
+                    Thread.currentThread().interrupt();
+                } catch (RuntimeException e) {
+                    logger.error("Error revalidando {}", proxy.getAddress(), e);
+                    // Sin resultado no se reprogramaría: reintentar en el intervalo mínimo
+                    synchronized (schedule) {
+                        schedule.queued = true;
+                    }
+                    wheel.schedule(proxy, minInterval);
+                }
+            }
+        }
+        wheel.clear();
+        schedules.clear();
+    }
+
+    int getTrackedCount() {
+        return schedules.size();
+    }
+
+    /**
+     * Proxies esperando su próxima revisión
+     */
+    int getScheduledCount() {
+        return wheel.size();
+    }
+
+    boolean isRunning() {
+        return running && thread.isAlive();
+    }
+
+    void stop() {
+        running = false;
+        LockSupport.unpark(thread);
+        thread.interrupt();
+    }
+}
@@ -0,0 +1,591 @@
+package es.srshiroh;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Properties;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Checkpoints periódicos de una verificación larga para poder reanudarla.
+ * Los workers solo anotan cada entrada al ponerla en cola y al terminarla; un hilo propio
+ * añade cada cierto tiempo los resultados terminados desde el checkpoint anterior a un diario
+ * de solo añadir, guarda las entradas pendientes en una instantánea pequeña y escribe al lado
+ * un archivo de propiedades con la lista de entrada, la marca de agua (offset y líneas hasta
+ * los que todo se leyó), la longitud confirmada del diario y la posición de la salida en
+ * streaming. Cuando el diario crece más que la instantánea base, ambos se funden en una base
+ * nueva. Al reanudar se restauran los resultados, se vuelven a encolar las pendientes y la
+ * lectura sigue desde la marca de agua.
+ *
+ * Archivos, junto al de propiedades: nombre.B.pxs (base), nombre.B.journal (diario de la base B)
+ * y nombre.S.pending.pxs (pendientes del checkpoint S).
+ */
+public class RunCheckpoint {
+    private static final Logger logger = LoggerFactory.getLogger(RunCheckpoint.class);
+
+    public static final long DEFAULT_INTERVAL = TimeUnit.SECONDS.toMillis(60);
+
+    private static final int JOURNAL_MAGIC = 0x50584A4E; // "PXJN"
+    private static final int JOURNAL_VERSION = 1;
+    private static final long COMPACT_MIN_BYTES = 4L * 1024 * 1024;
+    private static final int WRITE_CHUNK = 1 << 20;
+
+    private static final ProxyInfo.ProxyType[] TYPES = ProxyInfo.ProxyType.values();
+    private static final ProxyInfo.ErrorType[] ERRORS = ProxyInfo.ErrorType.values();
+    private static final ProxyInfo.AnonymityLevel[] LEVELS = ProxyInfo.AnonymityLevel.values();
+
+    private final Path file;
+    private final Path source;
+    private final long interval;
+
+    // Leídas y aún sin resultado
+    private final Set<ProxyInfo> pending = ConcurrentHashMap.newKeySet();
+    // Terminadas que aún no están en el diario; completedCount cuenta todas las añadidas y
+    // journaled las ya sacadas de la cola, así que la cola solo crece entre dos checkpoints
+    private final Queue<ProxyInfo> completed = new ConcurrentLinkedQueue<>();
+    private final Object completedLock = new Object();
+    private long completedCount;
+    private long journaled;
+    private final List<ProxyInfo> unwritten = new ArrayList<>(); // Sacadas, sin confirmar en el diario
+
+    private volatile long[] watermark = {0, 0}; // Offset y líneas, siempre juntos
+    private volatile ResultStreamWriter stream;
+    private int sequence;
+    private int base;
+    private int baseRecords;
+    private long journalBytes;
+    private long journalRecords;
+    private final List<Path> obsolete = new ArrayList<>(); // Se borran tras el próximo checkpoint
+    private Thread writer;
+    private volatile boolean stopped;
+
+    /**
+     * Datos de un checkpoint leído del disco
+     */
+    public static final class State {
+        private final Path file;
+        private final Path source;
+        private final long watermark;
+        private final long lines;
+        private final int sequence;
+        private final int base;
+        private final int baseRecords;
+        private final long journalBytes;
+        private final long journalRecords;
+        private final int pendingRecords;
+        private final ResultStreamWriter.Position streamPosition;
+        private final String streamFile;
+
+        State(Path file, Properties properties) throws IOException {
+            this.file = file;
+            this.source = Path.of(properties.getProperty("source"));
+            this.watermark = Long.parseLong(properties.getProperty("watermark"));
+            this.lines = Long.parseLong(properties.getProperty("lines"));
+            this.sequence = Integer.parseInt(properties.getProperty("sequence"));
+            this.base = Integer.parseInt(properties.getProperty("base"));
+            this.baseRecords = Integer.parseInt(properties.getProperty("base.records"));
+            this.journalBytes = Long.parseLong(properties.getProperty("journal.bytes"));
+            this.journalRecords = Long.parseLong(properties.getProperty("journal.records"));
+            this.pendingRecords = Integer.parseInt(properties.getProperty("pending"));
+            this.streamFile = properties.getProperty("stream");
+            this.streamPosition = streamFile == null ? null : new ResultStreamWriter.Position(
+                    Integer.parseInt(properties.getProperty("stream.rotation")),
+                    Long.parseLong(properties.getProperty("stream.bytes")));
+        }
+
+        public Path getSource() {
+            return source;
+        }
+
+        public long getWatermark() {
+            return watermark;
+        }
+
+        public long getLines() {
+            return lines;
+        }
+
+        /**
+         * Resultados guardados más entradas pendientes
+         */
+        public long getResultCount() {
+            return baseRecords + journalRecords + pendingRecords;
+        }
+
+        /**
+         * Recorre los resultados terminados y, sin verificar, las entradas que estaban pendientes.
+         * Una entrada puede aparecer dos veces si terminó mientras se escribía el checkpoint:
+         * primero con su resultado.
+         */
+        public void forEachResult(Consumer<ProxyInfo> action) throws IOException {
+            try (ResultReader reader = new ResultReader(baseRecords > 0 ? ResultSnapshot.open(basePath(file, base)) : null,
+                    journalPath(file, base), journalRecords, ResultSnapshot.open(pendingPath(file, sequence)))) {
+                while (reader.hasNext()) {
+                    action.accept(reader.next());
+                }
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        }
+
+        /**
+         * Archivo de la salida en streaming del checkpoint, o null si no había
+         */
+        public String getStreamFile() {
+            return streamFile;
+        }
+
+        public ResultStreamWriter.Position getStreamPosition() {
+            return streamPosition;
+        }
+    }
+
+    public RunCheckpoint(Path file, Path source, long intervalMillis) {
+        this.file = file.toAbsolutePath();
+        this.source = source.toAbsolutePath();
+        this.interval = Math.max(1000, intervalMillis);
+    }
+
+    /**
+     * Continúa la numeración, la base, el diario y la marca de agua de un checkpoint leído con load()
+     */
+    void continueFrom(State state) {
+        this.sequence = state.sequence;
+        this.base = state.base;
+        this.baseRecords = state.baseRecords;
+        this.journalBytes = state.journalBytes;
+        this.journalRecords = state.journalRecords;
+        this.watermark = new long[]{state.watermark, state.lines};
+    }
+
+    /**
+     * Salida en streaming cuya posición se guarda con cada checkpoint (null si no hay)
+     */
+    public void setStream(ResultStreamWriter stream) {
+        this.stream = stream;
+    }
+
+    public void start() {
+        if (sequence == 0 && Files.exists(file)) {
+            // Checkpoint de una ejecución anterior: sus archivos se borran con el primero nuevo
+            // y la numeración sigue para no pisarlos antes
+            Properties previous = new Properties();
+            try (Reader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                previous.load(in);
+                sequence = Integer.parseInt(previous.getProperty("sequence", "0"));
+                int previousBase = Integer.parseInt(previous.getProperty("base", "0"));
+                obsolete.add(basePath(file, previousBase));
+                obsolete.add(journalPath(file, previousBase));
+                base = previousBase + 1;
+            } catch (IOException | NumberFormatException e) {
+                logger.debug("Checkpoint anterior ilegible {}: {}", file, e.getMessage());
+            }
+        }
+        writer = new Thread(this::writeLoop, "checkpoint-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Entrada leída de la lista que va a verificarse
+     */
+    public void onEnqueued(ProxyInfo proxy) {
+        pending.add(proxy);
+    }
+
+    /**
+     * Primer resultado de una entrada. Con salida en streaming debe llamarse con el cerrojo
+     * del escritor tomado, justo tras escribir el resultado.
+     */
+    public void onCompleted(ProxyInfo proxy) {
+        synchronized (completedLock) {
+            completed.add(proxy);
+            completedCount++;
+        }
+        // Después de contarla: un checkpoint la ve en una de las dos partes, o en ambas
+        pending.remove(proxy);
+    }
+
+    /**
+     * La lectura de la lista llegó hasta offset sin dejar entradas atrás
+     */
+    public void onProgress(long offset, long lines) {
+        watermark = new long[]{offset, lines};
+    }
+
+    public long getWatermark() {
+        return watermark[0];
+    }
+
+    private void writeLoop() {
+        while (!stopped) {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(interval));
+            if (stopped) {
+                break;
+            }
+            try {
+                write();
+            } catch (IOException | RuntimeException e) {
+                logger.warn("No se pudo escribir el checkpoint {}: {}", file.getFileName(), e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Escribe un checkpoint. El orden de captura importa: marca de agua, pendientes y por
+     * último el número de terminadas (junto con la posición de la salida), de modo que toda
+     * entrada anterior a la marca quede en alguna de las dos listas. Solo se escriben las
+     * terminadas desde el checkpoint anterior.
+     */
+    public synchronized void write() throws IOException {
+        long[] mark = watermark;
+        long offset = mark[0];
+        long lines = mark[1];
+        List<ProxyInfo> records = new ArrayList<>();
+        for (ProxyInfo proxy : pending) {
+            // Copia sin resultado: si termina mientras se escribe no debe colarse como verificada
+            ProxyInfo copy = new ProxyInfo(proxy.getHost(), proxy.getPort(), proxy.getType());
+            copy.setCountry(proxy.getCountry());
+            records.add(copy);
+        }
+
+        long count;
+        ResultStreamWriter.Position position = null;
+        ResultStreamWriter output = stream;
+        if (output != null) {
+            // Con el cerrojo del escritor ningún worker escribe ni termina una entrada; el fsync
+            // de la salida va después, ya sin el cerrojo
+            synchronized (output) {
+                position = output.mark();
+                count = completedCount();
+            }
+            output.sync();
+        } else {
+            count = completedCount();
+        }
+        while (journaled < count) {
+            unwritten.add(completed.poll());
+            journaled++;
+        }
+        int appended = unwritten.size();
+        appendJournal();
+
+        int next = sequence + 1;
+        ResultSnapshot.write(pendingPath(file, next), records);
+        if (journalBytes >= COMPACT_MIN_BYTES && journalBytes >= baseBytes()) {
+            compact();
+        }
+
+        Properties properties = new Properties();
+        properties.setProperty("source", source.toString());
+        properties.setProperty("source.size", Long.toString(Files.size(source)));
+        properties.setProperty("source.modified", Long.toString(Files.getLastModifiedTime(source).toMillis()));
+        properties.setProperty("watermark", Long.toString(offset));
+        properties.setProperty("lines", Long.toString(lines));
+        properties.setProperty("base", Integer.toString(base));
+        properties.setProperty("base.records", Integer.toString(baseRecords));
+        properties.setProperty("journal.bytes", Long.toString(journalBytes));
+        properties.setProperty("journal.records", Long.toString(journalRecords));
+        properties.setProperty("pending", Integer.toString(records.size()));
+        properties.setProperty("sequence", Integer.toString(next));
+        if (output != null) {
+            properties.setProperty("stream", output.getFile().toString());
+            properties.setProperty("stream.rotation", Integer.toString(position.getRotation()));
+            properties.setProperty("stream.bytes", Long.toString(position.getBytes()));
+        }
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (Writer out = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            properties.store(out, "Checkpoint de ProxyChecker");
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        // Solo ahora dejan de hacer falta las pendientes anteriores y, tras fundirlos, la base y
+        // el diario anteriores
+        Files.deleteIfExists(pendingPath(file, sequence));
+        for (Path path : obsolete) {
+            Files.deleteIfExists(path);
+        }
+        obsolete.clear();
+        sequence = next;
+        logger.info("Checkpoint {}: {} terminadas ({} nuevas), {} pendientes, offset {}", file.getFileName(),
+                baseRecords + journalRecords, appended, records.size(), offset);
+    }
+
+    private long completedCount() {
+        synchronized (completedLock) {
+            return completedCount;
+        }
+    }
+
+    /**
+     * Añade al diario las terminadas sacadas de la cola. Lo que quedó tras la longitud
+     * confirmada (un checkpoint que no llegó a escribirse) se sobrescribe.
+     */
+    private void appendJournal() throws IOException {
+        if (unwritten.isEmpty()) {
+            return;
+        }
+        long written = journalBytes;
+        try (FileChannel channel = FileChannel.open(journalPath(file, base), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE)) {
+            channel.truncate(written);
+            channel.position(written);
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(Math.min(WRITE_CHUNK, unwritten.size() * 48 + 16));
+            DataOutputStream out = new DataOutputStream(bytes);
+            if (written == 0) {
+                out.writeInt(JOURNAL_MAGIC);
+                out.writeInt(JOURNAL_VERSION);
+            }
+            for (ProxyInfo proxy : unwritten) {
+                writeRecord(out, proxy);
+                if (bytes.size() >= WRITE_CHUNK) {
+                    written += drain(channel, bytes);
+                }
+            }
+            written += drain(channel, bytes);
+            channel.force(false);
+        }
+        journalBytes = written;
+        journalRecords += unwritten.size();
+        unwritten.clear();
+    }
+
+    private static long drain(FileChannel channel, ByteArrayOutputStream bytes) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        bytes.reset();
+        return buffer.capacity();
+    }
+
+    /**
+     * Funde la base y el diario en una base nueva con un diario vacío; los archivos anteriores
+     * se borran cuando el checkpoint que apunta a la nueva queda escrito
+     */
+    private void compact() throws IOException {
+        int next = base + 1;
+        int written;
+        try (ResultReader reader = new ResultReader(baseRecords > 0 ? ResultSnapshot.open(basePath(file, base)) : null,
+                journalPath(file, base), journalRecords, null)) {
+            written = ResultSnapshot.write(basePath(file, next), () -> reader);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        obsolete.add(basePath(file, base));
+        obsolete.add(journalPath(file, base));
+        base = next;
+        baseRecords = written;
+        journalBytes = 0;
+        journalRecords = 0;
+    }
+
+    private long baseBytes() throws IOException {
+        return baseRecords > 0 ? Files.size(basePath(file, base)) : 0;
+    }
+
+    /**
+     * Detiene los checkpoints periódicos y escribe uno final
+     */
+    public void stop() {
+        if (stopped) {
+            return;
+        }
+        stopped = true;
+        if (writer != null) {
+            LockSupport.unpark(writer);
+        }
+        try {
+            write();
+        } catch (IOException e) {
+            logger.warn("No se pudo escribir el checkpoint final {}: {}", file.getFileName(), e.getMessage());
+        }
+    }
+
+    private static Path basePath(Path file, int base) {
+        return file.resolveSibling(file.getFileName() + "." + base + ".pxs");
+    }
+
+    private static Path journalPath(Path file, int base) {
+        return file.resolveSibling(file.getFileName() + "." + base + ".journal");
+    }
+
+    private static Path pendingPath(Path file, int sequence) {
+        return file.resolveSibling(file.getFileName() + "." + sequence + ".pending.pxs");
+    }
+
+    /**
+     * Registro del diario: los mismos campos que una instantánea, con las cadenas en línea
+     */
+    private static void writeRecord(DataOutputStream out, ProxyInfo proxy) throws IOException {
+        synchronized (proxy) {
+            LocalDateTime checked = proxy.getLastChecked();
+            out.writeUTF(proxy.getHost());
+            out.writeChar(proxy.getPort());
+            out.writeByte(proxy.getType().ordinal());
+            out.writeByte(proxy.getErrorType().ordinal());
+            out.writeByte(proxy.getAnonymity().ordinal());
+            out.writeBoolean(proxy.isValid());
+            out.writeBoolean(proxy.isHttpsSupported());
+            out.writeInt((int) Math.min(Integer.MAX_VALUE, Math.max(-1, proxy.getResponseTime())));
+            out.writeLong(checked != null ? checked.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli() : 0);
+            out.writeUTF(proxy.getCountry() != null ? proxy.getCountry() : "");
+            out.writeUTF(proxy.getExitIp() != null ? proxy.getExitIp() : "");
+        }
+    }
+
+    private static ProxyInfo readRecord(DataInputStream in) throws IOException {
+        String host = in.readUTF();
+        int port = in.readChar();
+        int type = in.readUnsignedByte();
+        int error = in.readUnsignedByte();
+        int level = in.readUnsignedByte();
+        boolean valid = in.readBoolean();
+        boolean https = in.readBoolean();
+        int latency = in.readInt();
+        long checkedAt = in.readLong();
+        String country = in.readUTF();
+        String exitIp = in.readUTF();
+
+        ProxyInfo proxy = new ProxyInfo(host, port, type < TYPES.length ? TYPES[type] : ProxyInfo.ProxyType.HTTP);
+        proxy.setValid(valid);
+        proxy.setHttpsSupported(https);
+        proxy.setResponseTime(latency);
+        proxy.setErrorType(error < ERRORS.length ? ERRORS[error] : ProxyInfo.ErrorType.OTHER);
+        if (!valid) {
+            proxy.setErrorMessage("En checkpoint: " + proxy.getErrorType());
+        }
+        if (checkedAt != 0) {
+            proxy.setLastChecked(LocalDateTime.ofInstant(Instant.ofEpochMilli(checkedAt), ZoneId.systemDefault()));
+        }
+        proxy.setAnonymity(level < LEVELS.length ? LEVELS[level] : ProxyInfo.AnonymityLevel.UNKNOWN);
+        if (!country.isEmpty()) {
+            proxy.setCountry(country);
+        }
+        if (!exitIp.isEmpty()) {
+            proxy.setExitIp(exitIp);
+        }
+        return proxy;
+    }
+
+    /**
+     * Recorre en orden la base, los registros confirmados del diario y las pendientes. Los
+     * errores de lectura salen como UncheckedIOException.
+     */
+    private static final class ResultReader implements Iterator<ProxyInfo>, Closeable {
+        private final ResultSnapshot base;
+        private final Path journal;
+        private final ResultSnapshot pending;
+        private DataInputStream journalIn;
+        private long journalLeft;
+        private int baseIndex;
+        private int pendingIndex;
+
+        ResultReader(ResultSnapshot base, Path journal, long journalRecords, ResultSnapshot pending) {
+            this.base = base;
+            this.journal = journal;
+            this.journalLeft = journalRecords;
+            this.pending = pending;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return base != null && baseIndex < base.size() || journalLeft > 0
+                    || pending != null && pendingIndex < pending.size();
+        }
+
+        @Override
+        public ProxyInfo next() {
+            if (base != null && baseIndex < base.size()) {
+                return base.get(baseIndex++);
+            }
+            if (journalLeft > 0) {
+                try {
+                    if (journalIn == null) {
+                        journalIn = new DataInputStream(new BufferedInputStream(Files.newInputStream(journal), 1 << 16));
+                        if (journalIn.readInt() != JOURNAL_MAGIC || journalIn.readInt() != JOURNAL_VERSION) {
+                            throw new IOException("No es un diario de checkpoint: " + journal);
+                        }
+                    }
+                    journalLeft--;
+                    return readRecord(journalIn);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            if (pending != null && pendingIndex < pending.size()) {
+                return pending.get(pendingIndex++);
+            }
+            throw new NoSuchElementException();
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (journalIn != null) {
+                journalIn.close();
+            }
+        }
+    }
+
+    /**
+     * Lee un checkpoint y comprueba que la lista de entrada no haya cambiado desde entonces
+     */
+    public static State load(Path file) throws IOException {
+        Path checkpoint = file.toAbsolutePath();
+        Properties properties = new Properties();
+        try (Reader in = Files.newBufferedReader(checkpoint, StandardCharsets.UTF_8)) {
+            properties.load(in);
+        }
+        State state;
+        try {
+            state = new State(checkpoint, properties);
+            Path source = state.getSource();
+            if (!Files.exists(source)
+                    || Files.size(source) != Long.parseLong(properties.getProperty("source.size"))
+                    || Files.getLastModifiedTime(source).toMillis() != Long.parseLong(properties.getProperty("source.modified"))) {
+                throw new IOException("La lista " + source + " ha cambiado desde el checkpoint");
+            }
+        } catch (NullPointerException | NumberFormatException e) {
+            throw new IOException("Checkpoint incompleto o dañado: " + file, e);
+        }
+        if (state.journalBytes > 0 && (!Files.exists(journalPath(checkpoint, state.base))
+                || Files.size(journalPath(checkpoint, state.base)) < state.journalBytes)) {
+            throw new IOException("Diario del checkpoint incompleto: " + journalPath(checkpoint, state.base));
+        }
+        if (state.baseRecords > 0 && !Files.exists(basePath(checkpoint, state.base))) {
+            throw new IOException("Falta la base del checkpoint: " + basePath(checkpoint, state.base));
+        }
+        if (!Files.exists(pendingPath(checkpoint, state.sequence))) {
+            throw new IOException("Faltan las pendientes del checkpoint: " + pendingPath(checkpoint, state.sequence));
+        }
+        return state;
+    }
+}
@@ -0,0 +1,188 @@
+package es.srshiroh;
+
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+import java.io.*;
+import java.net.*;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Verificación nativa de proxies SOCKS4/SOCKS5.
+ * Sobre un único socket hace el saludo, abre el túnel al destino y envía la petición HTTP.
+ */
+public class SocksProber {
+    private static final int SOCKS4_VERSION = 0x04;
+    private static final int SOCKS5_VERSION = 0x05;
+    private static final int CMD_CONNECT = 0x01;
+
+    private final int timeout;
+    private final DnsCache dns;
+
+    public SocksProber(int timeout) {
+        this(timeout, null);
+    }
+
+    /**
+     * Con caché de DNS para el proxy y, en SOCKS4, para el destino
+     */
+    public SocksProber(int timeout, DnsCache dns) {
+        this.timeout = timeout;
+        this.dns = dns;
+    }
+
+    private InetSocketAddress addressOf(String host, int port) throws UnknownHostException {
+        return dns != null ? dns.resolve(host, port) : new InetSocketAddress(host, port);
+    }
+
+    /**
+     * Hace un GET a la URL a través del túnel SOCKS y devuelve el código de respuesta
+     */
+    public int probe(ProxyInfo proxy, String url) throws IOException {
+        return fetch(proxy, url).status;
+    }
+
+    /**
+     * Igual que probe, pero devuelve la respuesta completa (p. ej. el cuerpo de un juez)
+     */
+    RawHttp.Response fetch(ProxyInfo proxy, String url) throws IOException {
+        URI uri = URI.create(url);
+        boolean secure = "https".equalsIgnoreCase(uri.getScheme());
+        String targetHost = uri.getHost();
+        int targetPort = uri.getPort() != -1 ? uri.getPort() : (secure ? 443 : 80);
+
+        try (Socket socket = new DeadlineSocket(DeadlineSocket.deadlineIn(timeout))) {
+            socket.connect(addressOf(proxy.getHost(), proxy.getPort()), timeout);
+            socket.setSoTimeout(timeout);
+
+            InputStream in = new BufferedInputStream(socket.getInputStream());
+            OutputStream out = new BufferedOutputStream(socket.getOutputStream());
+
+            if (proxy.getType() == ProxyInfo.ProxyType.SOCKS4) {
+                connectSocks4(in, out, targetHost, targetPort);
+            } else {
+                connectSocks5(in, out, targetHost, targetPort);
+            }
+
+            if (!secure) {
+                return RawHttp.fetch(in, out, uri);
+            }
+
+            SSLSocketFactory factory = (SSLSocketFactory) SSLSocketFactory.getDefault();
+            try (SSLSocket tls = (SSLSocket) factory.createSocket(socket, targetHost, targetPort, true)) {
+                tls.setSoTimeout(timeout);
+                tls.startHandshake();
+                return RawHttp.fetch(new BufferedInputStream(tls.getInputStream()),
+                        new BufferedOutputStream(tls.getOutputStream()), uri);
+            }
+        }
+    }
+
+    /**
+     * Abre un túnel SOCKS hasta host:port y devuelve el socket listo para enviar datos.
+     * El saludo se lee sin búfer para no consumir bytes que el destino envíe después.
+     * El plazo total cubre solo el saludo: el túnel abierto puede durar lo que haga falta.
+     */
+    Socket openTunnel(ProxyInfo proxy, String host, int port) throws IOException {
+        DeadlineSocket socket = new DeadlineSocket(DeadlineSocket.deadlineIn(timeout));
+        try {
+            socket.connect(addressOf(proxy.getHost(), proxy.getPort()), timeout);
+            socket.setSoTimeout(timeout);
+            InputStream in = socket.getInputStream();
+            OutputStream out = new BufferedOutputStream(socket.getOutputStream());
+            if (proxy.getType() == ProxyInfo.ProxyType.SOCKS4) {
+                connectSocks4(in, out, host, port);
+            } else {
+                connectSocks5(in, out, host, port);
+            }
+            socket.clearDeadline();
+            socket.setSoTimeout(timeout);
+            return socket;
+        } catch (IOException e) {
+            socket.close();
+            throw e;
+        }
+    }
+
+    private void connectSocks4(InputStream in, OutputStream out, String host, int port) throws IOException {
+        // SOCKS4 solo admite IPv4: el destino se resuelve localmente
+        InetAddress address = dns != null ? dns.resolve(host)[0] : InetAddress.getByName(host);
+        if (!(address instanceof Inet4Address)) {
+            throw new IOException("SOCKS4 requiere un destino IPv4: " + host);
+        }
+
+        out.write(SOCKS4_VERSION);
+        out.write(CMD_CONNECT);
+        out.write((port >> 8) & 0xFF);
+        out.write(port & 0xFF);
+        out.write(address.getAddress());
+        out.write(0x00); // user id vacío
+        out.flush();
+
+        byte[] reply = readFully(in, 8);
+        if (reply[1] != 0x5A) {
+            throw new IOException("SOCKS4 rechazó la conexión (código " + (reply[1] & 0xFF) + ")");
+        }
+    }
+
+    private void connectSocks5(InputStream in, OutputStream out, String host, int port) throws IOException {
+        // El nombre va precedido de su longitud en un byte
+        byte[] hostBytes = host.getBytes(StandardCharsets.US_ASCII);
+        if (hostBytes.length > 255) {
+            throw new IOException("Nombre de host demasiado largo para SOCKS5 (" + hostBytes.length + " bytes)");
+        }
+
+        // Saludo: un único método, sin autenticación
+        out.write(new byte[]{SOCKS5_VERSION, 0x01, 0x00});
+        out.flush();
+
+        byte[] greeting = readFully(in, 2);
+        if (greeting[0] != SOCKS5_VERSION) {
+            throw new IOException("Respuesta SOCKS5 inválida (versión " + (greeting[0] & 0xFF) + ")");
+        }
+        if (greeting[1] != 0x00) {
+            throw new IOException("SOCKS5 requiere autenticación (método " + (greeting[1] & 0xFF) + ")");
+        }
+
+        // CONNECT por nombre de dominio: la resolución la hace el proxy
+        out.write(new byte[]{SOCKS5_VERSION, CMD_CONNECT, 0x00, 0x03, (byte) hostBytes.length});
+        out.write(hostBytes);
+        out.write((port >> 8) & 0xFF);
+        out.write(port & 0xFF);
+        out.flush();
+
+        byte[] reply = readFully(in, 4);
+        if (reply[1] != 0x00) {
+            throw new IOException("SOCKS5 rechazó la conexión (código " + (reply[1] & 0xFF) + ")");
+        }
+
+        // Descartar la dirección de enlace
+        int addressLength;
+        switch (reply[3]) {
+            case 0x01:
+                addressLength = 4;
+                break;
+            case 0x03:
+                addressLength = readFully(in, 1)[0] & 0xFF;
+                break;
+            case 0x04:
+                addressLength = 16;
+                break;
+            default:
+                throw new IOException("Tipo de dirección SOCKS5 desconocido: " + reply[3]);
+        }
+        readFully(in, addressLength + 2);
+    }
+
+    private static byte[] readFully(InputStream in, int length) throws IOException {
+        byte[] buffer = new byte[length];
+        int read = 0;
+        while (read < length) {
+            int n = in.read(buffer, read, length - read);
+            if (n == -1) {
+                throw new EOFException("El proxy cerró la conexión durante el saludo SOCKS");
+            }
+            read += n;
+        }
+        return buffer;
+    }
+}
@@ -0,0 +1,195 @@
+package es.srshiroh;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Primera etapa de verificación: solo un connect TCP no bloqueante por proxy.
+ * Un único hilo con un Selector mantiene miles de intentos a la vez con un timeout corto;
+ * la concurrencia la limita quien envía.
+ */
+public class TcpPrefilter implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(TcpPrefilter.class);
+
+    /**
+     * Resultado de un intento; se invoca desde el hilo del selector (o el del resolvedor si el
+     * nombre no resuelve) y no debe bloquear
+     */
+    public interface Callback {
+        void onResult(ProxyInfo proxy, boolean reachable, long connectMillis, Throwable error);
+    }
+
+    private final int timeout;
+    private final Callback callback;
+    private final DnsCache dns;
+    private final Selector selector;
+    private final Thread thread;
+    private final ConcurrentLinkedQueue<Attempt> incoming = new ConcurrentLinkedQueue<>();
+    // Todos los intentos tienen el mismo timeout: el orden de llegada es el de vencimiento
+    private final ArrayDeque<Attempt> deadlines = new ArrayDeque<>();
+    private volatile boolean closed;
+
+    public TcpPrefilter(int timeout, Callback callback) throws IOException {
+        this(timeout, callback, new DnsCache());
+    }
+
+    public TcpPrefilter(int timeout, Callback callback, DnsCache dns) throws IOException {
+        this.timeout = timeout;
+        this.callback = callback;
+        this.dns = dns;
+        this.selector = Selector.open();
+        this.thread = new Thread(this::loop, "tcp-prefilter");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public int getTimeout() {
+        return timeout;
+    }
+
+    /**
+     * Encola un connect. Si el nombre no está en la caché de DNS el intento entra cuando se
+     * resuelve; quien llama nunca espera al DNS.
+     */
+    public void submit(ProxyInfo proxy) {
+        dns.resolveAsync(proxy.getHost()).whenComplete((addresses, error) -> {
+            if (error != null) {
+                try {
+                    callback.onResult(proxy, false, 0, DnsCache.asUnknownHost(proxy.getHost(), error));
+                } catch (RuntimeException e) {
+                    logger.error("Error en el callback del prefiltro", e);
+                }
+                return;
+            }
+            incoming.add(new Attempt(proxy, new InetSocketAddress(addresses[0], proxy.getPort())));
+            selector.wakeup();
+        });
+    }
+
+    private void loop() {
+        try {
+            while (!closed) {
+                registerIncoming();
+
+                Attempt oldest = deadlines.peekFirst();
+                long wait = oldest != null ? Math.max(1, oldest.deadline - System.currentTimeMillis()) : 0;
+                selector.select(wait);
+
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    Attempt attempt = (Attempt) key.attachment();
+                    try {
+                        if (attempt.channel.finishConnect()) {
+                            finish(attempt, true, null);
+                        }
+                    } catch (IOException e) {
+                        finish(attempt, false, e);
+                    }
+                }
+
+                expire();
+            }
+        } catch (IOException | ClosedSelectorException e) {
+            if (!closed) {
+                logger.error("Prefiltro TCP detenido: {}", e.getMessage());
+            }
+        } finally {
+            // Cerrar los intentos pendientes sin notificarlos: el prefiltro se ha cancelado
+            for (Attempt attempt : deadlines) {
+                closeQuietly(attempt.channel);
+            }
+            deadlines.clear();
+        }
+    }
+
+    private static void closeQuietly(SocketChannel channel) {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+                // Nada que hacer
+            }
+        }
+    }
+
+    private void registerIncoming() {
+        Attempt attempt;
+        while ((attempt = incoming.poll()) != null) {
+            attempt.start = System.currentTimeMillis();
+            attempt.deadline = attempt.start + timeout;
+            try {
+                attempt.channel = SocketChannel.open();
+                attempt.channel.configureBlocking(false);
+                if (attempt.channel.connect(attempt.address)) {
+                    finish(attempt, true, null);
+                    continue;
+                }
+                attempt.channel.register(selector, SelectionKey.OP_CONNECT, attempt);
+                deadlines.addLast(attempt);
+            } catch (IOException e) {
+                // EMFILE y puertos agotados aparecen aquí, antes de llegar a la red
+                finish(attempt, false, e);
+            }
+        }
+    }
+
+    private void expire() {
+        long now = System.currentTimeMillis();
+        Attempt attempt;
+        while ((attempt = deadlines.peekFirst()) != null && (attempt.done || attempt.deadline <= now)) {
+            deadlines.pollFirst();
+            if (!attempt.done) {
+                finish(attempt, false, new SocketTimeoutException("Connect timed out"));
+            }
+        }
+    }
+
+    private void finish(Attempt attempt, boolean reachable, Throwable error) {
+        attempt.done = true;
+        closeQuietly(attempt.channel); // También cancela la clave
+        try {
+            callback.onResult(attempt.proxy, reachable, System.currentTimeMillis() - attempt.start, error);
+        } catch (RuntimeException e) {
+            logger.error("Error en el callback del prefiltro", e);
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            selector.close();
+        } catch (IOException ignored) {
+            // Nada que hacer
+        }
+        thread.interrupt();
+    }
+
+    private static final class Attempt {
+        final ProxyInfo proxy;
+        final InetSocketAddress address;
+        SocketChannel channel;
+        long start;
+        long deadline;
+        boolean done;
+
+        Attempt(ProxyInfo proxy, InetSocketAddress address) {
+            this.proxy = proxy;
+            this.address = address;
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package es.srshiroh;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Rueda de temporizadores (hashed timing wheel): programar cuesta O(1) y cada tick solo revisa
+ * su casilla. Los plazos más largos que una vuelta esperan en la casilla las vueltas necesarias.
+ * La resolución es el tick; no crea hilos, quien la usa llama a advance().
+ */
+class TimerWheel<T> {
+    private final long tickMillis;
+    private final List<Timeout<T>>[] slots;
+    private final int mask;
+    private final long startMillis;
+    private long currentTick;
+    private int size;
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    TimerWheel(long tickMillis, int slotCount) {
+        this.tickMillis = Math.max(1, tickMillis);
+        int count = Integer.highestOneBit(Math.max(2, slotCount - 1) << 1); // Potencia de dos
+        this.slots = new List[count];
+        for (int i = 0; i < count; i++) {
+            slots[i] = new ArrayList<>();
+        }
+        this.mask = count - 1;
+        this.startMillis = System.currentTimeMillis();
+    }
+
+    long getTickMillis() {
+        return tickMillis;
+    }
+
+    synchronized void schedule(T item, long delayMillis) {
+        long deadline = (System.currentTimeMillis() - startMillis + Math.max(0, delayMillis)) / tickMillis;
+        long tick = Math.max(currentTick, deadline);
+        slots[(int) (tick & mask)].add(new Timeout<>(item, tick));
+        size++;
+    }
+
+    /**
+     * Recorre los ticks vencidos hasta ahora y devuelve lo que toca ejecutar
+     */
+    synchronized List<T> advance() {
+        long nowTick = (System.currentTimeMillis() - startMillis) / tickMillis;
+        List<T> due = new ArrayList<>();
+        // Tras un retraso largo basta una vuelta: las demás casillas ya se habrían visitado
+        long from = Math.max(currentTick, nowTick - mask);
+        for (long tick = from; tick <= nowTick; tick++) {
+            List<Timeout<T>> slot = slots[(int) (tick & mask)];
+            int kept = 0;
+            for (int i = 0; i < slot.size(); i++) {
+                Timeout<T> timeout = slot.get(i);
+                if (timeout.tick <= nowTick) {
+                    due.add(timeout.item);
+                } else {
+                    slot.set(kept++, timeout);
+                }
+            }
+            slot.subList(kept, slot.size()).clear();
+        }
+        currentTick = nowTick + 1;
+        size -= due.size();
+        return due;
+    }
+
+    synchronized int size() {
+        return size;
+    }
+
+    synchronized void clear() {
+        for (List<Timeout<T>> slot : slots) {
+            slot.clear();
+        }
+        size = 0;
+    }
+
+    private static final class Timeout<T> {
+        final T item;
+        final long tick;
+
+        Timeout(T item, long tick) {
+            this.item = item;
+            this.tick = tick;
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package es.srshiroh;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Acceso a hilos virtuales.
+ * Esta versión es la de Java 11: usa hilos de plataforma bajo demanda, como mucho
+ * PLATFORM_THREAD_LIMIT. En Java 21+ el JAR multi-release carga la variante de
+ * src/main/java21 con hilos virtuales reales.
+ */
+final class VirtualThreads {
+    static final int PLATFORM_THREAD_LIMIT = 512;
+
+    private VirtualThreads() {
+    }
+
+    static boolean isSupported() {
+        return false;
+    }
+
+    /**
+     * Ejecutor que crea un hilo por tarea hasta PLATFORM_THREAD_LIMIT; con todos ocupados la
+     * tarea la ejecuta quien la envía, lo que frena los bucles de accept en lugar de crear más hilos
+     */
+    static ExecutorService newPerTaskExecutor(String name) {
+        AtomicInteger counter = new AtomicInteger();
+        ThreadFactory factory = r -> {
+            Thread thread = new Thread(r, name + "-" + counter.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        };
+        return new ThreadPoolExecutor(0, PLATFORM_THREAD_LIMIT, 60L, TimeUnit.SECONDS,
+                new SynchronousQueue<>(), factory, new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+}
@@ -0,0 +1,24 @@
+package es.srshiroh;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Acceso a hilos virtuales (variante Java 21+ del JAR multi-release)
+ */
+final class VirtualThreads {
+
+    private VirtualThreads() {
+    }
+
+    static boolean isSupported() {
+        return true;
+    }
+
+    /**
+     * Ejecutor que lanza cada tarea en su propio hilo virtual
+     */
+    static ExecutorService newPerTaskExecutor(String name) {
+        return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(name + "-", 0).factory());
+    }
+}